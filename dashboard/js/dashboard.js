@@ -207,10 +207,21 @@ $(document).ready(function() {
     // Load items as soon as the page loads
     loadDashboardItems();
 
-    // Retrieve deltas every 15 seconds
+    // Retrieve deltas when a test is added, and every 15 seconds when the browser has no server-sent events
+    let pollingInterval = 15000;
+    if (window.EventSource) {
+        const events = new EventSource('events');
+        events.addEventListener('open', function() {
+            loadDashboardItems();
+        });
+        events.addEventListener('testAdded', function() {
+            loadDashboardItems();
+        });
+        pollingInterval = 60000;
+    }
     setInterval(function() {
         loadDashboardItems();
-    }, 15000);
+    }, pollingInterval);
 
     $("#tests").on("click", ".list-group-item", function() {
         const $this = $(this);
@@ -6,6 +6,8 @@ MAX_TEST_SESSIONS=${MAX_TEST_SESSIONS:-1}
 DESIRED_CONTAINERS=${DESIRED_CONTAINERS:-2}
 MAX_DOCKER_SELENIUM_CONTAINERS=${MAX_DOCKER_SELENIUM_CONTAINERS:-10}
 SWARM_OVERLAY_NETWORK=${SWARM_OVERLAY_NETWORK:-""}
+# Warm pools per screen resolution and time zone, e.g. "1280x1024/UTC:5,1920x1080/Europe/Berlin:2"
+WARM_POOLS=${WARM_POOLS:-""}
 ZALENIUM_ARTIFACT="$(pwd)/${project.build.finalName}.jar"
 SAUCE_LABS_ENABLED=${SAUCE_LABS_ENABLED:-false}
 BROWSER_STACK_ENABLED=${BROWSER_STACK_ENABLED:-false}
@@ -31,6 +33,16 @@ TIME_TO_WAIT_TO_START=${TIME_TO_WAIT_TO_START:-180000}
 MAX_TIMES_TO_PROCESS_REQUEST=${MAX_TIMES_TO_PROCESS_REQUEST:-30}
 # How often should Zalenium check the status of the current containers/pods. See checkContainers() in AutoStartProxySet
 CHECK_CONTAINERS_INTERVAL=${CHECK_CONTAINERS_INTERVAL:-5000}
+# Minimum time in ms between two increases of the amount of containers kept ahead of demand
+SCALE_UP_COOLDOWN=${SCALE_UP_COOLDOWN:-10000}
+# Time in ms the amount of containers has to be above the demand before idle ones are stopped
+SCALE_DOWN_COOLDOWN=${SCALE_DOWN_COOLDOWN:-60000}
+# Containers started at the same time for waiting requests, 0 uses the default of the docker/swarm/kubernetes backend
+MAX_CONCURRENT_CONTAINER_STARTS=${MAX_CONCURRENT_CONTAINER_STARTS:-0}
+# Threads stopping node containers and running commands in them
+NODE_CONTROL_THREADS=${NODE_CONTROL_THREADS:-10}
+# Threads copying videos and logs from the node containers
+ARTIFACT_TRANSFER_THREADS=${ARTIFACT_TRANSFER_THREADS:-4}
 # Timeout for a proxy during cleanup tasks. See isCleaningUp() in DockerSeleniumRemoteProxy
 ZALENIUM_PROXY_CLEANUP_TIMEOUT=${ZALENIUM_PROXY_CLEANUP_TIMEOUT:-180}
 # browserTimeout parameter, used in hub and nodes.
@@ -426,6 +438,7 @@ StartUp()
     export ZALENIUM_DESIRED_CONTAINERS=${DESIRED_CONTAINERS}
     export ZALENIUM_MAX_DOCKER_SELENIUM_CONTAINERS=${MAX_DOCKER_SELENIUM_CONTAINERS}
     export ZALENIUM_SWARM_OVERLAY_NETWORK=${SWARM_OVERLAY_NETWORK}
+    export ZALENIUM_WARM_POOLS=${WARM_POOLS}
     export ZALENIUM_VIDEO_RECORDING_ENABLED=${VIDEO_RECORDING_ENABLED}
     export ZALENIUM_TZ=${TZ}
     export ZALENIUM_SCREEN_WIDTH=${SCREEN_WIDTH}
@@ -921,6 +934,7 @@ function usage()
     echo -e "\t --desiredContainers -> Number of nodes/containers created on startup. Default is 2."
     echo -e "\t --maxDockerSeleniumContainers -> Max number of docker-selenium containers running at the same time. Default is 10."
     echo -e "\t --swarmOverlayNetwork -> Netowrk used for the swarm."
+    echo -e "\t --warmPools -> Idle containers kept per screen resolution and time zone, e.g. \"1280x1024/UTC:5\". Empty by default."
     echo -e "\t --sauceLabsEnabled -> Determines if the Sauce Labs node is started. Defaults to 'false'."
     echo -e "\t --browserStackEnabled -> Determines if the Browser Stack node is started. Defaults to 'false'."
     echo -e "\t --testingBotEnabled -> Determines if the TestingBot node is started. Defaults to 'false'."
@@ -982,6 +996,9 @@ case ${SCRIPT_ACTION} in
                 --swarmOverlayNetwork)
                     SWARM_OVERLAY_NETWORK=${VALUE}
                     ;;
+                --warmPools)
+                    WARM_POOLS=${VALUE}
+                    ;;
                 --sauceLabsEnabled)
                     SAUCE_LABS_ENABLED=${VALUE}
                     ;;
@@ -0,0 +1,103 @@
+package de.zalando.ep.zalenium.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Several shell commands sent to a container as one script, so they cost a single exec instead of one each.
+ *
+ * Every command runs even if the previous one failed. After each command the script prints a marker line with the
+ * index and the exit code of the command, which is used to split the output of the exec into one result per command.
+ */
+public class CommandBatch {
+
+    private static final String STEP_MARKER = "__ZALENIUM_STEP__";
+
+    private final List<String> commands;
+
+    public CommandBatch(List<String> commands) {
+        this.commands = Collections.unmodifiableList(new ArrayList<>(commands));
+    }
+
+    public List<String> getCommands() {
+        return commands;
+    }
+
+    /**
+     * @return the command to execute in the container, running the whole batch with bash.
+     */
+    public String[] toCommand() {
+        return new String[] { "bash", "-c", toScript() };
+    }
+
+    /**
+     * @return the script running the batch, for shells that are already open in the container.
+     */
+    public String toScript() {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < commands.size(); i++) {
+            // Each command runs in a subshell like it did with its own exec, so an 'exit' does not end the batch, and
+            // without input so it cannot consume the next commands of a shell. The line break before the closing
+            // parenthesis keeps commands ending with a comment valid.
+            script.append("( ").append(commands.get(i)).append("\n) < /dev/null 2>&1; ")
+                    .append("printf '\\n%s %d %d\\n' ").append(STEP_MARKER).append(' ').append(i).append(" $?\n");
+        }
+        return script.toString();
+    }
+
+    /**
+     * @return the start of the marker line printed once the whole batch ran.
+     */
+    public String getCompletionMarker() {
+        return STEP_MARKER + " " + (commands.size() - 1) + " ";
+    }
+
+    /**
+     * Splits the output of the exec into the results of the commands. Commands without marker did not run, or did
+     * not finish, and get {@link CommandResult#NOT_EXECUTED} as exit code.
+     */
+    public List<CommandResult> parseResults(String output) {
+        String execOutput = output == null ? "" : output;
+        List<CommandResult> results = new ArrayList<>(commands.size());
+        int start = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            String marker = "\n" + STEP_MARKER + " " + i + " ";
+            int markerStart = execOutput.indexOf(marker, start);
+            if (markerStart < 0) {
+                // Whatever is left was written by the command that was running when the exec ended.
+                results.add(new CommandResult(commands.get(i), CommandResult.NOT_EXECUTED, execOutput.substring(start)));
+                start = execOutput.length();
+                continue;
+            }
+            int exitCodeStart = markerStart + marker.length();
+            int lineEnd = execOutput.indexOf('\n', exitCodeStart);
+            if (lineEnd < 0) {
+                lineEnd = execOutput.length();
+            }
+            results.add(new CommandResult(commands.get(i), parseExitCode(execOutput.substring(exitCodeStart, lineEnd)),
+                    execOutput.substring(start, markerStart)));
+            start = Math.min(lineEnd + 1, execOutput.length());
+        }
+        return results;
+    }
+
+    /**
+     * @return a result for each command with {@link CommandResult#NOT_EXECUTED}, when the exec could not be started.
+     */
+    public List<CommandResult> notExecuted(String reason) {
+        List<CommandResult> results = new ArrayList<>(commands.size());
+        for (String command : commands) {
+            results.add(new CommandResult(command, CommandResult.NOT_EXECUTED, reason));
+        }
+        return results;
+    }
+
+    private static int parseExitCode(String exitCode) {
+        try {
+            return Integer.parseInt(exitCode.trim());
+        } catch (NumberFormatException e) {
+            return CommandResult.NOT_EXECUTED;
+        }
+    }
+}
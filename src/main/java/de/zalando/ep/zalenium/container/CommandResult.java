@@ -0,0 +1,46 @@
+package de.zalando.ep.zalenium.container;
+
+/**
+ * Outcome of one command of a {@link CommandBatch}.
+ */
+public class CommandResult {
+
+    // Exit code of the commands that did not run, e.g. because the exec itself failed.
+    public static final int NOT_EXECUTED = -1;
+
+    private final String command;
+
+    private final int exitCode;
+
+    private final String output;
+
+    public CommandResult(String command, int exitCode, String output) {
+        this.command = command;
+        this.exitCode = exitCode;
+        this.output = output;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * Standard output and error of the command.
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    public boolean isSuccessful() {
+        return exitCode == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandResult [command=" + command + ", exitCode=" + exitCode + ", output=" + output + "]";
+    }
+}
@@ -3,6 +3,7 @@ package de.zalando.ep.zalenium.container;
 import de.zalando.ep.zalenium.streams.InputStreamGroupIterator;
 
 import java.net.URL;
+import java.util.List;
 import java.util.Map;
 
 public interface ContainerClient {
@@ -17,6 +18,13 @@ public interface ContainerClient {
 
     void executeCommand(String containerId, String[] command, boolean waitForExecution);
 
+    /**
+     * Runs the commands one after the other with a single exec in the container and waits for them.
+     *
+     * @return the exit code and output of each command, in the same order.
+     */
+    List<CommandResult> executeBatch(String containerId, List<String> commands);
+
     String getLatestDownloadedImage(String imageName);
 
     ContainerCreationStatus createContainer(String zaleniumContainerName, String image, Map<String, String> envVars, String nodePort);
@@ -28,4 +36,11 @@ public interface ContainerClient {
     boolean isReady(ContainerCreationStatus container);
     
     boolean isTerminated(ContainerCreationStatus container);
+
+    /**
+     * Containers that can be created at the same time when the amount is not configured.
+     */
+    default int getDefaultMaxConcurrentCreations() {
+        return 4;
+    }
 }
@@ -3,6 +3,8 @@ package de.zalando.ep.zalenium.container;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -10,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
@@ -24,6 +27,7 @@ import de.zalando.ep.zalenium.streams.TarInputStreamGroupWrapper;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,7 +47,9 @@ import com.spotify.docker.client.messages.HostConfig;
 import com.spotify.docker.client.messages.Image;
 import com.spotify.docker.client.messages.NetworkSettings;
 
+import de.zalando.ep.zalenium.dashboard.Dashboard;
 import de.zalando.ep.zalenium.proxy.DockeredSeleniumStarter;
+import de.zalando.ep.zalenium.streams.MapInputStreamAdapter;
 import de.zalando.ep.zalenium.util.Environment;
 import de.zalando.ep.zalenium.util.GoogleAnalyticsApi;
 
@@ -65,6 +71,14 @@ public class DockerContainerClient implements ContainerClient {
     };
     private static final String ZALENIUM_SELENIUM_CONTAINER_CPU_LIMIT = "ZALENIUM_SELENIUM_CONTAINER_CPU_LIMIT";
     private static final String ZALENIUM_SELENIUM_CONTAINER_MEMORY_LIMIT = "ZALENIUM_SELENIUM_CONTAINER_MEMORY_LIMIT";
+    private static final String ZALENIUM_DOCKER_EVENTS = "ZALENIUM_DOCKER_EVENTS";
+    private static final String ZALENIUM_DOCKER_SHARED_ARTIFACTS = "ZALENIUM_DOCKER_SHARED_ARTIFACTS";
+    // Folder inside the videos folder of the hub with the artifacts folders of the nodes, they need to be on the same
+    // mount to be moved into the dashboard by a rename.
+    private static final String NODE_SHARED_ARTIFACTS_DIR = "/home/seluser/artifacts";
+    // Label added to the created containers, its value is the name of the Zalenium container that created them.
+    @VisibleForTesting
+    static final String ZALENIUM_CONTAINER_LABEL = "de.zalando.zalenium.container";
 
     private static final Environment defaultEnvironment = new Environment();
     /**
@@ -75,6 +89,13 @@ public class DockerContainerClient implements ContainerClient {
     private static String seleniumContainerCpuLimit;
     private static String seleniumContainerMemoryLimit;
     private static String dockerHost;
+    private static boolean dockerEventsEnabled;
+    private static boolean sharedArtifactsEnabled;
+    /*
+        Artifacts folder of each node container. Every proxy has its own client, so the mapping is shared with the
+        clients that copy the artifacts and stop the container, not only kept by the one that created it.
+     */
+    private static final Map<String, Path> sharedArtifactFolders = new ConcurrentHashMap<>();
     private static AtomicBoolean environmentInitialised = new AtomicBoolean(false);
 
     static {
@@ -88,6 +109,8 @@ public class DockerContainerClient implements ContainerClient {
     private String zaleniumNetwork;
     private List<String> zaleniumExtraHosts;
     private List<ContainerMount> mntFolders = new ArrayList<>();
+    // Mount of the videos folder of the hub, the nodes share their artifacts through it.
+    private ContainerMount videosMount;
     private Map<String, String> seleniumContainerLabels = new HashMap<>();
     private boolean pullSeleniumImage = false;
     private boolean isZaleniumPrivileged = true;
@@ -97,6 +120,7 @@ public class DockerContainerClient implements ContainerClient {
     private AtomicBoolean storageOptsLoaded = new AtomicBoolean(false);
     private AtomicBoolean mntFoldersAndHttpEnvVarsChecked = new AtomicBoolean(false);
     private AtomicBoolean seleniumContainerLabelsChecked = new AtomicBoolean(false);
+    private DockerContainerStateCache stateCache;
 
     private static void readConfigurationFromEnvVariables() {
 
@@ -108,6 +132,20 @@ public class DockerContainerClient implements ContainerClient {
 
         String dockerHost = env.getStringEnvVariable("DOCKER_HOST", "unix:///var/run/docker.sock");
         setDockerHost(dockerHost);
+
+        setDockerEventsEnabled(env.getBooleanEnvVariable(ZALENIUM_DOCKER_EVENTS, false));
+
+        setSharedArtifactsEnabled(env.getBooleanEnvVariable(ZALENIUM_DOCKER_SHARED_ARTIFACTS, false));
+    }
+
+    @VisibleForTesting
+    static void setSharedArtifactsEnabled(boolean sharedArtifactsEnabled) {
+        DockerContainerClient.sharedArtifactsEnabled = sharedArtifactsEnabled;
+    }
+
+    @VisibleForTesting
+    static void setDockerEventsEnabled(boolean dockerEventsEnabled) {
+        DockerContainerClient.dockerEventsEnabled = dockerEventsEnabled;
     }
 
     @VisibleForTesting
@@ -217,6 +255,16 @@ public class DockerContainerClient implements ContainerClient {
     }
 
     public InputStreamGroupIterator copyFiles(String containerId, String folderName) {
+        Path sharedArtifactsFolder = sharedArtifactFolders.get(containerId);
+        if (sharedArtifactsFolder != null) {
+            try {
+                Path folder = sharedArtifactsFolder.resolve(StringUtils.strip(folderName, "/"));
+                return new MapInputStreamAdapter(SharedArtifactsWatcher.getInstance().finishedFiles(folder));
+            } catch (IOException e) {
+                logger.warn(nodeId + " Error while collecting the files of " + folderName, e);
+                return null;
+            }
+        }
         try {
             return new TarInputStreamGroupWrapper(new TarArchiveInputStream(dockerClient.archiveContainer(containerId, folderName)));
         } catch (DockerException | InterruptedException e) {
@@ -227,6 +275,7 @@ public class DockerContainerClient implements ContainerClient {
     }
 
     public void stopContainer(String containerId) {
+        Optional.ofNullable(sharedArtifactFolders.remove(containerId)).ifPresent(this::unregisterSharedArtifacts);
         try {
             dockerClient.stopContainer(containerId, 5);
         } catch (ContainerNotFoundException e) {
@@ -260,6 +309,22 @@ public class DockerContainerClient implements ContainerClient {
         }
     }
 
+    public List<CommandResult> executeBatch(String containerId, List<String> commands) {
+        CommandBatch batch = new CommandBatch(commands);
+        try {
+            ExecCreation execCreation = dockerClient.execCreate(containerId, batch.toCommand(),
+                    DockerClient.ExecCreateParam.attachStdout(), DockerClient.ExecCreateParam.attachStderr());
+            logger.debug(String.format("%s %s", nodeId, commands));
+            try (LogStream output = dockerClient.execStart(execCreation.id())) {
+                return batch.parseResults(output.readFully());
+            }
+        } catch (DockerException | InterruptedException | NullPointerException e) {
+            logger.debug(nodeId + " Error while executing the commands", e);
+            ga.trackException(e);
+            return batch.notExecuted(String.valueOf(e.getMessage()));
+        }
+    }
+
     public String getLatestDownloadedImage(String imageName) {
         List<Image> images;
         try {
@@ -291,16 +356,20 @@ public class DockerContainerClient implements ContainerClient {
                                                     String nodePort, int collisionAttempts) {
         String containerName = generateContainerName(zaleniumContainerName);
 
-        loadMountedFolders(zaleniumContainerName);
-        // In some environments the created containers need to be labeled so the platform can handle them. E.g. Rancher.
-        loadSeleniumContainerLabels();
-        loadPullSeleniumImageFlag();
-        loadIsZaleniumPrivileged(zaleniumContainerName);
-        loadStorageOpts(zaleniumContainerName);
+        loadContainerSettings(zaleniumContainerName);
 
         List<String> binds = generateMountedFolderBinds();
         binds.add("/dev/shm:/dev/shm");
 
+        Path sharedArtifactsFolder = registerSharedArtifacts(containerName);
+        if (sharedArtifactsFolder != null) {
+            binds.add(String.format("%s/%s/%s:%s", videosMount.source(), Dashboard.SHARED_ARTIFACTS_FOLDER_NAME,
+                    containerName, NODE_SHARED_ARTIFACTS_DIR));
+            envVars.put("SHARED_DIR", NODE_SHARED_ARTIFACTS_DIR);
+            envVars.put("VIDEOS_DIR", NODE_SHARED_ARTIFACTS_DIR + "/" + SharedArtifactsWatcher.VIDEOS_FOLDER);
+            envVars.put("LOGS_DIR", NODE_SHARED_ARTIFACTS_DIR + "/" + SharedArtifactsWatcher.LOGS_FOLDER);
+        }
+
         String noVncPort = envVars.get("NOVNC_PORT");
 
         String networkMode = getZaleniumNetwork(zaleniumContainerName);
@@ -367,9 +436,9 @@ public class DockerContainerClient implements ContainerClient {
                 .exposedPorts(exposedPorts)
                 .hostConfig(hostConfig);
 
-        if (seleniumContainerLabels.size() > 0) {
-            builder.labels(seleniumContainerLabels);
-        }
+        Map<String, String> labels = new HashMap<>(seleniumContainerLabels);
+        labels.put(ZALENIUM_CONTAINER_LABEL, zaleniumContainerName);
+        builder.labels(labels);
 
         final ContainerConfig containerConfig = builder.build();
 
@@ -389,9 +458,14 @@ public class DockerContainerClient implements ContainerClient {
 
         try {
             final ContainerCreation container = dockerClient.createContainer(containerConfig, containerName);
+            getStateCache().ifPresent(cache -> cache.created(container.id()));
+            if (sharedArtifactsFolder != null) {
+                sharedArtifactFolders.put(container.id(), sharedArtifactsFolder);
+            }
             dockerClient.startContainer(container.id());
             return new ContainerCreationStatus(true, containerName, container.id(), nodePort);
         } catch (DockerRequestException e) {
+            unregisterSharedArtifacts(sharedArtifactsFolder);
             if (isNameCollision(e, containerName) && hasRemainingAttempts(collisionAttempts)) {
                 logger.debug("Name {} collided. Will generate a new name.", containerName);
                 return createContainer(zaleniumContainerName, image, envVars, nodePort, collisionAttempts - 1);
@@ -401,17 +475,62 @@ public class DockerContainerClient implements ContainerClient {
             ga.trackException(e);
             return new ContainerCreationStatus(false);
         } catch (DockerException | InterruptedException e) {
+            unregisterSharedArtifacts(sharedArtifactsFolder);
             logger.warn(nodeId + " Error while starting a new container", e);
             ga.trackException(e);
             return new ContainerCreationStatus(false);
         }
     }
 
+    /*
+        Creates the folder where the node writes its videos and logs, inside the videos folder of the hub. Returns
+        null when the artifacts are not shared, and are copied out of the container instead.
+     */
+    private Path registerSharedArtifacts(String containerName) {
+        if (!sharedArtifactsEnabled || videosMount == null) {
+            return null;
+        }
+        Path sharedArtifactsFolder = Paths.get(Dashboard.getLocalVideosPath(),
+                Dashboard.SHARED_ARTIFACTS_FOLDER_NAME, containerName);
+        try {
+            SharedArtifactsWatcher.getInstance().register(sharedArtifactsFolder);
+            return sharedArtifactsFolder;
+        } catch (IOException e) {
+            logger.warn(nodeId + " Error while creating the artifacts folder, they will be copied instead", e);
+            unregisterSharedArtifacts(sharedArtifactsFolder);
+            return null;
+        }
+    }
+
+    private void unregisterSharedArtifacts(Path sharedArtifactsFolder) {
+        if (sharedArtifactsFolder == null) {
+            return;
+        }
+        try {
+            SharedArtifactsWatcher.getInstance().unregister(sharedArtifactsFolder);
+        } catch (IOException e) {
+            logger.debug(nodeId + " Error while removing the artifacts folder " + sharedArtifactsFolder, e);
+        }
+    }
+
     private String generateContainerName(String zaleniumContainerName) {
         final String suffix = RandomStringUtils.randomAlphanumeric(6);
         return String.format("%s_%s", zaleniumContainerName, suffix);
     }
 
+    /*
+        Containers can be created in parallel, so the settings are loaded once before any of them reads them. Each
+        loader marks itself as done before it finishes, without this another thread could read half loaded settings.
+     */
+    private synchronized void loadContainerSettings(String zaleniumContainerName) {
+        loadMountedFolders(zaleniumContainerName);
+        // In some environments the created containers need to be labeled so the platform can handle them. E.g. Rancher.
+        loadSeleniumContainerLabels();
+        loadPullSeleniumImageFlag();
+        loadIsZaleniumPrivileged(zaleniumContainerName);
+        loadStorageOpts(zaleniumContainerName);
+    }
+
     private void loadSeleniumContainerLabels() {
         if (!this.seleniumContainerLabelsChecked.getAndSet(true)) {
             String containerLabels = env.getStringEnvVariable("SELENIUM_CONTAINER_LABELS", "");
@@ -501,6 +620,13 @@ public class DockerContainerClient implements ContainerClient {
                 if (containerMount.destination().startsWith(NODE_MOUNT_POINT)) {
                     this.mntFolders.add(containerMount);
                 }
+                if (containerMount.destination().equals(Dashboard.getLocalVideosPath())) {
+                    this.videosMount = containerMount;
+                }
+            }
+            if (sharedArtifactsEnabled && videosMount == null) {
+                logger.warn("{} is not mounted, the videos and logs will be copied from the containers.",
+                        Dashboard.getLocalVideosPath());
             }
         }
     }
@@ -540,6 +666,22 @@ public class DockerContainerClient implements ContainerClient {
         return Optional.ofNullable(zaleniumExtraHosts).orElse(new ArrayList<>());
     }
 
+    /*
+        The state cache is only started by the client that creates and checks the containers, the ones used by each
+        proxy never need it.
+     */
+    private synchronized Optional<DockerContainerStateCache> getStateCache() {
+        if (!dockerEventsEnabled) {
+            return Optional.empty();
+        }
+        if (stateCache == null) {
+            stateCache = new DockerContainerStateCache(dockerClient, ZALENIUM_CONTAINER_LABEL,
+                    DockeredSeleniumStarter.getContainerName());
+            stateCache.start();
+        }
+        return Optional.of(stateCache);
+    }
+
     @Override
     public void initialiseContainerEnvironment() {
         if (!environmentInitialised.getAndSet(true)) {
@@ -636,6 +778,17 @@ public class DockerContainerClient implements ContainerClient {
 
     @Override
     public boolean isReady(ContainerCreationStatus container) {
+        Optional<DockerContainerStateCache> stateCache = getStateCache();
+        if (stateCache.isPresent()) {
+            DockerContainerStateCache.State state = stateCache.get().getState(container.getContainerId());
+            if (state == DockerContainerStateCache.State.READY) {
+                return true;
+            }
+            // Only a running container can have a node ready, no need to ask it otherwise.
+            if (state != null && state != DockerContainerStateCache.State.STARTED && stateCache.get().isSubscribed()) {
+                return false;
+            }
+        }
         String containerIp = this.getContainerIp(container.getContainerName());
         if (ZALENIUM_RUNNING_LOCALLY) {
             containerIp = "localhost";
@@ -646,6 +799,7 @@ public class DockerContainerClient implements ContainerClient {
                 String status = IOUtils.toString(statusUrl, StandardCharsets.UTF_8);
                 String successMessage = "\"Node is running\"";
                 if (status.contains(successMessage)) {
+                    stateCache.ifPresent(cache -> cache.ready(container.getContainerId()));
                     return true;
                 }
             } catch (IOException e) {
@@ -657,6 +811,13 @@ public class DockerContainerClient implements ContainerClient {
 
     @Override
     public boolean isTerminated(ContainerCreationStatus container) {
+        Optional<DockerContainerStateCache> stateCache = getStateCache().filter(DockerContainerStateCache::isSubscribed);
+        if (stateCache.isPresent()) {
+            DockerContainerStateCache.State state = stateCache.get().getState(container.getContainerId());
+            if (state != null) {
+                return state.isTerminated();
+            }
+        }
         try {
             final ContainerInfo info = dockerClient.inspectContainer(container.getContainerId());
             if (info.state().status().equalsIgnoreCase("exited") || info.state().status().equalsIgnoreCase("dead")) {
@@ -0,0 +1,224 @@
+package de.zalando.ep.zalenium.container;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.EventStream;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.Event;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * State of the docker-selenium containers, kept up to date from the Docker events stream instead of inspecting each
+ * container on every check. Only the events of the containers with the given label are received.
+ *
+ * The containers are listed periodically as a safety net, containers that are gone are forgotten and the ones whose
+ * events were missed get the state reported by the daemon. While the stream is down the state is not trusted, see
+ * {@link #isSubscribed()}.
+ */
+@ThreadSafe
+class DockerContainerStateCache {
+
+    enum State {
+        CREATED, STARTED, READY, DIED, DESTROYED;
+
+        boolean isTerminated() {
+            return this == DIED || this == DESTROYED;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerContainerStateCache.class.getName());
+    private static final long RECONCILE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+    private final DockerClient dockerClient;
+    private final String labelKey;
+    private final String labelValue;
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("DockerContainerStateReconciler").setDaemon(true).build());
+    private final Thread listener;
+    private volatile boolean subscribed = false;
+    private volatile boolean stopped = false;
+    // Seconds since the epoch of the last event, to resume the stream from there after reconnecting.
+    private volatile long lastEventTime = 0;
+
+    DockerContainerStateCache(DockerClient dockerClient, String labelKey, String labelValue) {
+        this.dockerClient = dockerClient;
+        this.labelKey = labelKey;
+        this.labelValue = labelValue;
+        this.listener = new Thread(this::listen, "DockerEventsListener");
+        this.listener.setDaemon(true);
+    }
+
+    void start() {
+        listener.start();
+        reconciler.scheduleWithFixedDelay(this::reconcile, RECONCILE_INTERVAL, RECONCILE_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        stopped = true;
+        listener.interrupt();
+        reconciler.shutdownNow();
+    }
+
+    /**
+     * False while the events stream is not connected, the states may be outdated then.
+     */
+    boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * @return the state of the container, or null if it is unknown.
+     */
+    State getState(String containerId) {
+        return containerId == null ? null : states.get(containerId);
+    }
+
+    void created(String containerId) {
+        states.putIfAbsent(containerId, State.CREATED);
+    }
+
+    void ready(String containerId) {
+        states.computeIfPresent(containerId, (id, state) -> state == State.STARTED ? State.READY : state);
+    }
+
+    private void listen() {
+        while (!stopped) {
+            long since = lastEventTime > 0 ? lastEventTime : System.currentTimeMillis() / 1000;
+            try (EventStream events = dockerClient.events(
+                    DockerClient.EventsParam.type(Event.Type.CONTAINER),
+                    DockerClient.EventsParam.label(labelKey, labelValue),
+                    DockerClient.EventsParam.since(since))) {
+                LOGGER.debug("Listening to the Docker events of the containers labeled {}={}.", labelKey, labelValue);
+                subscribed = true;
+                // Events missed while the stream was down are only recovered if the daemon still has them.
+                reconcile();
+                while (events.hasNext()) {
+                    apply(events.next());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                LOGGER.warn("Docker events stream failed, checking the containers state directly until it is back.");
+                LOGGER.debug("Docker events stream failed.", e);
+            } finally {
+                subscribed = false;
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /*
+        Daemons older than API 1.22 send the container and the action only in the id and status fields, which the
+        client deprecated in favour of actor and action.
+     */
+    @SuppressWarnings("deprecation")
+    private static String getLegacyId(Event event) {
+        return event.id();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String getLegacyStatus(Event event) {
+        return event.status();
+    }
+
+    @VisibleForTesting
+    void apply(Event event) {
+        String containerId = event.actor() != null ? event.actor().id() : getLegacyId(event);
+        String action = Optional.ofNullable(event.action()).orElse(getLegacyStatus(event));
+        if (event.time() != null) {
+            lastEventTime = TimeUnit.MILLISECONDS.toSeconds(event.time().getTime());
+        }
+        if (containerId == null || action == null) {
+            return;
+        }
+        switch (action) {
+            case "create":
+                states.put(containerId, State.CREATED);
+                break;
+            case "start":
+                states.merge(containerId, State.STARTED, (current, started) ->
+                        current == State.READY ? current : started);
+                break;
+            case "health_status: healthy":
+                states.put(containerId, State.READY);
+                break;
+            case "die":
+                states.put(containerId, State.DIED);
+                break;
+            case "destroy":
+                states.put(containerId, State.DESTROYED);
+                break;
+            default:
+                return;
+        }
+        LOGGER.debug("Container {} {}.", containerId, action);
+    }
+
+    @VisibleForTesting
+    void reconcile() {
+        try {
+            Map<String, Container> containers = dockerClient.listContainers(
+                    DockerClient.ListContainersParam.allContainers(),
+                    DockerClient.ListContainersParam.withLabel(labelKey, labelValue))
+                    .stream().collect(Collectors.toMap(Container::id, container -> container));
+            Set<String> gone = states.keySet().stream()
+                    .filter(containerId -> !containers.containsKey(containerId))
+                    .collect(Collectors.toSet());
+            gone.forEach(states::remove);
+            containers.forEach((containerId, container) -> {
+                State listed = fromContainerState(container.state());
+                if (listed != null) {
+                    states.merge(containerId, listed, (current, started) ->
+                            current == State.READY && started == State.STARTED ? current : started);
+                }
+            });
+            LOGGER.debug("Reconciled {} containers, {} were gone.", containers.size(), gone.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.warn("Failed to reconcile the containers state.", e);
+        }
+    }
+
+    private static State fromContainerState(String containerState) {
+        if (containerState == null) {
+            return null;
+        }
+        switch (containerState) {
+            case "created":
+                return State.CREATED;
+            case "running":
+            case "restarting":
+            case "paused":
+                return State.STARTED;
+            case "exited":
+            case "dead":
+                return State.DIED;
+            default:
+                return null;
+        }
+    }
+}
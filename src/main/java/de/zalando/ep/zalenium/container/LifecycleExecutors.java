@@ -0,0 +1,126 @@
+package de.zalando.ep.zalenium.container;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Thread pools for the work done on the containers of the nodes. Stopping containers and running commands in them
+ * use the control pool, copying videos and logs uses the artifacts pool, so slow copies never delay the teardown of
+ * other nodes.
+ *
+ * The queues of both pools are bounded. When a queue is full the task runs on the thread submitting it, which slows
+ * the submitter down instead of queueing without limit.
+ */
+@ThreadSafe
+public final class LifecycleExecutors {
+
+    private static final int QUEUE_CAPACITY = 500;
+
+    private static final Gauge queueSize = Gauge.build()
+            .name("zalenium_lifecycle_queue_size")
+            .help("Node lifecycle tasks waiting for a thread.")
+            .labelNames("pool").register();
+    private static final Histogram waitTime = Histogram.build()
+            .name("zalenium_lifecycle_task_wait_seconds")
+            .help("Time node lifecycle tasks waited for a thread.")
+            .labelNames("pool")
+            .buckets(0.01, 0.1, 0.5, 1, 2.5, 5, 10, 30, 60)
+            .register();
+    private static final Histogram runTime = Histogram.build()
+            .name("zalenium_lifecycle_task_duration_seconds")
+            .help("Time taken by node lifecycle tasks.")
+            .labelNames("pool")
+            .buckets(0.01, 0.1, 0.5, 1, 2.5, 5, 10, 30, 60)
+            .register();
+
+    private static final Executor control = new InstrumentedExecutor("control",
+            ZaleniumConfiguration.getNodeControlThreads(), "NodeControl-%d");
+    private static final Executor artifacts = new InstrumentedExecutor("artifacts",
+            ZaleniumConfiguration.getArtifactTransferThreads(), "ArtifactTransfer-%d");
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("LifecycleTimer").setDaemon(true).build());
+
+    private LifecycleExecutors() {
+    }
+
+    /**
+     * Pool to stop containers and run commands in them.
+     */
+    public static Executor control() {
+        return control;
+    }
+
+    /**
+     * Pool to copy videos and logs from the containers.
+     */
+    public static Executor artifacts() {
+        return artifacts;
+    }
+
+    /**
+     * @return a future completed like the given one, or with a {@link TimeoutException} if it takes longer than the
+     * timeout. The given future keeps running.
+     */
+    public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeout, TimeUnit unit) {
+        if (future.isDone()) {
+            return future;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> deadline = timer.schedule(
+                () -> result.completeExceptionally(new TimeoutException()), timeout, unit);
+        future.whenComplete((value, error) -> {
+            deadline.cancel(false);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    private static class InstrumentedExecutor implements Executor {
+
+        private final String pool;
+        private final ThreadPoolExecutor executor;
+
+        InstrumentedExecutor(String pool, int threads, String nameFormat) {
+            this.pool = pool;
+            this.executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                    new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                    new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            long queued = System.nanoTime();
+            queueSize.labels(pool).inc();
+            executor.execute(() -> {
+                queueSize.labels(pool).dec();
+                waitTime.labels(pool).observe((System.nanoTime() - queued) / (double) TimeUnit.SECONDS.toNanos(1));
+                Histogram.Timer duration = runTime.labels(pool).startTimer();
+                try {
+                    task.run();
+                } finally {
+                    duration.observeDuration();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package de.zalando.ep.zalenium.container;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Watches the folders that the nodes share with the hub to write their videos and logs.
+ *
+ * Each node gets its own folder, with the same layout as inside the container ({@code videos} and
+ * {@code var/log/cont}). The watcher records when each file was last written, so the files can be collected as soon as
+ * they are finished, and then moved into the dashboard instead of being copied out of the container.
+ */
+@ThreadSafe
+public final class SharedArtifactsWatcher {
+
+    public static final String VIDEOS_FOLDER = "videos";
+    public static final String LOGS_FOLDER = "var/log/cont";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedArtifactsWatcher.class.getName());
+    private static final List<String> ARTIFACT_EXTENSIONS = Arrays.asList(".mp4", ".log");
+    // A file without writes for this long is considered finished.
+    private static final long QUIET_PERIOD_MILLIS = 500;
+    // Upper limit to wait for files that keep being written.
+    private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static SharedArtifactsWatcher instance;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedFolders = new ConcurrentHashMap<>();
+    private final Map<Path, Long> lastWrites = new ConcurrentHashMap<>();
+
+    @VisibleForTesting
+    SharedArtifactsWatcher() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        new ThreadFactoryBuilder().setNameFormat("SharedArtifactsWatcher").setDaemon(true).build()
+                .newThread(this::processEvents).start();
+    }
+
+    public static synchronized SharedArtifactsWatcher getInstance() throws IOException {
+        if (instance == null) {
+            instance = new SharedArtifactsWatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the folders of a node and starts watching them.
+     */
+    public void register(Path nodeFolder) throws IOException {
+        for (String folder : Arrays.asList(VIDEOS_FOLDER, LOGS_FOLDER)) {
+            Path artifactsFolder = Files.createDirectories(nodeFolder.resolve(folder));
+            WatchKey key = artifactsFolder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedFolders.put(key, artifactsFolder);
+        }
+    }
+
+    /**
+     * Stops watching the folders of a node and deletes them, with whatever was not collected.
+     */
+    public void unregister(Path nodeFolder) {
+        watchedFolders.entrySet().removeIf(watched -> {
+            if (watched.getValue().startsWith(nodeFolder)) {
+                watched.getKey().cancel();
+                return true;
+            }
+            return false;
+        });
+        lastWrites.keySet().removeIf(file -> file.startsWith(nodeFolder));
+        FileUtils.deleteQuietly(nodeFolder.toFile());
+    }
+
+    /**
+     * Waits until the videos or logs in the given folder are not written anymore.
+     *
+     * @return the finished files, by file name.
+     */
+    public Map<String, Path> finishedFiles(Path folder) throws IOException {
+        long deadline = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+        List<Path> files = listArtifacts(folder);
+        long remaining = quietTimeLeft(files);
+        while (remaining > 0) {
+            long untilDeadline = deadline - System.currentTimeMillis();
+            if (untilDeadline <= 0) {
+                LOGGER.debug("Files in {} are still being written, collecting them anyway", folder);
+                break;
+            }
+            try {
+                Thread.sleep(Math.min(remaining, untilDeadline));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            files = listArtifacts(folder);
+            remaining = quietTimeLeft(files);
+        }
+        Map<String, Path> finished = new HashMap<>();
+        files.forEach(file -> finished.put(file.getFileName().toString(), file));
+        return finished;
+    }
+
+    private List<Path> listArtifacts(Path folder) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.filter(file -> ARTIFACT_EXTENSIONS.stream()
+                    .anyMatch(extension -> file.getFileName().toString().endsWith(extension)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private long quietTimeLeft(List<Path> files) throws IOException {
+        long now = System.currentTimeMillis();
+        long remaining = 0;
+        for (Path file : files) {
+            long lastModified;
+            try {
+                lastModified = Files.getLastModifiedTime(file).toMillis();
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            // Volumes shared over the network do not report the writes of other hosts, the modification time does.
+            long lastWrite = Math.max(lastWrites.getOrDefault(file, 0L), lastModified);
+            remaining = Math.max(remaining, lastWrite + QUIET_PERIOD_MILLIS - now);
+        }
+        return remaining;
+    }
+
+    private void processEvents() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                Path folder = watchedFolders.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (folder == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path file = folder.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        lastWrites.remove(file);
+                    } else {
+                        lastWrites.put(file, System.currentTimeMillis());
+                    }
+                }
+                if (!key.reset()) {
+                    watchedFolders.remove(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.debug("Watch service closed", e);
+        }
+    }
+}
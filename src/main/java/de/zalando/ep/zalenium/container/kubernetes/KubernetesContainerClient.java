@@ -1,8 +1,12 @@
 package de.zalando.ep.zalenium.container.kubernetes;
 
+import de.zalando.ep.zalenium.container.CommandBatch;
+import de.zalando.ep.zalenium.container.CommandResult;
 import de.zalando.ep.zalenium.container.ContainerClient;
 import de.zalando.ep.zalenium.container.ContainerClientRegistration;
 import de.zalando.ep.zalenium.container.ContainerCreationStatus;
+import de.zalando.ep.zalenium.container.LifecycleExecutors;
+import de.zalando.ep.zalenium.container.SharedArtifactsWatcher;
 import de.zalando.ep.zalenium.streams.InputStreamGroupIterator;
 import de.zalando.ep.zalenium.streams.MapInputStreamAdapter;
 import de.zalando.ep.zalenium.streams.TarInputStreamGroupWrapper;
@@ -24,6 +28,7 @@ import io.fabric8.kubernetes.api.model.Toleration;
 import io.fabric8.kubernetes.api.model.Volume;
 import io.fabric8.kubernetes.api.model.VolumeMount;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.dsl.ExecListener;
 import io.fabric8.kubernetes.client.dsl.ExecWatch;
 import okhttp3.Response;
@@ -34,15 +39,18 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.File;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.URL;
 import java.net.UnknownHostException;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -61,6 +69,9 @@ public class KubernetesContainerClient implements ContainerClient {
     private static final String DEFAULT_ZALENIUM_CONTAINER_NAME = "zalenium";
     private static final String ZALENIUM_KUBERNETES_TOLERATIONS = "ZALENIUM_KUBERNETES_TOLERATIONS";
     private static final String ZALENIUM_KUBERNETES_NODE_SELECTOR = "ZALENIUM_KUBERNETES_NODE_SELECTOR";
+    private static final String ZALENIUM_KUBERNETES_PERSISTENT_EXEC = "ZALENIUM_KUBERNETES_PERSISTENT_EXEC";
+    // Upper limit for the commands run in a persistent exec session, the same as for the cleanup of a node.
+    private static final long EXEC_SESSION_TIMEOUT_MINUTES = 3;
 
     private KubernetesClient client;
 
@@ -71,6 +82,13 @@ public class KubernetesContainerClient implements ContainerClient {
     private Map<String, String> createdByZaleniumMap;
     private Map<String, String> appLabelMap;
 
+    private KubernetesPodCache podCache;
+
+    private final boolean persistentExec;
+    private final Map<String, KubernetesExecSession> execSessions = new ConcurrentHashMap<>();
+    // Folder on the shared artifacts volume of each pod, when the volume is mounted.
+    private final Map<String, Path> sharedArtifactFolders = new ConcurrentHashMap<>();
+
     private Map<VolumeMount, Volume> mountedSharedFoldersMap = new HashMap<>();
     private VolumeMount nodeSharedArtifactsMount;
     private List<HostAlias> hostAliases = new ArrayList<>();
@@ -96,6 +114,7 @@ public class KubernetesContainerClient implements ContainerClient {
 
         this.environment = environment;
         this.createDoneablePod = createDoneablePod;
+        this.persistentExec = environment.getBooleanEnvVariable(ZALENIUM_KUBERNETES_PERSISTENT_EXEC, false);
         try {
             this.client = client;
 
@@ -113,6 +132,9 @@ public class KubernetesContainerClient implements ContainerClient {
             createdByZaleniumMap.put("createdBy", appName);
             zaleniumAppName = appName;
 
+            podCache = new KubernetesPodCache(client, createdByZaleniumMap);
+            podCache.start();
+
             discoverFolderMounts();
             discoverHostAliases();
             discoverNodeSelector();
@@ -277,29 +299,21 @@ public class KubernetesContainerClient implements ContainerClient {
     }
 
     private InputStreamGroupIterator copyFilesFromSharedVolume(String containerId, String folderName) {
-        Map<String, File> streams = new HashMap<>();
-
-        Optional<String> oWorkDir = client.pods().withName(containerId).get()
+        Path workDir = sharedArtifactFolders.computeIfAbsent(containerId, podName -> findPod(podName)
                 .getSpec().getContainers().get(0).getEnv()
                 .stream()
                 .filter(env -> env.getName().equals("SHARED_DIR"))
-                .map(env -> env.getValue())
-                .findFirst();
+                .map(env -> Paths.get(env.getValue()))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("SHARED_DIR not present in pod" + containerId)));
 
-        if(!oWorkDir.isPresent()) {
-            throw new RuntimeException("SHARED_DIR not present in pod" + containerId);
-        }
-        String workDir = oWorkDir.get();
-
-        File dir = new File(workDir + folderName);
-        File[] directoryListing = dir.listFiles();
-        for(File f : directoryListing) {
-            if(f.getName().endsWith(".log") || f.getName().endsWith(".mp4")) {
-                streams.put(f.getName(), f);
-            }
+        try {
+            // The files are moved out of the shared volume once they are finished, nothing is read through the API.
+            Path folder = workDir.resolve(StringUtils.strip(folderName, "/"));
+            return new MapInputStreamAdapter(SharedArtifactsWatcher.getInstance().finishedFiles(folder));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-
-        return new MapInputStreamAdapter(streams);
     }
 
     private InputStreamGroupIterator copyFilesThroughCommands(String containerId, String folderName) {
@@ -322,11 +336,91 @@ public class KubernetesContainerClient implements ContainerClient {
 
     @Override
     public void stopContainer(String containerId) {
+        Optional.ofNullable(execSessions.remove(containerId)).ifPresent(KubernetesExecSession::close);
+        Optional.ofNullable(sharedArtifactFolders.remove(containerId)).ifPresent(workDir -> {
+            try {
+                SharedArtifactsWatcher.getInstance().unregister(workDir);
+            } catch (IOException e) {
+                logger.warn("Error removing folder {}", workDir, e);
+            }
+        });
         client.pods().withName(containerId).delete();
     }
 
     @Override
     public void executeCommand(String containerId, String[] command, boolean waitForExecution) {
+        if (persistentExec && command.length == 3 && "bash".equals(command[0]) && "-c".equals(command[1])) {
+            Runnable executeInSession = () -> executeBatch(containerId, Collections.singletonList(command[2]));
+            if (waitForExecution) {
+                executeInSession.run();
+            } else {
+                CompletableFuture.runAsync(executeInSession, LifecycleExecutors.control());
+            }
+            return;
+        }
+        Supplier<String> waitForResultsAndCleanup = startExec(containerId, command);
+        if (waitForExecution) {
+            // If we're going to wait, let's use the same thread
+            waitForResultsAndCleanup.get();
+        }
+        else {
+            // Let the control pool handle waiting for the results, since we don't care when it finishes.
+            CompletableFuture.supplyAsync(waitForResultsAndCleanup, LifecycleExecutors.control());
+        }
+    }
+
+    @Override
+    public List<CommandResult> executeBatch(String containerId, List<String> commands) {
+        CommandBatch batch = new CommandBatch(commands);
+        if (persistentExec) {
+            return executeInSession(containerId, batch);
+        }
+        return batch.parseResults(startExec(containerId, batch.toCommand()).get());
+    }
+
+    private List<CommandResult> executeInSession(String containerId, CommandBatch batch) {
+        KubernetesExecSession session = null;
+        try {
+            session = getExecSession(containerId);
+            logger.debug("{} {}", containerId, batch.getCommands());
+            String output = session.run(batch, EXEC_SESSION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            logger.debug("{} {}", containerId, output);
+            return batch.parseResults(output);
+        } catch (IOException | TimeoutException | KubernetesClientException e) {
+            logger.warn(String.format("%s Failed to execute commands %s", containerId, batch.getCommands()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The session is closed after a failure, the next commands open a new one.
+        if (session != null) {
+            execSessions.remove(containerId, session);
+        }
+        return batch.notExecuted("Exec session failed");
+    }
+
+    /*
+        Opening a session blocks until the websocket is connected, so it is not done inside the map. When two threads
+        open a session for the same pod, the first one published is used and the other one is closed.
+     */
+    private KubernetesExecSession getExecSession(String containerId) {
+        KubernetesExecSession current = execSessions.get(containerId);
+        while (current == null || !current.isOpen()) {
+            KubernetesExecSession opened = new KubernetesExecSession(client, containerId);
+            boolean published = current == null ? execSessions.putIfAbsent(containerId, opened) == null
+                    : execSessions.replace(containerId, current, opened);
+            if (published) {
+                return opened;
+            }
+            opened.close();
+            current = execSessions.get(containerId);
+        }
+        return current;
+    }
+
+    /**
+     * @return a supplier waiting for the command to finish, which returns its output.
+     */
+    private Supplier<String> startExec(String containerId, String[] command) {
         final CountDownLatch latch = new CountDownLatch(1);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
@@ -351,7 +445,7 @@ public class KubernetesContainerClient implements ContainerClient {
             }
         }).exec(command);
 
-        Supplier<Void> waitForResultsAndCleanup = () -> {
+        return () -> {
 
             try {
                 latch.await();
@@ -362,18 +456,11 @@ public class KubernetesContainerClient implements ContainerClient {
             }
 
             logger.debug(String.format("%s completed %s", containerId, Arrays.toString(command)));
-            logger.debug(String.format("%s %s", containerId, baos.toString()));
+            String output = baos.toString();
+            logger.debug(String.format("%s %s", containerId, output));
 
-            return null;
+            return output;
         };
-        if (waitForExecution) {
-            // If we're going to wait, let's use the same thread
-            waitForResultsAndCleanup.get();
-        }
-        else {
-            // Let the common ForkJoinPool handle waiting for the results, since we don't care when it finishes.
-            CompletableFuture.supplyAsync(waitForResultsAndCleanup);
-        }
     }
 
     @Override
@@ -393,19 +480,16 @@ public class KubernetesContainerClient implements ContainerClient {
                                             .map(e -> new EnvVar(e.getKey(), e.getValue(), null))
                                             .collect(Collectors.toList());
 
+        Path workDir = null;
         if(nodeSharedArtifactsMount != null) {
-            String workDir = nodeSharedArtifactsMount.getMountPath() + "/" + UUID.randomUUID().toString();
-            flattenedEnvVars.add(new EnvVar("SHARED_DIR", workDir, null));
-            flattenedEnvVars.add(new EnvVar("VIDEOS_DIR", workDir + "/videos", null));
-            flattenedEnvVars.add(new EnvVar("LOGS_DIR", workDir + "/var/log/cont", null));
-            if (!Files.exists(Paths.get(workDir))) {
-                try {
-                    Files.createDirectories(Paths.get(workDir));
-                    Files.createDirectories(Paths.get(workDir + "/videos"));
-                    Files.createDirectories(Paths.get(workDir + "/var/log/cont"));
-                } catch (IOException e) {
-                    logger.error("Error creating folder {}", workDir, e);
-                }
+            workDir = Paths.get(nodeSharedArtifactsMount.getMountPath(), UUID.randomUUID().toString());
+            flattenedEnvVars.add(new EnvVar("SHARED_DIR", workDir.toString(), null));
+            flattenedEnvVars.add(new EnvVar("VIDEOS_DIR", workDir.resolve(SharedArtifactsWatcher.VIDEOS_FOLDER).toString(), null));
+            flattenedEnvVars.add(new EnvVar("LOGS_DIR", workDir.resolve(SharedArtifactsWatcher.LOGS_FOLDER).toString(), null));
+            try {
+                SharedArtifactsWatcher.getInstance().register(workDir);
+            } catch (IOException e) {
+                logger.error("Error creating folder {}", workDir, e);
             }
         }
 
@@ -440,6 +524,9 @@ public class KubernetesContainerClient implements ContainerClient {
         // Create the container
         Pod createdPod = doneablePod.done();
         String containerName = createdPod.getMetadata() == null ? containerIdPrefix : createdPod.getMetadata().getName();
+        if (workDir != null) {
+            sharedArtifactFolders.put(containerName, workDir);
+        }
         return new ContainerCreationStatus(true, containerName, containerName, nodePort);
     }
 
@@ -452,9 +539,15 @@ public class KubernetesContainerClient implements ContainerClient {
         Runtime.getRuntime().addShutdownHook(new Thread(this::deleteSeleniumPods, "KubernetesContainerClient shutdown hook"));
     }
 
+    @Override
+    public int getDefaultMaxConcurrentCreations() {
+        // Creating a pod is only an API call, the cluster schedules and pulls the images.
+        return 10;
+    }
+
     @Override
     public String getContainerIp(String containerName) {
-        Pod pod = client.pods().withName(containerName).get();
+        Pod pod = findPod(containerName);
         if (pod != null) {
             String podIP = pod.getStatus().getPodIP();
             logger.debug(String.format("Pod %s, IP -> %s", containerName, podIP));
@@ -466,7 +559,7 @@ public class KubernetesContainerClient implements ContainerClient {
     }
 
     public boolean isReady(ContainerCreationStatus container) {
-        Pod pod = client.pods().withName(container.getContainerName()).get();
+        Pod pod = findPod(container.getContainerName());
         if (pod == null) {
             return false;
         }
@@ -480,7 +573,7 @@ public class KubernetesContainerClient implements ContainerClient {
     }
 
     public boolean isTerminated(ContainerCreationStatus container) {
-        Pod pod = client.pods().withName(container.getContainerName()).get();
+        Pod pod = findPod(container.getContainerName());
         if (pod == null) {
             logger.info("Container {} has no pod - terminal.", container);
             return true;
@@ -498,6 +591,28 @@ public class KubernetesContainerClient implements ContainerClient {
         }
     }
 
+    /**
+     * Looks up the pod in the pod cache, asking the API server when the cache is not watching the pods or has not
+     * received the pod yet, e.g. right after it was created.
+     */
+    private Pod findPod(String name) {
+        Pod pod = podCache != null && podCache.isSynced() ? podCache.getPod(name) : null;
+        return pod != null ? pod : client.pods().withName(name).get();
+    }
+
+    private Pod findPodByIp(String podIpAddress) {
+        Pod pod = podCache != null && podCache.isSynced() ? podCache.getPodByIp(podIpAddress) : null;
+        if (pod != null) {
+            return pod;
+        }
+        // The only way to lookup a pod name by IP address is by looking at all pods in the namespace it seems.
+        PodList list = client.pods().withLabels(createdByZaleniumMap).list();
+        return list.getItems().stream()
+                .filter(item -> podIpAddress.equals(item.getStatus().getPodIP()))
+                .findFirst()
+                .orElse(null);
+    }
+
     private void deleteSeleniumPods() {
         logger.info("About to clean up any left over docker-selenium pods created by Zalenium");
         client.pods().withLabels(createdByZaleniumMap).delete();
@@ -507,23 +622,12 @@ public class KubernetesContainerClient implements ContainerClient {
     public ContainerClientRegistration registerNode(String zaleniumContainerName, URL remoteHost) {
         String podIpAddress = remoteHost.getHost();
 
-        // The only way to lookup a pod name by IP address is by looking at all pods in the namespace it seems.
-        PodList list = client.pods().withLabels(createdByZaleniumMap).list();
-
-        String containerId = null;
-        Pod currentPod = null;
-        for (Pod pod : list.getItems()) {
-
-            if (podIpAddress.equals(pod.getStatus().getPodIP())) {
-                containerId = pod.getMetadata().getName();
-                currentPod = pod;
-                break;
-            }
-        }
+        Pod currentPod = findPodByIp(podIpAddress);
 
-        if (containerId == null) {
+        if (currentPod == null) {
             throw new IllegalStateException("Unable to locate pod by ip address, registration will fail");
         }
+        String containerId = currentPod.getMetadata().getName();
         ContainerClientRegistration registration = new ContainerClientRegistration();
 
         List<EnvVar> podEnvironmentVariables = currentPod.getSpec().getContainers().get(0).getEnv();
@@ -0,0 +1,161 @@
+package de.zalando.ep.zalenium.container.kubernetes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.zalando.ep.zalenium.container.CommandBatch;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.ExecListener;
+import io.fabric8.kubernetes.client.dsl.ExecWatch;
+import net.jcip.annotations.ThreadSafe;
+import okhttp3.Response;
+
+/**
+ * A bash shell kept open in a pod, so running commands in it does not need to open a new exec websocket each time.
+ *
+ * Batches are written to the input of the shell one at a time. The output is scanned as it arrives for the marker
+ * printed after the last command of the batch, which completes it. A session that fails or times out is closed and
+ * cannot be used anymore, a new one has to be opened.
+ */
+@ThreadSafe
+class KubernetesExecSession implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(KubernetesExecSession.class.getName());
+
+    private final String podName;
+    private final BatchOutput output = new BatchOutput();
+    private final ExecWatch exec;
+    private volatile boolean closed = false;
+
+    KubernetesExecSession(KubernetesClient client, String podName) {
+        this.podName = podName;
+        this.exec = client.pods().withName(podName)
+                .redirectingInput()
+                .writingOutput(output)
+                .writingError(output)
+                .usingListener(new ExecListener() {
+
+                    @Override
+                    public void onOpen(Response response) {
+                        logger.debug("{} Exec session opened", podName);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t, Response response) {
+                        logger.debug(String.format("%s Exec session failed", podName), t);
+                        fail(t);
+                    }
+
+                    @Override
+                    public void onClose(int code, String reason) {
+                        logger.debug("{} Exec session closed: {}", podName, reason);
+                        fail(new IOException("Exec session closed: " + reason));
+                    }
+                }).exec("bash");
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Runs the batch in the shell and waits for it.
+     *
+     * @return the output of the batch, to parse with {@link CommandBatch#parseResults(String)}.
+     */
+    synchronized String run(CommandBatch batch, long timeout, TimeUnit unit)
+            throws IOException, InterruptedException, TimeoutException {
+        if (closed) {
+            throw new IOException(podName + " Exec session is closed");
+        }
+        CompletableFuture<String> completed = output.expect(batch.getCompletionMarker());
+        try {
+            OutputStream input = exec.getInput();
+            input.write(batch.toScript().getBytes(StandardCharsets.UTF_8));
+            input.flush();
+            return completed.get(timeout, unit);
+        } catch (ExecutionException e) {
+            close();
+            throw new IOException(podName + " Exec session failed", e.getCause());
+        } catch (IOException | InterruptedException | TimeoutException e) {
+            // The shell might still be running the batch, its output would be mixed with the one of the next batch.
+            close();
+            throw e;
+        }
+    }
+
+    private void fail(Throwable cause) {
+        closed = true;
+        output.fail(cause);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            output.fail(new IOException("Exec session closed"));
+            exec.close();
+        }
+    }
+
+    /*
+        Collects the output of the running batch, line by line, until the completion marker arrives.
+     */
+    private static class BatchOutput extends ByteArrayOutputStream {
+
+        private byte[] completionMarker = new byte[0];
+        private int lineStart = 0;
+        private CompletableFuture<String> completed = CompletableFuture.completedFuture("");
+
+        synchronized CompletableFuture<String> expect(String marker) {
+            reset();
+            lineStart = 0;
+            completionMarker = marker.getBytes(StandardCharsets.UTF_8);
+            completed = new CompletableFuture<>();
+            return completed;
+        }
+
+        synchronized void fail(Throwable cause) {
+            completed.completeExceptionally(cause);
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            super.write(b);
+            if (b == '\n') {
+                if (!completed.isDone() && isCompletionLine()) {
+                    completed.complete(new String(buf, 0, count, StandardCharsets.UTF_8));
+                }
+                lineStart = count;
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        private boolean isCompletionLine() {
+            if (count - lineStart <= completionMarker.length) {
+                return false;
+            }
+            for (int i = 0; i < completionMarker.length; i++) {
+                if (buf[lineStart + i] != completionMarker[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package de.zalando.ep.zalenium.container.kubernetes;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Local copy of the docker-selenium pods, indexed by name and by pod IP, so the readiness checks and the node
+ * registration do not call the API server for every pod.
+ *
+ * The pods with the given labels are listed once and then kept current from a watch started at the resource version
+ * of that list. When the watch closes with an error, e.g. because the resource version is too old, the pods are
+ * listed again and a new watch is started. While that happens the copy is not trusted, see {@link #isSynced()}.
+ */
+@ThreadSafe
+class KubernetesPodCache implements Watcher<Pod> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KubernetesPodCache.class.getName());
+    private static final long RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+    private final KubernetesClient client;
+    private final Map<String, String> labels;
+    private final Map<String, Pod> podsByName = new ConcurrentHashMap<>();
+    private final Map<String, String> podNamesByIp = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService resyncExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("KubernetesPodCache").setDaemon(true).build());
+    private volatile Watch watch;
+    private volatile boolean synced = false;
+    private volatile boolean stopped = false;
+
+    KubernetesPodCache(KubernetesClient client, Map<String, String> labels) {
+        this.client = client;
+        this.labels = labels;
+    }
+
+    /**
+     * Lists the pods and starts watching them, retrying in the background if that fails.
+     */
+    void start() {
+        resync();
+    }
+
+    void stop() {
+        stopped = true;
+        synced = false;
+        resyncExecutor.shutdownNow();
+        closeWatch();
+    }
+
+    /**
+     * False until the pods are listed and watched, and while the watch is reconnecting. The cached pods may be
+     * outdated then.
+     */
+    boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * @return the cached pod with the given name, or null if it is not known.
+     */
+    Pod getPod(String name) {
+        return name == null ? null : podsByName.get(name);
+    }
+
+    /**
+     * @return the cached pod with the given IP, or null if no known pod has that IP yet.
+     */
+    Pod getPodByIp(String podIp) {
+        String name = podIp == null ? null : podNamesByIp.get(podIp);
+        return getPod(name);
+    }
+
+    @Override
+    public void eventReceived(Action action, Pod pod) {
+        if (pod == null || pod.getMetadata() == null || pod.getMetadata().getName() == null) {
+            return;
+        }
+        switch (action) {
+            case ADDED:
+            case MODIFIED:
+                put(pod);
+                break;
+            case DELETED:
+                remove(pod.getMetadata().getName());
+                break;
+            default:
+                return;
+        }
+        LOGGER.debug("Pod {} {}.", pod.getMetadata().getName(), action);
+    }
+
+    @Override
+    public void onClose(KubernetesClientException cause) {
+        if (stopped) {
+            return;
+        }
+        synced = false;
+        LOGGER.warn("Pod watch closed, calling the Kubernetes API directly until it is back.");
+        LOGGER.debug("Pod watch closed.", cause);
+        scheduleResync();
+    }
+
+    private synchronized void resync() {
+        if (stopped) {
+            return;
+        }
+        closeWatch();
+        synced = false;
+        try {
+            PodList list = client.pods().withLabels(labels).list();
+            Set<String> listed = new HashSet<>();
+            for (Pod pod : list.getItems()) {
+                if (pod.getMetadata() != null && pod.getMetadata().getName() != null) {
+                    put(pod);
+                    listed.add(pod.getMetadata().getName());
+                }
+            }
+            podsByName.keySet().stream()
+                    .filter(name -> !listed.contains(name))
+                    .collect(Collectors.toSet())
+                    .forEach(this::remove);
+            String resourceVersion = list.getMetadata() == null ? null : list.getMetadata().getResourceVersion();
+            watch = resourceVersion == null ? client.pods().withLabels(labels).watch(this)
+                    : client.pods().withLabels(labels).withResourceVersion(resourceVersion).watch(this);
+            synced = true;
+            LOGGER.debug("Watching {} pods labeled {}.", listed.size(), labels);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to watch the pods labeled {}, calling the Kubernetes API directly until it works.",
+                    labels);
+            LOGGER.debug("Failed to watch the pods.", e);
+            scheduleResync();
+        }
+    }
+
+    private void scheduleResync() {
+        if (!stopped) {
+            resyncExecutor.schedule(this::resync, RECONNECT_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void closeWatch() {
+        Watch current = watch;
+        watch = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (Exception e) {
+                LOGGER.debug("Failed to close the pod watch.", e);
+            }
+        }
+    }
+
+    private void put(Pod pod) {
+        String name = pod.getMetadata().getName();
+        Pod previous = podsByName.put(name, pod);
+        String previousIp = podIp(previous);
+        String podIp = podIp(pod);
+        if (previousIp != null && !previousIp.equals(podIp)) {
+            podNamesByIp.remove(previousIp, name);
+        }
+        if (podIp != null) {
+            podNamesByIp.put(podIp, name);
+        }
+    }
+
+    private void remove(String name) {
+        Pod removed = podsByName.remove(name);
+        String podIp = podIp(removed);
+        if (podIp != null) {
+            podNamesByIp.remove(podIp, name);
+        }
+    }
+
+    private static String podIp(Pod pod) {
+        return pod == null || pod.getStatus() == null ? null : pod.getStatus().getPodIP();
+    }
+}
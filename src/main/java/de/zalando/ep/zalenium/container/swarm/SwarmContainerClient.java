@@ -6,6 +6,8 @@ import com.spotify.docker.client.exceptions.DockerException;
 import com.spotify.docker.client.messages.*;
 import com.spotify.docker.client.messages.mount.Mount;
 import com.spotify.docker.client.messages.swarm.*;
+import de.zalando.ep.zalenium.container.CommandBatch;
+import de.zalando.ep.zalenium.container.CommandResult;
 import de.zalando.ep.zalenium.container.ContainerClient;
 import de.zalando.ep.zalenium.container.ContainerClientRegistration;
 import de.zalando.ep.zalenium.container.ContainerCreationStatus;
@@ -162,19 +164,31 @@ public class SwarmContainerClient implements ContainerClient {
         }
     }
 
+    public List<CommandResult> executeBatch(String containerId, List<String> commands) {
+        CommandBatch batch = new CommandBatch(commands);
+        try {
+            Task task = SwarmUtilities.getTaskByContainerId(containerId);
+            if (task == null) {
+                logger.warn("Couldn't execute commands on container {}", containerId);
+                return batch.notExecuted("Task not found");
+            }
+            pullSwarmExecImage();
+            logger.debug("Executing commands: {} - on Container: {}", commands, containerId);
+            // The whole batch runs in a single exec container, its output holds the results of all commands.
+            List<String> execCmd = new ArrayList<>(Arrays.asList("task-exec", task.id()));
+            execCmd.addAll(Arrays.asList(batch.toCommand()));
+            return batch.parseResults(SwarmUtilities.runContainer(buildSwarmExecContainerConfig(execCmd, false)));
+        } catch (DockerException | InterruptedException e) {
+            logger.warn("Error while executing commands on container {}", containerId);
+            ga.trackException(e);
+            return batch.notExecuted(String.valueOf(e.getMessage()));
+        }
+    }
+
     private void startSwarmExecContainer(Task task, String[] command, String containerId) throws DockerException, InterruptedException {
         String taskId = task.id();
         List<String> parsedCmd = new ArrayList<>();
         String [] splittedCmd = (command[2].replace("notify 'Zalenium'", "notify, Zalenium")).split(",");
-        List<String> binds = new ArrayList<>();
-
-        binds.add("/var/run/docker.sock:/var/run/docker.sock");
-
-        HostConfig.Builder hostConfigBuilder = HostConfig.builder()
-                .autoRemove(true)
-                .appendBinds(binds);
-
-        HostConfig hostConfig = hostConfigBuilder.build();
 
         parsedCmd.add("task-exec");
         parsedCmd.add(taskId);
@@ -184,13 +198,25 @@ public class SwarmContainerClient implements ContainerClient {
                 Arrays.toString(command),
                 containerId);
 
-        ContainerConfig containerConfig = ContainerConfig.builder()
+        SwarmUtilities.startContainer(buildSwarmExecContainerConfig(parsedCmd, true));
+    }
+
+    private ContainerConfig buildSwarmExecContainerConfig(List<String> cmd, boolean autoRemove) {
+        List<String> binds = new ArrayList<>();
+
+        binds.add("/var/run/docker.sock:/var/run/docker.sock");
+
+        HostConfig.Builder hostConfigBuilder = HostConfig.builder()
+                .autoRemove(autoRemove)
+                .appendBinds(binds);
+
+        HostConfig hostConfig = hostConfigBuilder.build();
+
+        return ContainerConfig.builder()
                 .image(SWARM_EXEC_IMAGE)
                 .hostConfig(hostConfig)
-                .cmd(parsedCmd)
+                .cmd(cmd)
                 .build();
-
-        SwarmUtilities.startContainer(containerConfig);
     }
 
     public String getLatestDownloadedImage(String imageName) {
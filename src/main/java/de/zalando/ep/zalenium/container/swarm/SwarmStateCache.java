@@ -0,0 +1,190 @@
+package de.zalando.ep.zalenium.container.swarm;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.exceptions.DockerException;
+import com.spotify.docker.client.messages.swarm.ContainerStatus;
+import com.spotify.docker.client.messages.swarm.NetworkAttachment;
+import com.spotify.docker.client.messages.swarm.Task;
+import com.spotify.docker.client.messages.swarm.TaskStatus;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Snapshot of the Swarm tasks, indexed by container id, task IP address and service id, so looking up the task of a
+ * node does not list and walk every task of the swarm.
+ *
+ * The snapshot is replaced periodically in the background and readers never block on it. A lookup that finds nothing
+ * takes a new snapshot first, lookups missing at the same time share that snapshot instead of listing the tasks each.
+ *
+ * Lookups by IP always take a new snapshot: overlay networks give the address of a stopped task to the next one, so
+ * an older snapshot can hold a task that is gone under the address of a node registering now.
+ */
+@ThreadSafe
+class SwarmStateCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SwarmStateCache.class.getName());
+    private static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    private final DockerClient dockerClient;
+    private final AtomicReference<CompletableFuture<Snapshot>> refreshInProgress = new AtomicReference<>();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("SwarmStateRefresher").setDaemon(true).build());
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    SwarmStateCache(DockerClient dockerClient) {
+        this.dockerClient = dockerClient;
+    }
+
+    Task getTaskByContainerId(String containerId) throws DockerException, InterruptedException {
+        return lookup(current -> current.tasksByContainerId.get(containerId));
+    }
+
+    /**
+     * Used when a node registers, which happens once per node, so it is not worth trusting an older snapshot.
+     */
+    Task getTaskByIp(String ipAddress) throws DockerException, InterruptedException {
+        startRefreshing();
+        return refresh().tasksByIp.get(ipAddress);
+    }
+
+    /**
+     * @return a task of the service that already has a container, or null if there is none yet.
+     */
+    Task getTaskByServiceId(String serviceId) throws DockerException, InterruptedException {
+        return lookup(current -> current.tasksByServiceId.get(serviceId));
+    }
+
+    void stop() {
+        refresher.shutdownNow();
+    }
+
+    private <T> T lookup(Function<Snapshot, T> index) throws DockerException, InterruptedException {
+        startRefreshing();
+        T found = index.apply(snapshot);
+        return found != null ? found : index.apply(refresh());
+    }
+
+    private void startRefreshing() {
+        if (!started.getAndSet(true)) {
+            refresher.scheduleWithFixedDelay(this::refreshInBackground, REFRESH_INTERVAL, REFRESH_INTERVAL,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refreshInBackground() {
+        try {
+            refresh();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.warn("Failed to refresh the Swarm tasks.", e);
+        }
+    }
+
+    /**
+     * Takes a new snapshot, or waits for the one being taken by another thread.
+     */
+    private Snapshot refresh() throws DockerException, InterruptedException {
+        while (true) {
+            CompletableFuture<Snapshot> inProgress = refreshInProgress.get();
+            if (inProgress != null) {
+                return await(inProgress);
+            }
+            CompletableFuture<Snapshot> own = new CompletableFuture<>();
+            if (!refreshInProgress.compareAndSet(null, own)) {
+                continue;
+            }
+            try {
+                Snapshot taken = Snapshot.of(dockerClient.listTasks());
+                snapshot = taken;
+                own.complete(taken);
+                LOGGER.debug("Refreshed {} Swarm tasks.", taken.tasksByContainerId.size());
+                return taken;
+            } catch (DockerException | InterruptedException | RuntimeException e) {
+                own.completeExceptionally(e);
+                throw e;
+            } finally {
+                refreshInProgress.set(null);
+            }
+        }
+    }
+
+    private static Snapshot await(CompletableFuture<Snapshot> refresh) throws DockerException, InterruptedException {
+        try {
+            return refresh.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DockerException) {
+                throw (DockerException) e.getCause();
+            }
+            if (e.getCause() instanceof InterruptedException) {
+                throw new InterruptedException(e.getCause().getMessage());
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyMap());
+
+        private final Map<String, Task> tasksByContainerId;
+        private final Map<String, Task> tasksByIp;
+        private final Map<String, Task> tasksByServiceId;
+
+        private Snapshot(Map<String, Task> tasksByContainerId, Map<String, Task> tasksByIp,
+                         Map<String, Task> tasksByServiceId) {
+            this.tasksByContainerId = tasksByContainerId;
+            this.tasksByIp = tasksByIp;
+            this.tasksByServiceId = tasksByServiceId;
+        }
+
+        private static Snapshot of(List<Task> tasks) {
+            Map<String, Task> tasksByContainerId = new HashMap<>();
+            Map<String, Task> tasksByIp = new HashMap<>();
+            Map<String, Task> tasksByServiceId = new HashMap<>();
+            for (Task task : CollectionUtils.emptyIfNull(tasks)) {
+                ContainerStatus containerStatus = task.status() == null ? null : task.status().containerStatus();
+                if (containerStatus == null || containerStatus.containerId() == null) {
+                    // Not scheduled yet, it will be looked up again once it has a container.
+                    continue;
+                }
+                tasksByContainerId.put(containerStatus.containerId(), task);
+                // A restarted service has a task per attempt and addresses of old tasks are reused, the task meant
+                // to be running is the current one.
+                if (task.serviceId() != null) {
+                    tasksByServiceId.merge(task.serviceId(), task, Snapshot::current);
+                }
+                for (NetworkAttachment networkAttachment : CollectionUtils.emptyIfNull(task.networkAttachments())) {
+                    for (String address : CollectionUtils.emptyIfNull(networkAttachment.addresses())) {
+                        tasksByIp.merge(address.split("/")[0], task, Snapshot::current);
+                    }
+                }
+            }
+            return new Snapshot(tasksByContainerId, tasksByIp, tasksByServiceId);
+        }
+
+        private static Task current(Task listed, Task other) {
+            return TaskStatus.TASK_STATE_RUNNING.equals(other.desiredState()) ? other : listed;
+        }
+    }
+}
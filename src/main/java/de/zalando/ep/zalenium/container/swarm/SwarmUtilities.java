@@ -5,6 +5,7 @@ import com.google.common.collect.ImmutableMap;
 import com.spotify.docker.client.AnsiProgressHandler;
 import com.spotify.docker.client.DefaultDockerClient;
 import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.LogStream;
 import com.spotify.docker.client.exceptions.DockerException;
 import com.spotify.docker.client.messages.*;
 
@@ -35,16 +36,23 @@ public class SwarmUtilities {
             // https://github.com/spotify/docker-client/issues/946
             .replace("tcp", "http");
     private static final DockerClient dockerClient = new DefaultDockerClient(dockerHost);
+    private static final SwarmStateCache stateCache = new SwarmStateCache(dockerClient);
 
-    public static synchronized ContainerInfo getContainerByIp(String ipAddress) {
+    public static ContainerInfo getContainerByIp(String ipAddress) {
         try {
+            Task task = stateCache.getTaskByIp(ipAddress);
+            if (task != null) {
+                return dockerClient.inspectContainer(task.status().containerStatus().containerId());
+            }
+
+            // Containers that are not swarm tasks are only found by looking through the networks.
             List<Network> networks = dockerClient.listNetworks();
             for (Network network : CollectionUtils.emptyIfNull(networks)) {
                 Network networkInfo = dockerClient.inspectNetwork(network.name());
                 ImmutableMap<String, Network.Container> containers = networkInfo.containers();
 
                 for (Map.Entry<String, Network.Container> container : MapUtils.emptyIfNull(containers).entrySet()) {
-                    if (container.getValue().ipv4Address().startsWith(ipAddress)) {
+                    if (container.getValue().ipv4Address().split("/")[0].equals(ipAddress)) {
                         return dockerClient.inspectContainer(container.getKey());
                     }
                 }
@@ -58,67 +66,35 @@ public class SwarmUtilities {
         return null;
     }
 
-    public static synchronized List<Container> getRunningAndCreatedContainers() throws DockerException, InterruptedException {
+    public static List<Container> getRunningAndCreatedContainers() throws DockerException, InterruptedException {
         return dockerClient.listContainers(withStatusRunning(), withStatusCreated());
     }
 
-    public static synchronized ContainerStatus getContainerByRemoteUrl(URL remoteUrl) throws DockerException, InterruptedException {
-        List<Task> tasks = dockerClient.listTasks();
-        for (Task task : tasks) {
-            for (NetworkAttachment networkAttachment : CollectionUtils.emptyIfNull(task.networkAttachments())) {
-                for (String address : networkAttachment.addresses()) {
-                    if (address.split("/")[0].equals(remoteUrl.getHost())) {
-                        return task.status().containerStatus();
-                    }
-                }
-            }
-        }
-
-        return null;
+    public static ContainerStatus getContainerByRemoteUrl(URL remoteUrl) throws DockerException, InterruptedException {
+        Task task = stateCache.getTaskByIp(remoteUrl.getHost());
+        return task == null ? null : task.status().containerStatus();
     }
 
-    public static synchronized void stopServiceByContainerId(String containerId) throws DockerException, InterruptedException {
-        List<Task> tasks = dockerClient.listTasks();
-        for (Task task : tasks) {
-            ContainerStatus containerStatus = task.status().containerStatus();
-            if (containerStatus != null && containerId.equals(containerStatus.containerId())) {
-                String serviceId = task.serviceId();
-                Service.Criteria criteria = Service.Criteria.builder()
-                        .serviceId(serviceId)
-                        .build();
-                List<Service> services = dockerClient.listServices(criteria);
-                if (!CollectionUtils.isEmpty(services)) {
-                    dockerClient.removeService(serviceId);
-                }
+    public static void stopServiceByContainerId(String containerId) throws DockerException, InterruptedException {
+        Task task = stateCache.getTaskByContainerId(containerId);
+        if (task != null) {
+            String serviceId = task.serviceId();
+            Service.Criteria criteria = Service.Criteria.builder()
+                    .serviceId(serviceId)
+                    .build();
+            List<Service> services = dockerClient.listServices(criteria);
+            if (!CollectionUtils.isEmpty(services)) {
+                dockerClient.removeService(serviceId);
             }
         }
     }
 
-    public static synchronized Task getTaskByContainerId(String containerId) throws DockerException, InterruptedException {
-        List<Task> tasks = dockerClient.listTasks();
-
-        for (Task task : CollectionUtils.emptyIfNull(tasks)) {
-            ContainerStatus containerStatus = task.status().containerStatus();
-
-            if (containerStatus != null && containerId.equals(containerStatus.containerId())) {
-                return task;
-            }
-        }
-
-        return null;
+    public static Task getTaskByContainerId(String containerId) throws DockerException, InterruptedException {
+        return stateCache.getTaskByContainerId(containerId);
     }
 
-    public static synchronized Task getTaskByServiceId(String serviceId) throws DockerException, InterruptedException {
-        String serviceName = dockerClient.inspectService(serviceId).spec().name();
-        Task.Criteria criteria = Task.Criteria.builder().serviceName(serviceName).build();
-        List<Task> tasks = dockerClient.listTasks(criteria);
-        Task task = null;
-
-        if (!CollectionUtils.isEmpty(tasks)) {
-            task = tasks.get(0);
-        }
-
-        return task;
+    public static Task getTaskByServiceId(String serviceId) throws DockerException, InterruptedException {
+        return stateCache.getTaskByServiceId(serviceId);
     }
 
     public static synchronized void pullImageIfNotPresent(String imageName) throws DockerException, InterruptedException {
@@ -128,12 +104,32 @@ public class SwarmUtilities {
         }
     }
 
-    public static synchronized void startContainer(ContainerConfig containerConfig) throws DockerException, InterruptedException {
+    public static void startContainer(ContainerConfig containerConfig) throws DockerException, InterruptedException {
         ContainerCreation containerCreation = dockerClient.createContainer(containerConfig);
         dockerClient.startContainer(containerCreation.id());
     }
 
-    public static synchronized ServiceCreateResponse createService(ServiceSpec serviceSpec) throws DockerException, InterruptedException {
+    /**
+     * Starts the container, waits for it to exit and removes it.
+     *
+     * @return the output of the container.
+     */
+    public static String runContainer(ContainerConfig containerConfig) throws DockerException, InterruptedException {
+        ContainerCreation containerCreation = dockerClient.createContainer(containerConfig);
+        String containerId = containerCreation.id();
+        try {
+            dockerClient.startContainer(containerId);
+            dockerClient.waitContainer(containerId);
+            try (LogStream logs = dockerClient.logs(containerId, DockerClient.LogsParam.stdout(),
+                    DockerClient.LogsParam.stderr())) {
+                return logs.readFully();
+            }
+        } finally {
+            dockerClient.removeContainer(containerId, DockerClient.RemoveContainerParam.forceKill());
+        }
+    }
+
+    public static ServiceCreateResponse createService(ServiceSpec serviceSpec) throws DockerException, InterruptedException {
         return dockerClient.createService(serviceSpec);
     }
 
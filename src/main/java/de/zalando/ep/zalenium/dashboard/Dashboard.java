@@ -1,9 +1,7 @@
 package de.zalando.ep.zalenium.dashboard;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import de.zalando.ep.zalenium.util.CommonProxyUtilities;
@@ -13,17 +11,13 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +32,8 @@ public class Dashboard implements DashboardInterface {
 
     public static final String VIDEOS_FOLDER_NAME = "videos";
     public static final String LOGS_FOLDER_NAME = "logs";
+    // Folders the running nodes write their artifacts to, they are not removed when the dashboard is reset.
+    public static final String SHARED_ARTIFACTS_FOLDER_NAME = ".artifacts";
     private static final String TEST_COUNT_FILE = "executedTestsInfo.json";
     private static final String TEST_INFORMATION_FILE = "testInformation.json";
     private static final String DASHBOARD_FILE = "dashboard.html";
@@ -57,6 +53,8 @@ public class Dashboard implements DashboardInterface {
     private static int executedTests = 0;
     private static int executedTestsWithVideo = 0;
     private static int retentionPeriod = 3;
+    private static TestHistory testHistory;
+    private static DashboardPages dashboardPages;
 
     public Dashboard() {
         retentionPeriod = env.getIntEnvVariable(ZALENIUM_RETENTION_PERIOD, DEFAULT_RETENTION_PERIOD);
@@ -88,18 +86,30 @@ public class Dashboard implements DashboardInterface {
     }
 
     public synchronized void updateDashboard(TestInformation testInformation) {
+        updateDashboard(Collections.singletonList(testInformation));
+    }
+
+    /**
+     * Adds several tests at once, the test count and the dashboard files are written once for all of them.
+     */
+    @Override
+    public synchronized void updateDashboard(List<TestInformation> testsInformation) {
         File testCountFile = new File(getLocalVideosPath(), TEST_COUNT_FILE);
-        testInformation.setRetentionDate(commonProxyUtilities.getDateAndTime(testInformation.getTimestamp(), retentionPeriod));
+        for (TestInformation testInformation : testsInformation) {
+            testInformation.setRetentionDate(commonProxyUtilities.getDateAndTime(testInformation.getTimestamp(),
+                    retentionPeriod));
+        }
 
         try {
             synchronizeExecutedTestsValues(testCountFile);
-            testInformation.buildSeleniumLogFileName();
-            testInformation.buildBrowserDriverLogFileName();
-            testInformation.setAddedToDashboardTime(new Date().getTime());
+            for (TestInformation testInformation : testsInformation) {
+                testInformation.buildSeleniumLogFileName();
+                testInformation.buildBrowserDriverLogFileName();
 
-            executedTests++;
-            if (testInformation.isVideoRecorded()) {
-                executedTestsWithVideo++;
+                executedTests++;
+                if (testInformation.isVideoRecorded()) {
+                    executedTestsWithVideo++;
+                }
             }
 
             LOGGER.debug("Test count: " + executedTests);
@@ -135,19 +145,15 @@ public class Dashboard implements DashboardInterface {
                 FileUtils.copyDirectory(new File(getCurrentLocalPath() + IMG_FOLDER), imgFolder);
                 CommonProxyUtilities.setFilePermissions(imgFolder.toPath());
             }
-            saveTestInformation(testInformation);
+            getTestHistory().add(testsInformation);
+            getDashboardPages().add(testsInformation, getTestHistory());
         } catch (IOException e) {
             LOGGER.warn("Error while updating the dashboard.", e);
         }
     }
 
     public synchronized void cleanupDashboard() throws IOException {
-        List<TestInformation> informationList = loadTestInformationFromFile();
-        Map<Boolean, List<TestInformation>> partitioned = informationList.stream()
-                .collect(Collectors.partitioningBy(testInformation -> testInformation.getRetentionDate().getTime() > new Date().getTime()));
-
-        List<TestInformation> validTestsInformation = partitioned.get(true);
-        List<TestInformation> invalidTestsInformation = partitioned.get(false);
+        List<TestInformation> invalidTestsInformation = getTestHistory().removeExpired();
 
         if(invalidTestsInformation.size() > 0) {
             LOGGER.info("Cleaning up " + invalidTestsInformation.size() + " test(s) from Dashboard");
@@ -156,14 +162,16 @@ public class Dashboard implements DashboardInterface {
                 deleteIfExists(new File(getLocalVideosPath() + "/" + testInformation.getFileName()));
                 deleteIfExists(new File(testInformation.getLogsFolderPath()));
             }
+            getDashboardPages().retain(getTestHistory().getSegmentStarts());
 
             cleanupFiles(false);
-            dumpTestInformationToFile(validTestsInformation);
         }
     }
 
     public synchronized void resetDashboard() throws IOException {
         LOGGER.info("Resetting Dashboard");
+        getTestHistory().clear();
+        getDashboardPages().clear();
         cleanupFiles(true);
     }
 
@@ -175,18 +183,30 @@ public class Dashboard implements DashboardInterface {
         deleteIfExists(testCountFile);
 
         if (reset) {
-            File videosFolder = new File(getLocalVideosPath());
-            FileUtils.cleanDirectory(videosFolder);
+            File[] videosFolderFiles = new File(getLocalVideosPath()).listFiles();
+            if (videosFolderFiles == null) {
+                throw new IOException("Failed to list the files of " + getLocalVideosPath());
+            }
+            for (File file : videosFolderFiles) {
+                if (!SHARED_ARTIFACTS_FOLDER_NAME.equals(file.getName())) {
+                    FileUtils.forceDelete(file);
+                }
+            }
         }
 
         setupDashboardFile(dashboardHtml);
     }
 
     private void setupDashboardFile(File dashboardHtml) throws IOException {
-        String dashboard = FileUtils.readFileToString(new File(getCurrentLocalPath(), DASHBOARD_TEMPLATE_FILE), UTF_8);
-        dashboard = dashboard.replace("{retentionPeriod}", String.valueOf(retentionPeriod));
-        FileUtils.writeStringToFile(dashboardHtml, dashboard, UTF_8);
-        CommonProxyUtilities.setFilePermissions(dashboardHtml.toPath());
+        getDashboardPages().writeDashboard(dashboardHtml.toPath(), getDashboardTemplateFile(), getDashboardValues());
+    }
+
+    private static Path getDashboardTemplateFile() {
+        return Paths.get(getCurrentLocalPath(), DASHBOARD_TEMPLATE_FILE);
+    }
+
+    private static Map<String, String> getDashboardValues() {
+        return Collections.singletonMap("retentionPeriod", String.valueOf(retentionPeriod));
     }
 
     public static void deleteIfExists(File file) {
@@ -219,122 +239,66 @@ public class Dashboard implements DashboardInterface {
         }
     }
 
-    @VisibleForTesting
-    public static List<TestInformation> loadTestInformationFromFile() {
-        try {
-            List<TestInformation> testInformation = new ArrayList<>();
-            File testInformationFile = new File(getLocalVideosPath(), TEST_INFORMATION_FILE);
-            if (testInformationFile.exists()) {
-                List<String> lines = FileUtils.readLines(testInformationFile, UTF_8);
-                Gson gson = new Gson();
-                for (String line : lines) {
-                    testInformation.add(gson.fromJson(line, TestInformation.class));
-                }
-            }
-            return testInformation;
-        } catch (Exception e) {
-            LOGGER.warn(e.toString(), e);
+    /**
+     * @return the history of the tests in the videos folder, the tests of a previous testInformation.json are moved
+     * into it the first time.
+     */
+    static synchronized TestHistory getTestHistory() {
+        Path folder = Paths.get(getLocalVideosPath(), TestHistory.FOLDER_NAME);
+        if (testHistory == null || !testHistory.getFolder().equals(folder)) {
+            testHistory = new TestHistory(folder);
+            importTestInformationFile(testHistory);
         }
-        return new ArrayList<>();
+        return testHistory;
     }
 
-    public static void dumpTestInformationToFile(List<TestInformation> testInformationList) {
-        try {
-            File testInformationFile = new File(getLocalVideosPath(), TEST_INFORMATION_FILE);
-            // Emptying the file first and then replacing it with what comes from testInformationList
-            FileUtils.writeStringToFile(testInformationFile, "", UTF_8);
-            Gson gson = new GsonBuilder().create();
-            for (TestInformation information : testInformationList) {
-                FileUtils.writeStringToFile(testInformationFile, gson.toJson(information) + System.lineSeparator(),
-                    UTF_8, true);
-            }
-            CommonProxyUtilities.setFilePermissions(testInformationFile.toPath());
-        } catch (Exception e) {
-            LOGGER.warn(e.toString(), e);
+    /**
+     * @return the tests of the history rendered as HTML, in the videos folder.
+     */
+    static synchronized DashboardPages getDashboardPages() {
+        Path folder = Paths.get(getLocalVideosPath(), DashboardPages.FOLDER_NAME);
+        if (dashboardPages == null || !dashboardPages.getFolder().equals(folder)) {
+            dashboardPages = new DashboardPages(folder);
         }
+        return dashboardPages;
     }
 
-    public static void saveDashboard() {
-        LOGGER.info("Saving dashboard...");
-        List<TestInformation> executedTestsInformation = loadTestInformationFromFile();
-        executedTestsInformation.sort(Comparator.comparing(TestInformation::getAddedToDashboardTime));
-        String itemTemplate = loadTestItemTemplate();
-        List<String> testItems = new ArrayList<>();
-        for (TestInformation testInformation : executedTestsInformation) {
-            String platformLogo;
-            if (testInformation.getPlatform().toLowerCase().contains("mac")) {
-                platformLogo = "apple";
-            } else if (testInformation.getPlatform().toLowerCase().contains("windows")) {
-                platformLogo = "windows";
-            } else {
-                platformLogo = testInformation.getPlatform().toLowerCase();
-            }
-            String  buildDirectory = testInformation.getVideoFolderPath().replace("/home/seluser/videos", "");
-            buildDirectory = buildDirectory.trim().length() > 0 ? buildDirectory.replace("/", "").concat("/") : "";
-            String fileName = buildDirectory.concat(testInformation.getFileName());
-            String seleniumLogFileName = "logs/".concat(buildDirectory).concat(testInformation.getSeleniumLogFileName()
-                    .replace("logs/", ""));
-            String browserDriverLogFileName = "logs/".concat(buildDirectory).concat(testInformation.getBrowserDriverLogFileName()
-                    .replace("logs/", ""));
-            String testItem = itemTemplate
-                    .replace("{fileName}", fileName)
-                    .replace("{testName}", testInformation.getTestName())
-                    .replace("{seleniumSessionId}", testInformation.getSeleniumSessionId())
-                    .replace("{testStatus}", testInformation.getTestStatus().name())
-                    .replace("{testStatusLowerCase}", testInformation.getTestStatus().name().toLowerCase())
-                    .replace("{browser}", testInformation.getBrowser())
-                    .replace("{browserLowerCase}", testInformation.getBrowser().toLowerCase())
-                    .replace("{browserVersion}", testInformation.getBrowserVersion())
-                    .replace("{platformLogo}", platformLogo)
-                    .replace("{proxyName}", testInformation.getProxyName())
-                    .replace("{proxyNameLowerCase}", testInformation.getProxyName().toLowerCase())
-                    .replace("{timestamp}", testInformation.getTimestamp().toString())
-                    .replace("{addedToDashboardTime}", String.valueOf(testInformation.getAddedToDashboardTime()))
-                    .replace("{screenDimension}", testInformation.getScreenDimension())
-                    .replace("{timeZone}", testInformation.getTimeZone())
-                    .replace("{build}", testInformation.getBuild())
-                    .replace("{seleniumLogFileName}", seleniumLogFileName)
-                    .replace("{browserDriverLogFileName}", browserDriverLogFileName)
-                    .replace("{retentionDate}", testInformation.getRetentionDate().toString());
-            testItems.add(testItem);
+    private static void importTestInformationFile(TestHistory history) {
+        File testInformationFile = new File(getLocalVideosPath(), TEST_INFORMATION_FILE);
+        if (!testInformationFile.exists()) {
+            return;
         }
-
         try {
-            File dashboardHtml = new File(getLocalVideosPath(), DASHBOARD_FILE);
-            String dashboard = FileUtils.readFileToString(new File(getCurrentLocalPath(), DASHBOARD_TEMPLATE_FILE), UTF_8);
-            dashboard = dashboard.replace("list-group\">", String.format("%s%s", "list-group\">",
-                    String.join(System.lineSeparator(), Lists.reverse(testItems))))
-                    .replace("{retentionPeriod}", String.valueOf(retentionPeriod));
-            FileUtils.writeStringToFile(dashboardHtml, dashboard, UTF_8);
-            CommonProxyUtilities.setFilePermissions(dashboardHtml.toPath());
+            List<TestInformation> testInformation = new ArrayList<>();
+            Gson gson = new Gson();
+            for (String line : FileUtils.readLines(testInformationFile, UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    testInformation.add(gson.fromJson(line, TestInformation.class));
+                }
+            }
+            history.addAll(testInformation);
+            LOGGER.info("Moved " + testInformation.size() + " test(s) from " + TEST_INFORMATION_FILE
+                    + " to the test history");
+            deleteIfExists(testInformationFile);
         } catch (Exception e) {
             LOGGER.warn(e.toString(), e);
         }
     }
 
-    private static String loadTestItemTemplate() {
-        String templateFile = "html_templates/test_item.html";
-        InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(templateFile);
-        try {
-            return IOUtils.toString(Objects.requireNonNull(inputStream), StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            LOGGER.warn(e.toString(), e);
-        }
-        return "";
+    @VisibleForTesting
+    public static List<TestInformation> loadTestInformation() {
+        return getTestHistory().getTests();
     }
 
-
-    private void saveTestInformation(TestInformation testInformation) {
+    public static void saveDashboard() {
+        LOGGER.info("Saving dashboard...");
         try {
-            File testInformationFile = new File(getLocalVideosPath(), TEST_INFORMATION_FILE);
-            Gson gson = new GsonBuilder().create();
-            FileUtils.writeStringToFile(testInformationFile, gson.toJson(testInformation) + System.lineSeparator(),
-                UTF_8, true);
-            CommonProxyUtilities.setFilePermissions(testInformationFile.toPath());
+            File dashboardHtml = new File(getLocalVideosPath(), DASHBOARD_FILE);
+            getDashboardPages().writeDashboard(dashboardHtml.toPath(), getDashboardTemplateFile(),
+                    getDashboardValues(), getTestHistory());
         } catch (Exception e) {
             LOGGER.warn(e.toString(), e);
         }
-
     }
 
     @VisibleForTesting
@@ -3,26 +3,56 @@ package de.zalando.ep.zalenium.dashboard;
 import de.zalando.ep.zalenium.dashboard.remote.RemoteDashboard;
 import de.zalando.ep.zalenium.dashboard.remote.RemoteLogDashboard;
 import de.zalando.ep.zalenium.dashboard.remote.RemoteVideoDashboard;
+import de.zalando.ep.zalenium.util.GridEvents;
+
+import io.prometheus.client.Counter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import static java.lang.System.*;
 
 
 /**
- * Class in charge of knowing which dashboard to maintain
+ * Class in charge of knowing which dashboard to maintain.
+ *
+ * Finished tests are queued and written by a single thread, so a slow disk or remote dashboard does not hold the
+ * proxies that finish them. Tests that arrive together are written as one batch, and deliveries that fail on a remote
+ * dashboard are retried later.
  */
 @SuppressWarnings("WeakerAccess")
 public class DashboardCollection {
     private static final Logger LOGGER = Logger.getLogger(DashboardCollection.class.getName());
+    private static final int QUEUE_CAPACITY = 1000;
+    private static final int BATCH_SIZE = 100;
+    private static final long BATCH_LINGER = 200;
+    private static final long ENQUEUE_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final long SHUTDOWN_FLUSH_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final int REMOTE_ATTEMPTS = 5;
+    private static final long REMOTE_RETRY_DELAY = TimeUnit.SECONDS.toMillis(2);
+    private static final Counter droppedTests = Counter.build()
+            .name("zalenium_dashboard_dropped_tests_total")
+            .help("Tests not added to the dashboard because its queue was full.").register();
 
     public static List<RemoteDashboard> remoteDashboards;
     public static DashboardInterface localDashboard = new Dashboard();
     public static boolean remoteDashboardsEnabled = getenv("REMOTE_DASHBOARD_HOST") != null;
     private static boolean initializedRemotes = false;
+    private static final BlockingQueue<TestInformation> ingestQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final DelayQueue<RemoteDelivery> remoteRetries = new DelayQueue<>();
+    private static final Object ingestLock = new Object();
+    private static long queuedTests = 0;
+    private static long writtenTests = 0;
+    private static Thread writer;
 
 
     private static void initRemoteDashboards() {
@@ -39,7 +69,100 @@ public class DashboardCollection {
         }
     }
 
-    public static synchronized void updateDashboard(TestInformation testInformation) {
+    /**
+     * Queues a copy of the test for the dashboards, the proxy keeps changing its own object while the test is written.
+     * If the queue stays full for a while, the test is dropped rather than blocking the proxy.
+     */
+    public static void updateDashboard(TestInformation testInformation) {
+        startWriter();
+        try {
+            if (ingestQueue.offer(testInformation.copy(), ENQUEUE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                synchronized (ingestLock) {
+                    queuedTests++;
+                }
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedTests.inc();
+        LOGGER.log(Level.WARNING, "Dashboard queue is full, test not added: " + testInformation.getTestName());
+    }
+
+    /**
+     * Waits until the tests queued so far are written to the dashboards.
+     *
+     * @return false if the time ran out first.
+     */
+    @VisibleForTesting
+    public static boolean awaitDashboardUpdates(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = nanoTime() + unit.toNanos(timeout);
+        synchronized (ingestLock) {
+            long target = queuedTests;
+            while (writtenTests < target) {
+                long remaining = deadline - nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(ingestLock, remaining);
+            }
+            return true;
+        }
+    }
+
+    private static synchronized void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(DashboardCollection::writeDashboards, "Dashboard writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                if (!awaitDashboardUpdates(SHUTDOWN_FLUSH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    LOGGER.log(Level.WARNING, "Dashboard queue not written before shutdown: " + ingestQueue.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "Dashboard writer flush"));
+    }
+
+    private static void writeDashboards() {
+        List<TestInformation> batch = new ArrayList<>(BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                TestInformation testInformation = ingestQueue.poll(REMOTE_RETRY_DELAY, TimeUnit.MILLISECONDS);
+                if (testInformation != null) {
+                    // Tests finishing together are written together, a single test waits at most BATCH_LINGER.
+                    long flushTime = nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_LINGER);
+                    while (testInformation != null) {
+                        batch.add(testInformation);
+                        long remaining = flushTime - nanoTime();
+                        testInformation = batch.size() < BATCH_SIZE && remaining > 0
+                                ? ingestQueue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    }
+                    writeBatch(batch);
+                }
+                for (RemoteDelivery delivery = remoteRetries.poll(); delivery != null;
+                     delivery = remoteRetries.poll()) {
+                    deliver(delivery.dashboard, delivery.testInformation, delivery.attempt);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error in the dashboard writer", e);
+            } finally {
+                synchronized (ingestLock) {
+                    writtenTests += batch.size();
+                    ingestLock.notifyAll();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private static void writeBatch(List<TestInformation> batch) {
         String errMsg = "Error during update of dashboard: ";
 
         if( !initializedRemotes) {
@@ -48,18 +171,34 @@ public class DashboardCollection {
 
         if (!remoteDashboardsEnabled) {
             try {
-                localDashboard.updateDashboard(testInformation);
+                localDashboard.updateDashboard(batch);
             } catch (Exception e) {
                 LOGGER.log(Level.WARNING, errMsg + e.toString());
             }
         } else {
             for (DashboardInterface dashboard : remoteDashboards) {
-                try {
-                    dashboard.updateDashboard(testInformation);
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, errMsg, e);
+                for (TestInformation testInformation : batch) {
+                    deliver(dashboard, testInformation, 1);
                 }
-             }
+            }
+        }
+        for (TestInformation testInformation : batch) {
+            GridEvents.getInstance().publish(GridEvents.TEST_ADDED, testInformation);
+        }
+    }
+
+    private static void deliver(DashboardInterface dashboard, TestInformation testInformation, int attempt) {
+        try {
+            dashboard.updateDashboard(testInformation);
+        } catch (Exception e) {
+            if (attempt < REMOTE_ATTEMPTS) {
+                LOGGER.log(Level.FINE, "Error during update of dashboard, retrying: " + e.toString());
+                remoteRetries.add(new RemoteDelivery(dashboard, testInformation, attempt + 1,
+                        REMOTE_RETRY_DELAY * attempt));
+            } else {
+                LOGGER.log(Level.WARNING, "Error during update of dashboard, giving up after " + attempt
+                        + " attempts: ", e);
+            }
         }
     }
 
@@ -104,4 +243,29 @@ public class DashboardCollection {
             }
         }
     }
+
+    private static final class RemoteDelivery implements Delayed {
+        private final DashboardInterface dashboard;
+        private final TestInformation testInformation;
+        private final int attempt;
+        private final long dueTime;
+
+        private RemoteDelivery(DashboardInterface dashboard, TestInformation testInformation, int attempt,
+                               long delay) {
+            this.dashboard = dashboard;
+            this.testInformation = testInformation;
+            this.attempt = attempt;
+            this.dueTime = nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueTime - nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
 }
@@ -1,25 +1,39 @@
 package de.zalando.ep.zalenium.dashboard;
 
+import com.google.common.base.Enums;
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.common.net.HttpHeaders;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Comparator;
-import java.util.Date;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 import static com.google.common.net.MediaType.JSON_UTF_8;
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * Serves the tests of the dashboard from the {@link TestHistory}, as compact JSON.
+ *
+ * Every open dashboard polls this servlet. The responses carry the version of the history as ETag, so a dashboard
+ * that is up to date gets a 304 without any test being looked at. The full list of tests, which every dashboard asks
+ * for when it is opened, is built once per version of the history. Responses are gzipped when the client accepts it.
+ */
 public class DashboardInformationServlet extends HttpServlet {
 
+    private static final int MINIMUM_GZIP_SIZE = 1024;
+
+    private final AtomicReference<CachedTests> allTests = new AtomicReference<>();
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         process(request, response);
@@ -28,28 +42,110 @@ public class DashboardInformationServlet extends HttpServlet {
     @SuppressWarnings("unused")
     protected void process(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String lastDateAddedToDashboardParameter = request.getParameter("lastDateAddedToDashboard");
-        Date lastDateAdded = null;
+        long lastDateAdded = Long.MIN_VALUE;
         if (!Strings.isNullOrEmpty(lastDateAddedToDashboardParameter)) {
-            long lastDateAddedLong = Long.parseLong(lastDateAddedToDashboardParameter);
-            lastDateAdded = new Date(lastDateAddedLong);
+            lastDateAdded = Long.parseLong(lastDateAddedToDashboardParameter);
+        }
+        String build = Strings.emptyToNull(request.getParameter("build"));
+        TestInformation.TestStatus testStatus = null;
+        String testStatusParameter = request.getParameter("testStatus");
+        if (!Strings.isNullOrEmpty(testStatusParameter)) {
+            Optional<TestInformation.TestStatus> requestedStatus =
+                    Enums.getIfPresent(TestInformation.TestStatus.class, testStatusParameter.toUpperCase());
+            if (!requestedStatus.isPresent()) {
+                response.sendError(HTTP_BAD_REQUEST, "Unknown test status " + testStatusParameter);
+                return;
+            }
+            testStatus = requestedStatus.get();
         }
         response.addHeader("Access-Control-Allow-Origin", "*");
         response.addHeader("Access-Control-Allow-Headers", "Content-Type,Authorization,Access-Control-Allow-Origin,*");
-        List<TestInformation> executedTestsInformation = Dashboard.loadTestInformationFromFile();
-        executedTestsInformation.sort(Comparator.comparing(TestInformation::getAddedToDashboardTime));
-        if (lastDateAdded != null) {
-            Date finalLastDateAdded = lastDateAdded;
-            executedTestsInformation = executedTestsInformation.stream()
-                    .filter(testInformation -> new Date(testInformation.getAddedToDashboardTime()).compareTo(finalLastDateAdded) > 0)
-                    .collect(Collectors.toList());
-        }
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        byte[] testInformation = gson.toJson(executedTestsInformation).getBytes(UTF_8);
+
+        TestHistory testHistory = Dashboard.getTestHistory();
+        // Read before the tests, so a test added in between makes the tag older than the content and not newer.
+        String version = testHistory.getVersion();
+        // Weak, the same tests are sent with and without gzip.
+        String eTag = "W/\"" + version + "\"";
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), version)) {
+            response.setStatus(HTTP_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] testInformation;
+        boolean gzip;
+        if (build == null && testStatus == null && lastDateAdded < testHistory.getFirstAddedTime()) {
+            CachedTests cached = allTests.get();
+            if (cached == null || !cached.version.equals(version)) {
+                cached = new CachedTests(version, testHistory.getTestsAsJson(Long.MIN_VALUE, null, null));
+                allTests.set(cached);
+            }
+            gzip = acceptsGzip(request) && cached.json.length >= MINIMUM_GZIP_SIZE;
+            testInformation = gzip ? cached.getGzipped() : cached.json;
+        } else {
+            testInformation = testHistory.getTestsAsJson(lastDateAdded, build, testStatus).getBytes(UTF_8);
+            gzip = acceptsGzip(request) && testInformation.length >= MINIMUM_GZIP_SIZE;
+            if (gzip) {
+                testInformation = gzip(testInformation);
+            }
+        }
         response.setStatus(HTTP_OK);
         response.setContentType(JSON_UTF_8.toString());
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
         response.setContentLength(testInformation.length);
         try (ServletOutputStream out = response.getOutputStream()) {
             out.write(testInformation);
         }
     }
+
+    private static boolean matches(String ifNoneMatch, String version) {
+        if (Strings.isNullOrEmpty(ifNoneMatch)) {
+            return false;
+        }
+        String quotedVersion = "\"" + version + "\"";
+        for (String eTag : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+            if (eTag.equals("*") || eTag.equals(quotedVersion) || eTag.equals("W/" + quotedVersion)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static final class CachedTests {
+        private final String version;
+        private final byte[] json;
+        private volatile byte[] gzipped;
+
+        private CachedTests(String version, String json) {
+            this.version = version;
+            this.json = json.getBytes(UTF_8);
+        }
+
+        // Two requests can compress at the same time, they get the same bytes.
+        private byte[] getGzipped() throws IOException {
+            byte[] compressed = gzipped;
+            if (compressed == null) {
+                compressed = gzip(json);
+                gzipped = compressed;
+            }
+            return compressed;
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package de.zalando.ep.zalenium.dashboard;
 
+import java.util.List;
 
 /**
  * Represents some class that maintains information about executed tests
@@ -8,4 +9,10 @@ public interface DashboardInterface {
     void resetDashboard() throws Exception;
     void cleanupDashboard() throws Exception;
     void updateDashboard(TestInformation testInformation) throws Exception;
+
+    default void updateDashboard(List<TestInformation> testsInformation) throws Exception {
+        for (TestInformation testInformation : testsInformation) {
+            updateDashboard(testInformation);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+
+import de.zalando.ep.zalenium.util.CommonProxyUtilities;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * The tests of the dashboard rendered as HTML list items, one page per segment of the {@link TestHistory}. A page has
+ * one item per line, oldest first, and adding tests appends to their page. Saving the dashboard only copies the
+ * pages, newest first, into the dashboard template, and removing a segment of the history removes its page.
+ *
+ * A page that is missing or behind its segment, e.g. because the hub stopped between both writes, is rendered again
+ * from the history.
+ */
+@ThreadSafe
+class DashboardPages {
+
+    static final String FOLDER_NAME = "dashboardPages";
+    private static final String PAGE_PREFIX = "page-";
+    private static final String PAGE_EXTENSION = ".html";
+    private static final String TEST_ITEM_TEMPLATE_FILE = "html_templates/test_item.html";
+    private static final String TESTS_MARKER = "list-group\">";
+    private static final Logger LOGGER = LoggerFactory.getLogger(DashboardPages.class.getName());
+    private static Template testItemTemplate;
+
+    private final Path folder;
+    private Path dashboardTemplateFile;
+    private long dashboardTemplateModified;
+    private Template dashboardTemplate;
+    private Template dashboardTemplateHead;
+    private Template dashboardTemplateTail;
+
+    DashboardPages(Path folder) {
+        this.folder = folder;
+    }
+
+    Path getFolder() {
+        return folder;
+    }
+
+    /**
+     * Appends the tests, already added to the history, to their pages. Each page file is written once.
+     */
+    synchronized void add(List<TestInformation> tests, TestHistory history) throws IOException {
+        Map<Long, StringWriter> items = new LinkedHashMap<>();
+        for (TestInformation testInformation : tests) {
+            long page = history.getSegmentStart(testInformation.getAddedToDashboardTime());
+            renderTestItem(testInformation, items.computeIfAbsent(page, p -> new StringWriter()));
+        }
+        for (Map.Entry<Long, StringWriter> pageItems : items.entrySet()) {
+            write(pageFile(pageItems.getKey()), pageItems.getValue().toString(), StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Removes the pages of the segments no longer in the history.
+     */
+    synchronized void retain(Collection<Long> segmentStarts) {
+        for (Path page : listPages()) {
+            if (!segmentStarts.contains(getPageStart(page))) {
+                delete(page);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        listPages().forEach(this::delete);
+    }
+
+    /**
+     * Renders the dashboard template without tests, they are loaded by the page.
+     */
+    synchronized void writeDashboard(Path dashboardHtml, Path templateFile, Map<String, String> values)
+            throws IOException {
+        loadDashboardTemplate(templateFile);
+        try (Writer out = Files.newBufferedWriter(dashboardHtml, UTF_8)) {
+            dashboardTemplate.render(out, values::get);
+        }
+        CommonProxyUtilities.setFilePermissions(dashboardHtml);
+    }
+
+    /**
+     * Renders the dashboard template with all the tests of the history, newest first, streaming one page at a time.
+     */
+    synchronized void writeDashboard(Path dashboardHtml, Path templateFile, Map<String, String> values,
+                                     TestHistory history) throws IOException {
+        loadDashboardTemplate(templateFile);
+        if (dashboardTemplateTail == null) {
+            LOGGER.warn("No test list in the dashboard template " + templateFile);
+            writeDashboard(dashboardHtml, templateFile, values);
+            return;
+        }
+        List<Long> segmentStarts = history.getSegmentStarts();
+        try (Writer out = Files.newBufferedWriter(dashboardHtml, UTF_8)) {
+            dashboardTemplateHead.render(out, values::get);
+            for (int i = segmentStarts.size() - 1; i >= 0; i--) {
+                List<String> items = readPage(segmentStarts.get(i), history);
+                for (int j = items.size() - 1; j >= 0; j--) {
+                    out.write(items.get(j));
+                    out.write(System.lineSeparator());
+                }
+            }
+            dashboardTemplateTail.render(out, values::get);
+        }
+        CommonProxyUtilities.setFilePermissions(dashboardHtml);
+    }
+
+    private List<String> readPage(long segmentStart, TestHistory history) throws IOException {
+        Path page = pageFile(segmentStart);
+        List<TestInformation> tests = history.getSegmentTests(segmentStart);
+        if (Files.exists(page)) {
+            List<String> items = Files.readAllLines(page, UTF_8);
+            if (items.size() == tests.size()) {
+                return items;
+            }
+        }
+        LOGGER.debug("Rendering dashboard page " + page + " again");
+        StringWriter items = new StringWriter();
+        for (TestInformation testInformation : tests) {
+            renderTestItem(testInformation, items);
+        }
+        write(page, items.toString(), StandardOpenOption.TRUNCATE_EXISTING);
+        return Files.readAllLines(page, UTF_8);
+    }
+
+    /**
+     * The template is parsed again only when the file changes.
+     */
+    private void loadDashboardTemplate(Path templateFile) throws IOException {
+        long modified = Files.getLastModifiedTime(templateFile).toMillis();
+        if (templateFile.equals(dashboardTemplateFile) && modified == dashboardTemplateModified) {
+            return;
+        }
+        String template = new String(Files.readAllBytes(templateFile), UTF_8);
+        dashboardTemplate = Template.compile(template);
+        int testsStart = template.indexOf(TESTS_MARKER);
+        if (testsStart < 0) {
+            dashboardTemplateHead = null;
+            dashboardTemplateTail = null;
+        } else {
+            testsStart += TESTS_MARKER.length();
+            dashboardTemplateHead = Template.compile(template.substring(0, testsStart));
+            dashboardTemplateTail = Template.compile(template.substring(testsStart));
+        }
+        dashboardTemplateFile = templateFile;
+        dashboardTemplateModified = modified;
+    }
+
+    private static void renderTestItem(TestInformation testInformation, Writer out) throws IOException {
+        getTestItemTemplate().render(out, getTestItemValues(testInformation)::get);
+        out.write(System.lineSeparator());
+    }
+
+    private static synchronized Template getTestItemTemplate() throws IOException {
+        if (testItemTemplate == null) {
+            InputStream inputStream = Thread.currentThread().getContextClassLoader()
+                    .getResourceAsStream(TEST_ITEM_TEMPLATE_FILE);
+            testItemTemplate = Template.compileSingleLine(IOUtils.toString(Objects.requireNonNull(inputStream), UTF_8));
+        }
+        return testItemTemplate;
+    }
+
+    private static Map<String, String> getTestItemValues(TestInformation testInformation) {
+        String platformLogo;
+        if (testInformation.getPlatform().toLowerCase().contains("mac")) {
+            platformLogo = "apple";
+        } else if (testInformation.getPlatform().toLowerCase().contains("windows")) {
+            platformLogo = "windows";
+        } else {
+            platformLogo = testInformation.getPlatform().toLowerCase();
+        }
+        String  buildDirectory = testInformation.getVideoFolderPath().replace("/home/seluser/videos", "");
+        buildDirectory = buildDirectory.trim().length() > 0 ? buildDirectory.replace("/", "").concat("/") : "";
+        String fileName = buildDirectory.concat(testInformation.getFileName());
+        String seleniumLogFileName = "logs/".concat(buildDirectory).concat(testInformation.getSeleniumLogFileName()
+                .replace("logs/", ""));
+        String browserDriverLogFileName = "logs/".concat(buildDirectory).concat(testInformation.getBrowserDriverLogFileName()
+                .replace("logs/", ""));
+
+        Map<String, String> values = new HashMap<>();
+        values.put("fileName", fileName);
+        values.put("testName", testInformation.getTestName());
+        values.put("seleniumSessionId", testInformation.getSeleniumSessionId());
+        values.put("testStatus", testInformation.getTestStatus().name());
+        values.put("testStatusLowerCase", testInformation.getTestStatus().name().toLowerCase());
+        values.put("browser", testInformation.getBrowser());
+        values.put("browserLowerCase", testInformation.getBrowser().toLowerCase());
+        values.put("browserVersion", testInformation.getBrowserVersion());
+        values.put("platformLogo", platformLogo);
+        values.put("proxyName", testInformation.getProxyName());
+        values.put("proxyNameLowerCase", testInformation.getProxyName().toLowerCase());
+        values.put("timestamp", String.valueOf(testInformation.getTimestamp()));
+        values.put("addedToDashboardTime", String.valueOf(testInformation.getAddedToDashboardTime()));
+        values.put("screenDimension", testInformation.getScreenDimension());
+        values.put("timeZone", testInformation.getTimeZone());
+        values.put("build", testInformation.getBuild());
+        values.put("seleniumLogFileName", seleniumLogFileName);
+        values.put("browserDriverLogFileName", browserDriverLogFileName);
+        values.put("retentionDate", String.valueOf(testInformation.getRetentionDate()));
+        // One item per line in the pages.
+        values.replaceAll((name, value) -> Strings.nullToEmpty(value).replaceAll("\\R", " "));
+        return values;
+    }
+
+    private Path pageFile(long segmentStart) {
+        return folder.resolve(String.format("%s%013d%s", PAGE_PREFIX, segmentStart, PAGE_EXTENSION));
+    }
+
+    private static long getPageStart(Path page) {
+        String name = page.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PAGE_PREFIX.length(), name.length() - PAGE_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private List<Path> listPages() {
+        List<Path> pages = new ArrayList<>();
+        if (!Files.isDirectory(folder)) {
+            return pages;
+        }
+        try (Stream<Path> folderFiles = Files.list(folder)) {
+            folderFiles.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(PAGE_PREFIX) && name.endsWith(PAGE_EXTENSION);
+            }).forEach(pages::add);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to list the dashboard pages in " + folder, e);
+        }
+        return pages;
+    }
+
+    private void write(Path page, String items, StandardOpenOption option) throws IOException {
+        boolean created = !Files.exists(page);
+        if (created) {
+            Files.createDirectories(folder);
+        }
+        Files.write(page, items.getBytes(UTF_8), StandardOpenOption.CREATE, StandardOpenOption.WRITE, option);
+        if (created) {
+            CommonProxyUtilities.setFilePermissions(page);
+        }
+    }
+
+    private void delete(Path page) {
+        try {
+            Files.deleteIfExists(page);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete dashboard page " + page, e);
+        }
+    }
+}
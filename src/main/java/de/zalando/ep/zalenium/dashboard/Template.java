@@ -0,0 +1,68 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An HTML template with {placeholder} values, parsed once into literal text and placeholders so rendering it only
+ * writes the pieces in order.
+ */
+final class Template {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Za-z]+)}");
+    private static final Pattern LINE_BREAK = Pattern.compile("\\s*\\R\\s*");
+
+    // literals has one more element than placeholders, rendering starts and ends with a literal.
+    private final String[] literals;
+    private final String[] placeholders;
+
+    private Template(List<String> literals, List<String> placeholders) {
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+    }
+
+    static Template compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        int literalStart = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(literalStart, matcher.start()));
+            placeholders.add(matcher.group(1));
+            literalStart = matcher.end();
+        }
+        literals.add(text.substring(literalStart));
+        return new Template(literals, placeholders);
+    }
+
+    /**
+     * Same as {@link #compile(String)}, the line breaks of the template and the indentation around them are replaced
+     * by a space, so the rendered HTML fits in one line.
+     */
+    static Template compileSingleLine(String text) {
+        return compile(LINE_BREAK.matcher(text.trim()).replaceAll(" "));
+    }
+
+    /**
+     * @param values the value of each placeholder, the placeholders without a value are written as they are.
+     */
+    void render(Writer out, Function<String, String> values) throws IOException {
+        for (int i = 0; i < placeholders.length; i++) {
+            out.write(literals[i]);
+            String value = values.apply(placeholders[i]);
+            if (value == null) {
+                out.write('{');
+                out.write(placeholders[i]);
+                out.write('}');
+            } else {
+                out.write(value);
+            }
+        }
+        out.write(literals[placeholders.length]);
+    }
+}
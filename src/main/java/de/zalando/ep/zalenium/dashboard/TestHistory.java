@@ -0,0 +1,397 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import de.zalando.ep.zalenium.util.CommonProxyUtilities;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * The tests shown in the dashboard, stored as an append-only log of JSON lines split in segment files.
+ *
+ * Tests are added with an increasing addedToDashboardTime, so every segment covers its own time range and the
+ * incremental queries of the dashboard find where to start with a binary search, first over the segments and then
+ * within one. Each segment also indexes its tests by build and status.
+ *
+ * A segment is closed after {@link #SEGMENT_SIZE} tests, or when its first test is older than
+ * {@link #SEGMENT_SPAN}. Retention drops whole segments, once the retention date of all their tests has passed, so
+ * cleaning up deletes files instead of rewriting them.
+ *
+ * The tests are kept in memory with their JSON, the files are only read when the history is opened, and the
+ * dashboard is served without encoding the tests again. The history keeps its own copy of each test, read back from
+ * that JSON, so later changes to the added objects do not reach it. The {@link #getVersion() version} changes with every change
+ * of the history.
+ */
+@ThreadSafe
+class TestHistory {
+
+    static final String FOLDER_NAME = "testHistory";
+    static final int SEGMENT_SIZE = 1000;
+    static final long SEGMENT_SPAN = TimeUnit.HOURS.toMillis(1);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_EXTENSION = ".json";
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestHistory.class.getName());
+    private static final Gson GSON = new GsonBuilder().create();
+
+    private final Path folder;
+    private final Clock clock;
+    private final int segmentSize;
+    private final long openedTime;
+    // Oldest first, ordered by time like the tests inside each of them.
+    private final List<Segment> segments = new ArrayList<>();
+    private long lastAddedTime = 0;
+    private long removals = 0;
+
+    TestHistory(Path folder) {
+        this(folder, Clock.systemUTC(), SEGMENT_SIZE);
+    }
+
+    TestHistory(Path folder, Clock clock, int segmentSize) {
+        this.folder = folder;
+        this.clock = clock;
+        this.segmentSize = segmentSize;
+        this.openedTime = clock.millis();
+        load();
+    }
+
+    Path getFolder() {
+        return folder;
+    }
+
+    /**
+     * Sets the time the test is added to the dashboard and appends it to the history. The time is always after the
+     * one of the previous test, so a client asking for the tests added after the last one it got misses none.
+     */
+    synchronized void add(TestInformation testInformation) throws IOException {
+        add(Collections.singletonList(testInformation));
+    }
+
+    /**
+     * Same as {@link #add(TestInformation)} for several tests, each segment file is written once.
+     */
+    synchronized void add(List<TestInformation> tests) throws IOException {
+        long now = clock.millis();
+        for (TestInformation testInformation : tests) {
+            testInformation.setAddedToDashboardTime(Math.max(now, lastAddedTime + 1));
+            lastAddedTime = testInformation.getAddedToDashboardTime();
+        }
+        append(tests);
+    }
+
+    /**
+     * Appends tests that were added to the dashboard before, keeping their time unless it goes back in time. Each
+     * segment file is written once.
+     */
+    synchronized void addAll(List<TestInformation> tests) throws IOException {
+        List<TestInformation> sorted = new ArrayList<>(tests);
+        sorted.sort(Comparator.comparingLong(TestInformation::getAddedToDashboardTime));
+        for (TestInformation testInformation : sorted) {
+            testInformation.setAddedToDashboardTime(Math.max(testInformation.getAddedToDashboardTime(),
+                    lastAddedTime + 1));
+            lastAddedTime = testInformation.getAddedToDashboardTime();
+        }
+        append(sorted);
+    }
+
+    private void append(List<TestInformation> tests) throws IOException {
+        Map<Segment, StringBuilder> lines = new LinkedHashMap<>();
+        for (TestInformation testInformation : tests) {
+            Segment segment = segmentFor(testInformation.getAddedToDashboardTime());
+            String json = GSON.toJson(testInformation);
+            lines.computeIfAbsent(segment, s -> new StringBuilder()).append(json).append(System.lineSeparator());
+            segment.add(GSON.fromJson(json, TestInformation.class), json);
+        }
+        for (Map.Entry<Segment, StringBuilder> segmentLines : lines.entrySet()) {
+            write(segmentLines.getKey(), segmentLines.getValue().toString());
+        }
+    }
+
+    /**
+     * @param addedAfter only tests added to the dashboard after this time are returned.
+     * @param build      only tests of this build are returned, null for all builds.
+     * @param status     only tests with this status are returned, null for all of them.
+     * @return the tests, in the order they were added to the dashboard.
+     */
+    synchronized List<TestInformation> getTests(long addedAfter, String build, TestInformation.TestStatus status) {
+        List<TestInformation> tests = new ArrayList<>();
+        for (int i = firstSegmentWithTestsAfter(addedAfter); i < segments.size(); i++) {
+            segments.get(i).collect(addedAfter, build, status, entry -> tests.add(entry.testInformation));
+        }
+        return tests;
+    }
+
+    /**
+     * Same as {@link #getTests(long, String, TestInformation.TestStatus)}, as a compact JSON array built from the
+     * JSON the tests were stored with.
+     */
+    synchronized String getTestsAsJson(long addedAfter, String build, TestInformation.TestStatus status) {
+        StringJoiner tests = new StringJoiner(",", "[", "]");
+        for (int i = firstSegmentWithTestsAfter(addedAfter); i < segments.size(); i++) {
+            segments.get(i).collect(addedAfter, build, status, entry -> tests.add(entry.json));
+        }
+        return tests.toString();
+    }
+
+    /**
+     * @return a value that changes every time tests are added or removed, also across restarts of the hub.
+     */
+    synchronized String getVersion() {
+        return openedTime + "-" + removals + "-" + lastAddedTime;
+    }
+
+    /**
+     * @return the time of the oldest test, or {@link Long#MAX_VALUE} when there are none.
+     */
+    synchronized long getFirstAddedTime() {
+        return segments.isEmpty() ? Long.MAX_VALUE : segments.get(0).firstAddedTime;
+    }
+
+    synchronized List<TestInformation> getTests() {
+        return getTests(Long.MIN_VALUE, null, null);
+    }
+
+    /**
+     * @return the time of the first test of each segment, oldest first. It names the segment across restarts.
+     */
+    synchronized List<Long> getSegmentStarts() {
+        return segments.stream().map(segment -> segment.firstAddedTime).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the start of the segment holding the test added at the given time.
+     */
+    synchronized long getSegmentStart(long addedTime) {
+        int index = firstSegmentWithTestsAfter(addedTime - 1);
+        return index < segments.size() ? segments.get(index).firstAddedTime : Long.MAX_VALUE;
+    }
+
+    synchronized List<TestInformation> getSegmentTests(long segmentStart) {
+        int index = firstSegmentWithTestsAfter(segmentStart - 1);
+        if (index == segments.size() || segments.get(index).firstAddedTime != segmentStart) {
+            return Collections.emptyList();
+        }
+        return segments.get(index).entries.stream().map(entry -> entry.testInformation).collect(Collectors.toList());
+    }
+
+    synchronized int size() {
+        return segments.stream().mapToInt(segment -> segment.entries.size()).sum();
+    }
+
+    /**
+     * Drops the segments where all tests are past their retention date.
+     *
+     * @return the tests that were dropped, to remove their videos and logs.
+     */
+    synchronized List<TestInformation> removeExpired() {
+        long now = clock.millis();
+        List<TestInformation> expired = new ArrayList<>();
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            // The retention period can change between restarts, so the segments after one still retained are checked.
+            if (segment.lastRetentionTime <= now) {
+                delete(segment);
+                segment.entries.forEach(entry -> expired.add(entry.testInformation));
+                iterator.remove();
+            }
+        }
+        if (!expired.isEmpty()) {
+            removals++;
+        }
+        return expired;
+    }
+
+    synchronized void clear() {
+        segments.forEach(this::delete);
+        segments.clear();
+        removals++;
+    }
+
+    private Segment segmentFor(long addedTime) {
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last != null && last.entries.size() < segmentSize && addedTime - last.firstAddedTime < SEGMENT_SPAN) {
+            return last;
+        }
+        Segment segment = new Segment(folder.resolve(String.format("%s%013d%s", SEGMENT_PREFIX, addedTime,
+                SEGMENT_EXTENSION)));
+        segments.add(segment);
+        return segment;
+    }
+
+    private int firstSegmentWithTestsAfter(long addedAfter) {
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (segments.get(middle).lastAddedTime > addedAfter) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private void write(Segment segment, String lines) throws IOException {
+        boolean created = !Files.exists(segment.file);
+        if (created) {
+            Files.createDirectories(folder);
+        }
+        Files.write(segment.file, lines.getBytes(UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (created) {
+            CommonProxyUtilities.setFilePermissions(segment.file);
+        }
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete test history segment " + segment.file, e);
+        }
+    }
+
+    private void load() {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> folderFiles = Files.list(folder)) {
+            // The names hold the zero padded time of the first test, so they sort in the order of the segments.
+            files = folderFiles
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read the test history in " + folder, e);
+            return;
+        }
+        for (Path file : files) {
+            Segment segment = new Segment(file);
+            try {
+                for (String line : Files.readAllLines(file, UTF_8)) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        segment.add(GSON.fromJson(line, TestInformation.class), line);
+                    } catch (JsonParseException e) {
+                        // Most likely the last line of a segment that was being written when the hub stopped.
+                        LOGGER.warn("Skipping an unreadable test in " + file + ": " + e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read test history segment " + file, e);
+            }
+            if (!segment.entries.isEmpty()) {
+                segments.add(segment);
+                lastAddedTime = Math.max(lastAddedTime, segment.lastAddedTime);
+            }
+        }
+    }
+
+    private static int firstAddedAfter(List<Entry> entries, long addedAfter) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries.get(middle).addedTime > addedAfter) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private static final class Entry {
+        private final long addedTime;
+        private final TestInformation testInformation;
+        private final String json;
+
+        private Entry(TestInformation testInformation, String json) {
+            this.addedTime = testInformation.getAddedToDashboardTime();
+            this.testInformation = testInformation;
+            this.json = json;
+        }
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final List<Entry> entries = new ArrayList<>();
+        private final Map<String, List<Entry>> entriesByBuild = new HashMap<>();
+        private final Map<TestInformation.TestStatus, List<Entry>> entriesByStatus =
+                new EnumMap<>(TestInformation.TestStatus.class);
+        private long firstAddedTime;
+        private long lastAddedTime;
+        private long lastRetentionTime = 0;
+
+        private Segment(Path file) {
+            this.file = file;
+        }
+
+        private void add(TestInformation testInformation, String json) {
+            Entry entry = new Entry(testInformation, json);
+            if (entries.isEmpty()) {
+                firstAddedTime = entry.addedTime;
+            }
+            lastAddedTime = entry.addedTime;
+            if (testInformation.getRetentionDate() != null) {
+                lastRetentionTime = Math.max(lastRetentionTime, testInformation.getRetentionDate().getTime());
+            }
+            entries.add(entry);
+            entriesByBuild.computeIfAbsent(Strings.nullToEmpty(testInformation.getBuild()), build -> new ArrayList<>())
+                    .add(entry);
+            if (testInformation.getTestStatus() != null) {
+                entriesByStatus.computeIfAbsent(testInformation.getTestStatus(), status -> new ArrayList<>())
+                        .add(entry);
+            }
+        }
+
+        private void collect(long addedAfter, String build, TestInformation.TestStatus status,
+                             Consumer<Entry> collector) {
+            List<Entry> candidates;
+            if (build != null) {
+                candidates = entriesByBuild.getOrDefault(build, Collections.emptyList());
+            } else if (status != null) {
+                candidates = entriesByStatus.getOrDefault(status, Collections.emptyList());
+            } else {
+                candidates = entries;
+            }
+            for (int i = firstAddedAfter(candidates, addedAfter); i < candidates.size(); i++) {
+                Entry entry = candidates.get(i);
+                if (status == null || status == entry.testInformation.getTestStatus()) {
+                    collector.accept(entry);
+                }
+            }
+        }
+    }
+}
@@ -304,6 +304,48 @@ public class TestInformation {
         buildVideoFileName();
     }
 
+    private TestInformation(TestInformation other) {
+        this.seleniumSessionId = other.seleniumSessionId;
+        this.testName = other.testName;
+        this.timestamp = copyOf(other.timestamp);
+        this.addedToDashboardTime = other.addedToDashboardTime;
+        this.proxyName = other.proxyName;
+        this.browser = other.browser;
+        this.browserVersion = other.browserVersion;
+        this.platform = other.platform;
+        this.platformVersion = other.platformVersion;
+        this.fileName = other.fileName;
+        this.fileCount = other.fileCount;
+        this.fileExtension = other.fileExtension;
+        this.videoUrl = other.videoUrl;
+        this.logUrls = other.logUrls == null ? null : new ArrayList<>(other.logUrls);
+        this.remoteLogFiles = other.remoteLogFiles == null ? null : new ArrayList<>(other.remoteLogFiles);
+        this.videoFolderPath = other.videoFolderPath;
+        this.logsFolderPath = other.logsFolderPath;
+        this.testNameNoExtension = other.testNameNoExtension;
+        this.screenDimension = other.screenDimension;
+        this.timeZone = other.timeZone;
+        this.build = other.build;
+        this.testFileNameTemplate = other.testFileNameTemplate;
+        this.seleniumLogFileName = other.seleniumLogFileName;
+        this.browserDriverLogFileName = other.browserDriverLogFileName;
+        this.retentionDate = copyOf(other.retentionDate);
+        this.testStatus = other.testStatus;
+        this.videoRecorded = other.videoRecorded;
+        this.metadata = other.metadata == null ? null : other.metadata.deepCopy();
+    }
+
+    /**
+     * @return a copy that does not change with this test, e.g. to hand it to another thread.
+     */
+    public TestInformation copy() {
+        return new TestInformation(this);
+    }
+
+    private static Date copyOf(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
     public static class TestInformationBuilder {
         private String seleniumSessionId;
         private String testName;
@@ -0,0 +1,160 @@
+package de.zalando.ep.zalenium.matcher;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.openqa.selenium.remote.CapabilityType;
+
+/**
+ * Normalized view of the capabilities that decide which docker-selenium node can serve a request: browser, version,
+ * platform, screen resolution and time zone. Used to group pending session requests and free slots, so that a slot
+ * that frees up is only offered to the requests that could use it.
+ *
+ * A null field means "not specified" and matches anything. This is only a pre-filter, the final decision is still
+ * taken by the proxy's capability matcher.
+ */
+public final class CapabilityKey {
+
+    /*
+        Key for slots that are not docker-selenium ones (cloud proxies, nodes registered by hand), their capability
+        matcher does not follow the fields below, so any pending request could potentially use them.
+     */
+    public static final CapabilityKey ANY = new CapabilityKey(null, null, null, null, null);
+
+    private static final List<String> SCREEN_RESOLUTION_CAPABILITIES = Arrays.asList(
+            ZaleniumCapabilityType.SCREEN_RESOLUTION, ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX,
+            ZaleniumCapabilityType.RESOLUTION, ZaleniumCapabilityType.RESOLUTION_NO_PREFIX,
+            ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH, ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH_NO_PREFIX);
+    private static final List<String> TIME_ZONE_CAPABILITIES = Arrays.asList(
+            ZaleniumCapabilityType.TIME_ZONE, ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX);
+
+    private final String browser;
+    private final String version;
+    private final String platform;
+    private final String screenResolution;
+    private final String timeZone;
+    private final int hashCode;
+
+    private CapabilityKey(String browser, String version, String platform, String screenResolution, String timeZone) {
+        this.browser = browser;
+        this.version = version;
+        this.platform = platform;
+        this.screenResolution = screenResolution;
+        this.timeZone = timeZone;
+        this.hashCode = Objects.hash(browser, version, platform, screenResolution, timeZone);
+    }
+
+    public static CapabilityKey fromCapabilities(Map<String, Object> capabilities) {
+        if (capabilities == null || capabilities.isEmpty()) {
+            return ANY;
+        }
+        String browser = normalize(capabilities.get(CapabilityType.BROWSER_NAME));
+        String version = normalizeVersion(capabilities.get(CapabilityType.VERSION));
+        String platform = normalize(getPlatform(capabilities));
+        String screenResolution = normalize(firstPresent(capabilities, SCREEN_RESOLUTION_CAPABILITIES));
+        // Time zone ids are case sensitive, so they are only trimmed
+        Object timeZoneValue = firstPresent(capabilities, TIME_ZONE_CAPABILITIES);
+        String timeZone = timeZoneValue == null ? null : timeZoneValue.toString().trim();
+        return new CapabilityKey(browser, version, platform, screenResolution, timeZone);
+    }
+
+    /**
+     * W3C clients send platformName, older clients still send platform.
+     */
+    @SuppressWarnings("deprecation")
+    private static Object getPlatform(Map<String, Object> capabilities) {
+        Object platform = capabilities.get(CapabilityType.PLATFORM_NAME);
+        return platform != null ? platform : capabilities.get(CapabilityType.PLATFORM);
+    }
+
+    private static Object firstPresent(Map<String, Object> capabilities, List<String> names) {
+        for (String name : names) {
+            Object value = capabilities.get(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static String normalize(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String normalized = value.toString().trim().toLowerCase(Locale.ENGLISH);
+        return normalized.isEmpty() || "any".equals(normalized) ? null : normalized;
+    }
+
+    private static String normalizeVersion(Object value) {
+        String version = normalize(value);
+        return "latest".equals(version) ? null : version;
+    }
+
+    /**
+     * Checks if a slot described by the given key could serve a request described by this key. It errs on the side
+     * of returning true, the platform is not compared because platform families (e.g. Linux and Android) are
+     * resolved by the capability matcher.
+     */
+    public boolean canBeServedBy(CapabilityKey slotKey) {
+        return this == ANY || slotKey == ANY
+                || (fieldMatches(browser, slotKey.browser)
+                && fieldMatches(version, slotKey.version)
+                && fieldMatches(screenResolution, slotKey.screenResolution)
+                && fieldMatches(timeZone, slotKey.timeZone));
+    }
+
+    private static boolean fieldMatches(String requested, String offered) {
+        return requested == null || offered == null || requested.equals(offered);
+    }
+
+    public String getBrowser() {
+        return browser;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public String getScreenResolution() {
+        return screenResolution;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CapabilityKey that = (CapabilityKey) o;
+        return hashCode == that.hashCode
+                && Objects.equals(browser, that.browser)
+                && Objects.equals(version, that.version)
+                && Objects.equals(platform, that.platform)
+                && Objects.equals(screenResolution, that.screenResolution)
+                && Objects.equals(timeZone, that.timeZone);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "CapabilityKey [browser=" + browser + ", version=" + version + ", platform=" + platform
+                + ", screenResolution=" + screenResolution + ", timeZone=" + timeZone + "]";
+    }
+}
@@ -0,0 +1,192 @@
+package de.zalando.ep.zalenium.matcher;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+import org.openqa.selenium.remote.CapabilityType;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Compiled form of the capabilities that {@link DockerSeleniumCapabilityMatcher} looks at: browser, version, screen
+ * resolution and time zone. It is built once per capabilities map (one per node slot and one per session request)
+ * and interned, so matching is a handful of field comparisons without allocating or touching the maps.
+ *
+ * Zalenium custom capabilities can be sent with or without the "zal:" prefix. When both are present the one without
+ * prefix wins, which is what the matcher did when it used to rename them inside the maps.
+ *
+ * Capabilities maps are cached by identity, this relies on them not being modified once a node has registered or a
+ * session has been requested.
+ */
+public final class DockerSeleniumCapabilityKey {
+
+    static final int SCREEN_RESOLUTION = 0;
+    static final int RESOLUTION = 1;
+    static final int SCREEN_RESOLUTION_DASH = 2;
+    private static final String[] SCREEN_RESOLUTION_CAPABILITIES = {
+            ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX,
+            ZaleniumCapabilityType.RESOLUTION_NO_PREFIX,
+            ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH_NO_PREFIX
+    };
+    private static final int NOT_REQUESTED = -1;
+
+    private static final Interner<DockerSeleniumCapabilityKey> INTERNER = Interners.newWeakInterner();
+    // Weak keys are compared by identity, which is what we want for capabilities maps.
+    private static final LoadingCache<Map<String, Object>, DockerSeleniumCapabilityKey> COMPILED = CacheBuilder
+            .newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(capabilities -> INTERNER.intern(compile(capabilities))));
+
+    private final boolean browserNamePresent;
+    private final String browserName;
+    private final String version;
+    private final String[] screenResolutions;
+    // Last screen resolution capability found in the map, it is the one that decides the match for a request.
+    private final int requestedScreenResolution;
+    private final int screenWidth;
+    private final int screenHeight;
+    private final String timeZone;
+    private final int hashCode;
+
+    private DockerSeleniumCapabilityKey(boolean browserNamePresent, String browserName, String version,
+                                        String[] screenResolutions, int requestedScreenResolution,
+                                        String timeZone) {
+        this.browserNamePresent = browserNamePresent;
+        this.browserName = browserName;
+        this.version = version;
+        this.screenResolutions = screenResolutions;
+        this.requestedScreenResolution = requestedScreenResolution;
+        this.timeZone = timeZone;
+        int[] dimension = parseScreenResolution(screenResolutions[SCREEN_RESOLUTION]);
+        this.screenWidth = dimension[0];
+        this.screenHeight = dimension[1];
+        this.hashCode = Objects.hash(browserNamePresent, browserName, version, Arrays.hashCode(screenResolutions),
+                requestedScreenResolution, timeZone);
+    }
+
+    public static DockerSeleniumCapabilityKey of(Map<String, Object> capabilities) {
+        return COMPILED.getUnchecked(capabilities);
+    }
+
+    /**
+     * Gets a Zalenium custom capability (e.g. "zal:name"), falling back to its name without prefix.
+     */
+    public static Object getZaleniumCapability(Map<String, Object> capabilities, String capabilityName) {
+        if (capabilityName.startsWith(ZaleniumCapabilityType.CUSTOM_CAPABILITY_PREFIX)) {
+            String noPrefixName = capabilityName.substring(ZaleniumCapabilityType.CUSTOM_CAPABILITY_PREFIX.length());
+            if (capabilities.containsKey(noPrefixName)) {
+                return capabilities.get(noPrefixName);
+            }
+        }
+        return capabilities.get(capabilityName);
+    }
+
+    private static DockerSeleniumCapabilityKey compile(Map<String, Object> capabilities) {
+        String[] screenResolutions = new String[SCREEN_RESOLUTION_CAPABILITIES.length];
+        int requestedScreenResolution = NOT_REQUESTED;
+        for (int i = 0; i < SCREEN_RESOLUTION_CAPABILITIES.length; i++) {
+            if (containsZaleniumCapability(capabilities, SCREEN_RESOLUTION_CAPABILITIES[i])) {
+                screenResolutions[i] = asString(getZaleniumCapability(capabilities,
+                        ZaleniumCapabilityType.CUSTOM_CAPABILITY_PREFIX.concat(SCREEN_RESOLUTION_CAPABILITIES[i])));
+                requestedScreenResolution = i;
+            }
+        }
+        String timeZone = containsZaleniumCapability(capabilities, ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX) ?
+                asString(getZaleniumCapability(capabilities, ZaleniumCapabilityType.TIME_ZONE)) : null;
+        return new DockerSeleniumCapabilityKey(capabilities.containsKey(CapabilityType.BROWSER_NAME),
+                asString(capabilities.get(CapabilityType.BROWSER_NAME)),
+                asString(capabilities.get(CapabilityType.VERSION)),
+                screenResolutions, requestedScreenResolution, timeZone);
+    }
+
+    private static boolean containsZaleniumCapability(Map<String, Object> capabilities, String noPrefixName) {
+        return capabilities.containsKey(noPrefixName)
+                || capabilities.containsKey(ZaleniumCapabilityType.CUSTOM_CAPABILITY_PREFIX.concat(noPrefixName));
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static int[] parseScreenResolution(String screenResolution) {
+        if (screenResolution != null) {
+            String[] dimension = screenResolution.toLowerCase().split("x");
+            try {
+                return new int[] { Integer.parseInt(dimension[0].trim()), Integer.parseInt(dimension[1].trim()) };
+            } catch (Exception e) {
+                // Not a valid resolution, it won't be seen as the default one.
+            }
+        }
+        return new int[] { -1, -1 };
+    }
+
+    public boolean isBrowserNamePresent() {
+        return browserNamePresent;
+    }
+
+    public String getBrowserName() {
+        return browserName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * A request that names a screen resolution only matches nodes with the same value under the same capability
+     * name. A request without one only matches nodes that have the configured screen resolution.
+     */
+    boolean isScreenResolutionMatching(DockerSeleniumCapabilityKey nodeKey, int defaultWidth, int defaultHeight) {
+        if (requestedScreenResolution == NOT_REQUESTED) {
+            return nodeKey.screenWidth == defaultWidth && nodeKey.screenHeight == defaultHeight;
+        }
+        String requested = screenResolutions[requestedScreenResolution];
+        String offered = nodeKey.screenResolutions[requestedScreenResolution];
+        return offered != null && offered.equals(requested);
+    }
+
+    /**
+     * A request that names a time zone only matches nodes with the same one. A request without one only matches
+     * nodes that have the configured time zone.
+     */
+    boolean isTimeZoneMatching(DockerSeleniumCapabilityKey nodeKey, String defaultTimeZone) {
+        if (timeZone == null) {
+            return defaultTimeZone.equalsIgnoreCase(nodeKey.timeZone);
+        }
+        return timeZone.equals(nodeKey.timeZone);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DockerSeleniumCapabilityKey that = (DockerSeleniumCapabilityKey) o;
+        return hashCode == that.hashCode
+                && browserNamePresent == that.browserNamePresent
+                && requestedScreenResolution == that.requestedScreenResolution
+                && Objects.equals(browserName, that.browserName)
+                && Objects.equals(version, that.version)
+                && Arrays.equals(screenResolutions, that.screenResolutions)
+                && Objects.equals(timeZone, that.timeZone);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "DockerSeleniumCapabilityKey [browserName=" + browserName + ", version=" + version
+                + ", screenResolutions=" + Arrays.toString(screenResolutions) + ", timeZone=" + timeZone + "]";
+    }
+}
@@ -0,0 +1,225 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.zalando.ep.zalenium.container.LifecycleExecutors;
+import de.zalando.ep.zalenium.streams.InputStreamDescriptor;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
+import io.prometheus.client.Histogram;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Copies the artifacts of the containers, i.e. videos and logs, to disk.
+ *
+ * Each file is streamed into a temporary file next to its target and then renamed into place, so the dashboard never
+ * lists a file that is still being written. Artifacts on a volume shared with the nodes are
+ * moved instead. Copies can run in the background, for the nodes that are released before their artifacts are copied.
+ */
+@ThreadSafe
+final class ArtifactTransfer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactTransfer.class.getName());
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final String TEMPORARY_SUFFIX = ".part";
+
+    private static final Histogram copyDuration = Histogram.build()
+            .name("zalenium_artifact_copy_duration_seconds")
+            .help("Time taken to copy an artifact of a container to disk.")
+            .buckets(0.1, 0.5, 1, 2.5, 5, 10, 20, 30, 60)
+            .register();
+    private static final Histogram copyThroughput = Histogram.build()
+            .name("zalenium_artifact_copy_bytes_per_second")
+            .help("Throughput of the artifact copies from the containers to disk.")
+            .exponentialBuckets(64 * 1024, 2, 12)
+            .register();
+
+    private static final Histogram moveDuration = Histogram.build()
+            .name("zalenium_artifact_move_duration_seconds")
+            .help("Time taken to move an artifact from a volume shared with the nodes.")
+            .buckets(0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1)
+            .register();
+
+    /*
+        Copies run on the artifacts pool, but also on the threads of the requests and of the containers being
+        terminated. The direct buffers are pooled, one per thread of the artifacts pool, so direct memory does not
+        grow with the amount of threads copying. A copy that finds no free buffer streams through the heap.
+     */
+    private static final BlockingQueue<ByteBuffer> buffers = new LinkedBlockingQueue<>();
+    private static final AtomicInteger allocatedBuffers = new AtomicInteger();
+
+    private ArtifactTransfer() {
+    }
+
+    /**
+     * Runs the given copy in the background. Failures are logged, the returned future always completes normally so
+     * the cleanup depending on it still runs.
+     */
+    static CompletableFuture<Void> submit(Runnable copy) {
+        return CompletableFuture.runAsync(copy, LifecycleExecutors.artifacts())
+                .exceptionally(e -> {
+                    LOGGER.warn("Error while copying the artifacts", e);
+                    return null;
+                });
+    }
+
+    /**
+     * Moves the artifact to the target file when it is on a volume shared with the hub, otherwise streams it.
+     *
+     * @return the size of the artifact.
+     */
+    static long transfer(InputStreamDescriptor artifact, Path target) throws IOException {
+        Optional<Path> file = artifact.file();
+        if (!file.isPresent()) {
+            return copy(artifact.get(), target);
+        }
+        Path source = file.get();
+        long start = System.nanoTime();
+        try {
+            // A rename on the same file system, no matter how large the video is.
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            LOGGER.debug("{} is on another file system than {}, copying it", source, target);
+            long copied;
+            try (InputStream input = Files.newInputStream(source)) {
+                copied = copy(input, target);
+            }
+            Files.delete(source);
+            return copied;
+        }
+        moveDuration.observe((System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1));
+        return Files.size(target);
+    }
+
+    /**
+     * Streams the input to the target file, replacing it if it exists.
+     *
+     * @return the amount of bytes copied.
+     */
+    static long copy(InputStream input, Path target) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + TEMPORARY_SUFFIX);
+        long start = System.nanoTime();
+        long copied = 0;
+        try {
+            ByteBuffer buffer = acquireBuffer();
+            if (buffer == null) {
+                try (OutputStream destination = Files.newOutputStream(temporary)) {
+                    copied = transfer(input, destination);
+                }
+            } else {
+                try (FileChannel destination = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    copied = transfer(Channels.newChannel(input), destination, buffer);
+                } finally {
+                    buffers.add(buffer);
+                }
+            }
+            moveIntoPlace(temporary, target);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        copyDuration.observe(seconds);
+        if (seconds > 0) {
+            copyThroughput.observe(copied / seconds);
+        }
+        return copied;
+    }
+
+    /**
+     * @return a pooled direct buffer, or null if all of them are in use.
+     */
+    private static ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        int maxBuffers = Math.max(1, ZaleniumConfiguration.getArtifactTransferThreads());
+        if (allocatedBuffers.getAndUpdate(allocated -> allocated < maxBuffers ? allocated + 1 : allocated)
+                < maxBuffers) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        return null;
+    }
+
+    private static long transfer(ReadableByteChannel source, FileChannel destination, ByteBuffer buffer)
+            throws IOException {
+        long copied = 0;
+        buffer.clear();
+        try {
+            while (source.read(buffer) >= 0 || buffer.position() > 0) {
+                buffer.flip();
+                copied += destination.write(buffer);
+                buffer.compact();
+            }
+        } catch (IOException e) {
+            if (!isPipeClosed(e)) {
+                throw e;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                copied += destination.write(buffer);
+            }
+            LOGGER.debug("Stream closed after {} bytes", copied);
+        } finally {
+            buffer.clear();
+        }
+        return copied;
+    }
+
+    /*
+        Plain streams, a heap buffer written through a FileChannel would be copied into a temporary direct buffer
+        that the JDK keeps for the thread.
+     */
+    private static long transfer(InputStream source, OutputStream destination) throws IOException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        long copied = 0;
+        try {
+            int read;
+            while ((read = source.read(buffer)) >= 0) {
+                destination.write(buffer, 0, read);
+                copied += read;
+            }
+        } catch (IOException e) {
+            if (!isPipeClosed(e)) {
+                throw e;
+            }
+            LOGGER.debug("Stream closed after {} bytes", copied);
+        }
+        return copied;
+    }
+
+    // Kubernetes exec streams can end with a closed pipe instead of the end of the stream.
+    private static boolean isPipeClosed(IOException e) {
+        return Optional.ofNullable(e.getMessage()).orElse("").toLowerCase().contains("pipe closed");
+    }
+
+    private static void moveIntoPlace(Path temporary, Path target) throws IOException {
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
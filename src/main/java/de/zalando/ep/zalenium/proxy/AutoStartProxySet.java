@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -14,9 +15,13 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.google.gson.JsonObject;
 import de.zalando.ep.zalenium.dashboard.Dashboard;
 import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityMatcher;
 import org.apache.commons.lang3.tuple.Pair;
@@ -25,8 +30,6 @@ import org.openqa.grid.internal.BaseRemoteProxy;
 import org.openqa.grid.internal.ProxySet;
 import org.openqa.grid.internal.RemoteProxy;
 import org.openqa.grid.internal.TestSession;
-import org.openqa.selenium.Platform;
-import org.openqa.selenium.remote.CapabilityType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,13 +38,16 @@ import de.vandermeer.asciitable.AsciiTable;
 import de.vandermeer.asciitable.CWC_LongestLine;
 import de.vandermeer.skb.interfaces.transformers.textformat.TextAlignment;
 import de.zalando.ep.zalenium.container.ContainerCreationStatus;
+import de.zalando.ep.zalenium.util.GridEvents;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
 import net.jcip.annotations.ThreadSafe;
 
 /**
  * Automatically starts remote proxies in response to demand for test sessions.
  * 
  * On startup, will start a configurable minimum number of proxies, and will
- * attempt to maintain that minimum.
+ * attempt to maintain that minimum. Above it, a {@link ScalingPolicy} decides
+ * how many proxies are started ahead of demand and how many idle ones are kept.
  * 
  * Monitors the state of containers to automatically remove proxies from the set
  * as the containers are shutdown.
@@ -69,10 +75,16 @@ import net.jcip.annotations.ThreadSafe;
  * <li>proxies are always tracked and shutdown when appropriate.
  * <li>
  * </ul>
+ *
+ * Besides the minimum, warm pools can be configured per {@link WarmPoolProfile} (screen resolution and time zone).
+ * Their containers are refilled in the background and are not shutdown while idle.
  */
 @ThreadSafe
 public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy> {
 
+    // Longest time a registering container waits for the creations in progress to be tracked.
+    private static final long REGISTRATION_WAIT_FOR_CREATION = TimeUnit.SECONDS.toMillis(30);
+
     private static final Logger LOGGER = LoggerFactory.getLogger(AutoStartProxySet.class.getName());
     
     private static final Logger STATUS_LOGGER = LoggerFactory.getLogger(LOGGER.getName() + ".Status");
@@ -83,8 +95,20 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
 
     private final SessionRequestFilter filter;
 
-    private long minContainers;
-    private long maxContainers;
+    private final WarmPool warmPool;
+
+    private final ProxyIndex proxyIndex = new ProxyIndex();
+
+    private final ScalingPolicy scalingPolicy;
+
+    private IntSupplier queuedRequests = () -> 0;
+
+    private final ContainerProvisioner provisioner;
+
+    // Creations in progress, their containers are tracked in startedContainers with a placeholder until they finish.
+    private final Set<CompletableFuture<ContainerCreationStatus>> pendingCreations = ConcurrentHashMap.newKeySet();
+
+    private final long maxContainers;
     private final long timeToWaitToStart;
     private final boolean waitForAvailableNodes;
 
@@ -98,14 +122,33 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
     public AutoStartProxySet(boolean throwOnCapabilityNotPresent, long minContainers, long maxContainers,
             long timeToWaitToStart, boolean waitForAvailableNodes, DockeredSeleniumStarter starter, Clock clock,
             int maxTimesToProcessRequest, long checkContainersInterval) {
+        this(throwOnCapabilityNotPresent, minContainers, maxContainers, timeToWaitToStart, waitForAvailableNodes,
+                starter, clock, maxTimesToProcessRequest, checkContainersInterval, Collections.emptyMap());
+    }
+
+    public AutoStartProxySet(boolean throwOnCapabilityNotPresent, long minContainers, long maxContainers,
+            long timeToWaitToStart, boolean waitForAvailableNodes, DockeredSeleniumStarter starter, Clock clock,
+            int maxTimesToProcessRequest, long checkContainersInterval, Map<WarmPoolProfile, Integer> warmPools) {
+        this(throwOnCapabilityNotPresent, maxContainers, timeToWaitToStart, waitForAvailableNodes, starter, clock,
+                maxTimesToProcessRequest, checkContainersInterval, warmPools,
+                new EwmaScalingPolicy(minContainers, maxContainers, ZaleniumConfiguration.DEFAULT_SCALE_UP_COOLDOWN,
+                        ZaleniumConfiguration.DEFAULT_SCALE_DOWN_COOLDOWN, clock));
+    }
+
+    public AutoStartProxySet(boolean throwOnCapabilityNotPresent, long maxContainers, long timeToWaitToStart,
+            boolean waitForAvailableNodes, DockeredSeleniumStarter starter, Clock clock, int maxTimesToProcessRequest,
+            long checkContainersInterval, Map<WarmPoolProfile, Integer> warmPools, ScalingPolicy scalingPolicy) {
         super(throwOnCapabilityNotPresent);
-        this.minContainers = minContainers;
         this.maxContainers = maxContainers;
+        this.scalingPolicy = scalingPolicy;
         this.timeToWaitToStart = timeToWaitToStart;
         this.waitForAvailableNodes = waitForAvailableNodes;
         this.starter = starter;
         this.clock = clock;
-        this.filter = new SessionRequestFilter(maxTimesToProcessRequest);
+        this.filter = new SessionRequestFilter(maxTimesToProcessRequest, clock);
+        this.provisioner = new ContainerProvisioner(DockeredSeleniumStarter.getMaxConcurrentContainerCreations(),
+                this::start);
+        this.warmPool = new WarmPool(warmPools, clock);
 
         Runtime.getRuntime().addShutdownHook(new Thread(this::stopCheckingContainers, "AutoStartProxySet stop checking containers."));
         Runtime.getRuntime().addShutdownHook(new Thread(Dashboard::saveDashboard, "Saving dashboard."));
@@ -141,6 +184,27 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         poller.start();
     }
 
+    /**
+     * Gives the amount of session requests waiting for a node, used to decide how many containers to keep.
+     */
+    public void setQueuedRequests(IntSupplier queuedRequests) {
+        this.queuedRequests = queuedRequests;
+    }
+
+    /**
+     * Notifies that a new session request was added to the queue.
+     */
+    public void sessionRequested() {
+        scalingPolicy.sessionRequested();
+    }
+
+    /**
+     * Notifies that a session request left the queue without a session, a container is not needed for it anymore.
+     */
+    public void sessionRequestRemoved(Map<String, Object> desiredCapabilities) {
+        provisioner.cancel(desiredCapabilities);
+    }
+
     private void stopCheckingContainers() {
         this.keepCheckingContainers = false;
     }
@@ -148,6 +212,7 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
     @Override
     public void teardown() {
         poller.interrupt();
+        provisioner.stop();
         super.teardown();
     }
 
@@ -162,57 +227,65 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         TestSession newSession = createNewSession(desiredCapabilities);
         if (newSession == null) {
             /*
-                This is done in a thread because we are in the middle of the assignRequestToProxy() pipeline, so if we
-                don't return to that method soon, it will never release the lock that it is holding and the whole
+                This is done in another thread because we are in the middle of the assignRequestToProxy() pipeline, so
+                if we don't return to that method soon, it will never release the lock that it is holding and the whole
                 Grid will freeze. A previous bug shows that this is better because the docker daemon can be exhausted
-                and just hang during a container creation.
+                and just hang during a container creation. The provisioner bounds the threads doing it, and ignores
+                the request if it is already waiting for a container.
              */
-            new Thread(() -> this.start(desiredCapabilities)).start();
+            provisioner.provision(desiredCapabilities);
         }
         else {
             filter.testSessionHasStarted(desiredCapabilities);
+            provisioner.cancel(desiredCapabilities);
         }
+        warmPool.sessionRequested(desiredCapabilities, newSession != null);
         return newSession;
     }
 
-    // This is a copy of the super method, slightly modified to handle the case where platform is Linux and there
-    // is an Android registered. The matcher will return true because Android is part of the Linux family.
-    private TestSession createNewSession(Map<String, Object> desiredCapabilities) {
-        List<RemoteProxy> sorted = getSorted();
-        LOGGER.debug("Available nodes: " + sorted);
-
-        // Removing the proxies with Android so they are not taken into account to create a session.
-        List<RemoteProxy> proxiesToConsider;
-        if (Platform.LINUX.equals(getPlatformFromCaps(desiredCapabilities))) {
-            proxiesToConsider = sorted.stream()
-                    .filter(remoteProxy ->
-                            remoteProxy
-                                    .getTestSlots().stream()
-                                    .noneMatch(testSlot ->
-                                            Platform.ANDROID.equals(getPlatformFromCaps(testSlot.getCapabilities()))))
-                    .collect(Collectors.toList());
-        } else {
-            proxiesToConsider = sorted;
+    /**
+     * Creates a new session (if possible) on the given proxy only. Used when a slot of that proxy has just been freed
+     * or registered, so there is no need to go through all the proxies. A new proxy is not requested when no session
+     * can be created, {@link #getNewSession(Map)} takes care of that for the requests still waiting.
+     */
+    public TestSession getNewSession(Map<String, Object> desiredCapabilities, RemoteProxy proxy) {
+        if (!contains(proxy) || !proxyIndex.canBeConsidered(proxy, desiredCapabilities)) {
+            return null;
         }
-
-        return proxiesToConsider.stream()
-                .map(proxy -> proxy.getNewSession(desiredCapabilities))
-                .filter(Objects::nonNull)
-                .findFirst().orElse(null);
+        TestSession newSession = proxy.getNewSession(desiredCapabilities);
+        if (newSession != null) {
+            proxyIndex.sessionStarted(proxy);
+            filter.testSessionHasStarted(desiredCapabilities);
+            provisioner.cancel(desiredCapabilities);
+            warmPool.sessionRequested(desiredCapabilities, true);
+        }
+        return newSession;
     }
 
-    private Platform getPlatformFromCaps(Map<String, Object> desiredCapabilities) {
-        Object requested = desiredCapabilities.get(CapabilityType.PLATFORM_NAME);
-        if (requested == null) {
-            return null;
-        }
-        if (requested instanceof Platform) {
-            return (Platform) requested;
+    /*
+        Tries only the proxies that could take the request, see ProxyIndex. Like the super method, proxies with
+        Android are not taken into account for a Linux request, because Android is part of the Linux family.
+     */
+    private TestSession createNewSession(Map<String, Object> desiredCapabilities) {
+        List<RemoteProxy> candidates = proxyIndex.candidates(desiredCapabilities);
+        LOGGER.debug("Candidate nodes: " + candidates);
+
+        for (RemoteProxy proxy : candidates) {
+            TestSession newSession = proxy.getNewSession(desiredCapabilities);
+            if (newSession != null) {
+                proxyIndex.sessionStarted(proxy);
+                return newSession;
+            }
         }
-        try {
-            return Platform.fromString(requested.toString());
-        } catch (Exception ex) {
-            return null;
+        return null;
+    }
+
+    /**
+     * Notifies that a slot of the proxy was released (or registered), so the proxy is tried again for new sessions.
+     */
+    public void slotReleased(RemoteProxy proxy) {
+        if (contains(proxy)) {
+            proxyIndex.slotReleased(proxy);
         }
     }
 
@@ -225,6 +298,8 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
 
         if (shouldAdd) {
             super.add(proxy);
+            proxyIndex.add(proxy);
+            GridEvents.getInstance().publish(GridEvents.NODE_ADDED, nodeEvent(proxy));
         }
         else {
             // Won't be tracking the proxy, so it won't be removed and shutdown later - tear down.
@@ -253,9 +328,20 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
                 LOGGER.error("Failed to stop container [" + dockerSeleniumRemoteProxy.getId() + "].", e);
             }
         }
+        proxyIndex.remove(proxy);
+        GridEvents.getInstance().publish(GridEvents.NODE_REMOVED, nodeEvent(proxy));
         return super.remove(proxy);
     }
 
+    private static JsonObject nodeEvent(RemoteProxy proxy) {
+        JsonObject node = new JsonObject();
+        node.addProperty("id", proxy.getId());
+        if (proxy instanceof DockerSeleniumRemoteProxy) {
+            node.addProperty("containerId", ((DockerSeleniumRemoteProxy) proxy).getContainerId());
+        }
+        return node;
+    }
+
     /**
      * If possible, starts a new proxy that can satisfy the requested capabilities.
      * 
@@ -272,7 +358,7 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
      * @param desiredCapabilities
      *            capabilities of the proxy to be started.
      */
-    public synchronized void start(Map<String, Object> desiredCapabilities) {
+    public void start(Map<String, Object> desiredCapabilities) {
 
         if (startedContainers.size() >= this.maxContainers) {
             LOGGER.debug("Not starting new container, there are [{}] of max [{}] created.", startedContainers.size(),
@@ -300,15 +386,20 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
     private boolean register(DockerSeleniumRemoteProxy proxy) {
         String containerId = proxy.getContainerId();
 
-        ContainerStatus containerStatus = null;
-
-        for (Entry<ContainerCreationStatus, ContainerStatus> container : this.startedContainers.entrySet()) {
-            if (Objects.equals(container.getKey().getContainerName(), containerId)
-                    || Objects.equals(container.getKey().getContainerId(), containerId)) {
-                container.getValue().setProxy(Optional.of(proxy));
-                containerStatus = container.getValue();
-                break;
+        ContainerStatus containerStatus = findContainer(proxy);
+        if (containerStatus == null && !pendingCreations.isEmpty()) {
+            // The container may register before the backend answered its creation request.
+            LOGGER.debug("Container {} is not tracked yet, waiting for {} creations in progress.", containerId,
+                    pendingCreations.size());
+            try {
+                CompletableFuture.allOf(pendingCreations.toArray(new CompletableFuture<?>[0]))
+                        .get(REGISTRATION_WAIT_FOR_CREATION, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.debug("Creations still in progress after waiting for them.", e);
             }
+            containerStatus = findContainer(proxy);
         }
 
         if (containerStatus == null) {
@@ -328,12 +419,26 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         }
     }
 
+    private ContainerStatus findContainer(DockerSeleniumRemoteProxy proxy) {
+        String containerId = proxy.getContainerId();
+        for (Entry<ContainerCreationStatus, ContainerStatus> container : this.startedContainers.entrySet()) {
+            if (Objects.equals(container.getKey().getContainerName(), containerId)
+                    || Objects.equals(container.getKey().getContainerId(), containerId)) {
+                container.getValue().setProxy(Optional.of(proxy));
+                return container.getValue();
+            }
+        }
+        return null;
+    }
+
     /**
      * Checks the status of the containers.
      */
     private void checkContainers() {
         LOGGER.debug("Checking {} containers.", startedContainers.size());
 
+        proxyIndex.refresh();
+
         // Shutting down proxies that are done: cannot accept more tests or have an idle test
         // (without counting the already terminating proxies).
         Set<ContainerCreationStatus> doneProxies = new HashSet<>();
@@ -350,11 +455,13 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
 
         // Removing from the tracked set the ones that were already shutdown
         Set<ContainerCreationStatus> deadProxies = this.startedContainers.keySet().stream()
+                .filter(ContainerCreationStatus::isCreated)
                 .filter(starter::containerHasFinished).collect(Collectors.toSet());
         for (ContainerCreationStatus containerCreationStatus : deadProxies) {
             String reason = String.format("Proxy %s is terminated. Removing from tracked set.",
                     containerCreationStatus.getContainerName());
             ContainerStatus removedProxy = this.startedContainers.remove(containerCreationStatus);
+            starter.releasePorts(containerCreationStatus);
             Optional.ofNullable(removedProxy).flatMap(ContainerStatus::getProxy).ifPresent(proxy -> {
                 proxy.markDown();
                 if (this.contains(proxy)) {
@@ -367,31 +474,36 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         }
 
         // Creating proxies when needed
-        if (startedContainers.size() < this.minContainers) {
-            if (this.minContainers > this.maxContainers) {
-                LOGGER.info("Only up to {} containers will be started, since it is what is configured by " +
-                    "--maxDockerSeleniumContainers", this.maxContainers);
-                this.minContainers = this.maxContainers;
-            }
-            LOGGER.debug("AutoStarting container, because {} is less than min {}", startedContainers.size(),
-                    this.minContainers);
-            long outstanding = this.minContainers - startedContainers.size();
+        long busyCount = this.startedContainers.values().stream()
+                .filter(container -> !container.isShuttingDown())
+                .filter(container -> container.getProxy().map(DockerSeleniumRemoteProxy::isBusy).orElse(false))
+                .count();
+        long runningCount = this.startedContainers.values().stream()
+                .filter(container -> !container.isShuttingDown())
+                .count();
+        long targetCount = scalingPolicy.getTargetContainers(runningCount, busyCount, queuedRequests.getAsInt());
+        if (runningCount < targetCount) {
+            LOGGER.debug("AutoStarting container, because {} is less than the target {}", runningCount, targetCount);
+            long outstanding = Math.min(targetCount - runningCount, this.maxContainers - startedContainers.size());
             for (int i = 0; i < outstanding; i++) {
                 this.startContainer(Collections.emptyMap());
             }
         }
 
+        refillWarmPools();
+
         // Removing from the tracked set the ones that took too long to register (we assume they died)
         Set<ContainerCreationStatus> tookTooLongToStartProxies = new HashSet<>();
         for (Entry<ContainerCreationStatus, ContainerStatus> container : this.startedContainers.entrySet()) {
             ContainerCreationStatus creationStatus = container.getKey();
             ContainerStatus containerStatus = container.getValue();
 
-            // Only need to check containers that haven't yet started.
-            if (!containerStatus.isStarted()) {
+            // Only need to check containers that haven't yet started, and whose creation finished.
+            if (!containerStatus.isStarted() && creationStatus.isCreated()) {
                 if (starter.containerHasStarted(creationStatus)) {
                     long started = clock.millis();
                     containerStatus.setTimeStarted(Optional.of(started));
+                    scalingPolicy.containerStarted(started - containerStatus.getTimeCreated());
                     LOGGER.debug("Container {} started after {}.", creationStatus.getContainerName(),
                             (started - containerStatus.getTimeCreated()));
                 } else {
@@ -408,50 +520,119 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         for (ContainerCreationStatus tookTooLongToStartProxy : tookTooLongToStartProxies) {
             starter.stopContainer(tookTooLongToStartProxy.getContainerId());
             this.startedContainers.remove(tookTooLongToStartProxy);
+            starter.releasePorts(tookTooLongToStartProxy);
         }
 
 
-        // Shutting down the extra containers (without counting the already terminating proxies).
+        // Shutting down the extra containers (without counting the already terminating proxies and the ones that
+        // the warm pools still need).
         Set<ContainerCreationStatus> extraProxies = new HashSet<>();
-        long runningCount = this.startedContainers.values().stream()
+        Map<WarmPoolProfile, Long> spareWarmContainers = new HashMap<>();
+        warmPool.getProfiles().forEach(profile ->
+                spareWarmContainers.put(profile, countWarmContainers(profile) - warmPool.getTargetSize(profile)));
+        runningCount = this.startedContainers.values().stream()
                 .filter(container -> !container.isShuttingDown())
                 .count();
 
-        if (runningCount > this.minContainers) {
-            LOGGER.debug("Timing out containers because active container count {} is greater than min {}.",
-                    runningCount, this.minContainers);
-            long extra = runningCount - minContainers;
+        if (runningCount > targetCount) {
+            LOGGER.debug("Timing out containers because active container count {} is greater than the target {}.",
+                    runningCount, targetCount);
+            long extra = runningCount - targetCount;
 
             this.startedContainers.entrySet().stream()
                     .filter(entry -> !entry.getValue().isShuttingDown())
+                    .filter(entry -> spareWarmContainers.getOrDefault(entry.getValue().getProfile(), 1L) > 0)
                     .flatMap(entry -> entry.getValue().getProxy()
                             .filter(DockerSeleniumRemoteProxy::shutdownIfIdle)
                             .map(proxy -> Stream.of(Pair.of(entry, proxy))).orElse(Stream.empty()))
                     .limit(extra).forEach(pair -> {
                         extraProxies.add(pair.getLeft().getKey());
                         pair.getLeft().getValue().setShuttingDown(true);
+                        spareWarmContainers.computeIfPresent(pair.getLeft().getValue().getProfile(),
+                                (profile, spare) -> spare - 1);
                     });
         }
 
         LOGGER.debug("{} proxies are idle and will be removed.", extraProxies.size());
     }
 
+    /**
+     * Starts the containers missing in each warm pool, as long as the maximum amount of containers allows it.
+     */
+    private void refillWarmPools() {
+        for (WarmPoolProfile profile : warmPool.getProfiles()) {
+            long missing = warmPool.getTargetSize(profile) - countWarmContainers(profile);
+            for (int i = 0; i < missing && startedContainers.size() < this.maxContainers; i++) {
+                LOGGER.debug("Starting container for the {} warm pool.", profile);
+                this.startContainer(profile.toCapabilities());
+            }
+        }
+    }
+
+    // Containers of the profile that are starting or idle, i.e. the ones that can take a request right away.
+    private long countWarmContainers(WarmPoolProfile profile) {
+        return this.startedContainers.values().stream()
+                .filter(container -> !container.isShuttingDown() && profile.equals(container.getProfile()))
+                .filter(container -> !container.getProxy().map(DockerSeleniumRemoteProxy::isBusy).orElse(false))
+                .count();
+    }
+
     /**
      * Starts a container. Records that a request has been processed so that a
      * retried request will not cause extra proxies to be started.
+     *
+     * The container is created in the background, a placeholder entry is tracked
+     * in startedContainers until the creation finishes, so the maximum amount of
+     * containers is respected while several of them are being created.
      */
-    private synchronized void startContainer(Map<String, Object> desiredCapabilities) {
-        // Synchronized so that we record the container creation status before register
-        // can be called
-        ContainerCreationStatus startedContainer = starter.startDockerSeleniumContainer(desiredCapabilities);
-        if (startedContainer == null) {
-            LOGGER.error("Failed to start container.");
-        } else {
-            filter.requestHasBeenProcessed(desiredCapabilities);
-            startedContainers.put(startedContainer,
-                    new ContainerStatus(startedContainer.getContainerName(), clock.millis()));
-            LOGGER.debug("Created {}.", startedContainer);
+    private void startContainer(Map<String, Object> desiredCapabilities) {
+        ContainerCreationStatus placeholder = reserveContainer(desiredCapabilities);
+        if (placeholder == null) {
+            LOGGER.debug("Not starting new container, there are [{}] of max [{}] created or being created.",
+                    startedContainers.size(), this.maxContainers);
+            return;
         }
+        filter.requestHasBeenProcessed(desiredCapabilities);
+        CompletableFuture<ContainerCreationStatus> creation;
+        try {
+            creation = starter.startDockerSeleniumContainerAsync(desiredCapabilities, provisioner::execute);
+        } catch (Exception e) {
+            creation = new CompletableFuture<>();
+            creation.completeExceptionally(e);
+        }
+        pendingCreations.add(creation);
+        CompletableFuture<ContainerCreationStatus> pendingCreation = creation;
+        creation.whenComplete((startedContainer, error) -> {
+            if (startedContainer == null) {
+                LOGGER.error("Failed to start container.", error);
+                filter.requestHasFailed(desiredCapabilities);
+            } else if (!startedContainer.isCreated()) {
+                // E.g. docker refused the creation or no port was free. Not tracked, nothing will ever remove it.
+                LOGGER.warn("Container was not created, the request will be retried.");
+                filter.requestHasFailed(desiredCapabilities);
+            } else {
+                ContainerStatus reserved = startedContainers.get(placeholder);
+                ContainerStatus containerStatus = new ContainerStatus(startedContainer.getContainerName(),
+                        reserved.getTimeCreated());
+                containerStatus.setProfile(reserved.getProfile());
+                // Tracked before the creation stops being pending, so a container waiting to register finds it.
+                startedContainers.put(startedContainer, containerStatus);
+                LOGGER.debug("Created {}.", startedContainer);
+            }
+            startedContainers.remove(placeholder);
+            pendingCreations.remove(pendingCreation);
+        });
+    }
+
+    private synchronized ContainerCreationStatus reserveContainer(Map<String, Object> desiredCapabilities) {
+        if (startedContainers.size() >= this.maxContainers) {
+            return null;
+        }
+        ContainerCreationStatus placeholder = new ContainerCreationStatus(false);
+        ContainerStatus containerStatus = new ContainerStatus(null, clock.millis());
+        containerStatus.setProfile(WarmPoolProfile.fromCapabilities(desiredCapabilities));
+        startedContainers.put(placeholder, containerStatus);
+        return placeholder;
     }
 
     private boolean nodesAvailable(Map<String, Object> requestedCapability) {
@@ -547,6 +728,7 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         private Optional<Long> timeStarted = Optional.empty();
         private Optional<DockerSeleniumRemoteProxy> proxy = Optional.empty();
         private boolean shuttingDown = false;
+        private WarmPoolProfile profile;
 
         public ContainerStatus(String containerId, long timeCreated) {
             super();
@@ -591,6 +773,14 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
             this.shuttingDown = shuttingDown;
         }
 
+        public WarmPoolProfile getProfile() {
+            return profile;
+        }
+
+        public void setProfile(WarmPoolProfile profile) {
+            this.profile = profile;
+        }
+
         @Override
         public String toString() {
             return "ContainerStatus [containerId=" + containerId + ", timeCreated=" + timeCreated + ", timeStarted="
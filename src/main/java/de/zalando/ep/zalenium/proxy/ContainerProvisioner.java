@@ -0,0 +1,196 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.prometheus.client.Gauge;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Starts containers for the session requests that found no node, with a bounded amount of threads so a burst of
+ * requests does not create a thread per request. The containers themselves are created on the same threads through
+ * {@link #execute(Runnable)}, so the threads bound the amount of containers being created at the same time.
+ *
+ * Work is queued once per {@link WarmPoolProfile}: while a profile is waiting in the queue, new requests for it are
+ * only added to the requests of that profile, and a request already waiting is not added twice. Each run starts a
+ * container for one request of the profile and queues the profile again if more requests are waiting, so profiles
+ * take turns. Requests that get a session or are removed from the hub queue meanwhile are cancelled.
+ */
+@ThreadSafe
+class ContainerProvisioner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContainerProvisioner.class.getName());
+    // The hub retries the waiting requests, so dropping work when the queue is full only delays it.
+    private static final int QUEUE_CAPACITY = 1000;
+
+    private static final Gauge provisioningThreads = Gauge.build()
+            .name("zalenium_provisioning_threads")
+            .help("Threads currently creating containers.").register();
+    private static final Gauge provisioningQueueSize = Gauge.build()
+            .name("zalenium_provisioning_queue_size")
+            .help("Session requests waiting for a container to be started for them.").register();
+
+    private final ThreadPoolExecutor executor;
+    private final Consumer<Map<String, Object>> startAction;
+    // Requests waiting per profile, compared by identity like the rest of the request tracking.
+    private final Map<WarmPoolProfile, Deque<Map<String, Object>>> waitingRequests = new ConcurrentHashMap<>();
+
+    ContainerProvisioner(int maxConcurrentStarts, Consumer<Map<String, Object>> startAction) {
+        this.startAction = startAction;
+        int threads = Math.max(1, maxConcurrentStarts);
+        this.executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                new ThreadFactoryBuilder().setNameFormat("ContainerProvisioner-%d").setDaemon(true).build(),
+                (runnable, pool) -> rejected(runnable));
+        this.executor.allowCoreThreadTimeOut(true);
+        LOGGER.info("Starting up to {} containers at the same time.", threads);
+    }
+
+    /**
+     * Queues the start of a container for the given request, unless it is already waiting.
+     */
+    void provision(Map<String, Object> desiredCapabilities) {
+        WarmPoolProfile profile = WarmPoolProfile.fromCapabilities(desiredCapabilities);
+        boolean[] queueProfile = {false};
+        boolean[] added = {false};
+        waitingRequests.compute(profile, (key, requests) -> {
+            if (requests == null) {
+                requests = new ArrayDeque<>();
+                queueProfile[0] = true;
+            }
+            if (requests.stream().noneMatch(request -> request == desiredCapabilities)) {
+                requests.add(desiredCapabilities);
+                added[0] = true;
+            }
+            return requests;
+        });
+        if (added[0]) {
+            provisioningQueueSize.inc();
+        }
+        if (queueProfile[0]) {
+            executor.execute(new ProvisioningTask(profile));
+        }
+    }
+
+    /**
+     * Stops waiting for a container for the given request, e.g. because it got a session or left the hub queue.
+     * A container being started for it already is not stopped, it will be used by the next request.
+     */
+    void cancel(Map<String, Object> desiredCapabilities) {
+        WarmPoolProfile profile = WarmPoolProfile.fromCapabilities(desiredCapabilities);
+        waitingRequests.computeIfPresent(profile, (key, requests) -> {
+            if (requests.removeIf(request -> request == desiredCapabilities)) {
+                provisioningQueueSize.dec();
+                LOGGER.debug("Cancelled the container start for {}.", desiredCapabilities);
+            }
+            return requests;
+        });
+    }
+
+    /**
+     * Runs the creation of a container on the provisioning threads.
+     *
+     * @throws RejectedExecutionException if the queue is full or the provisioner is stopped.
+     */
+    void execute(Runnable creation) {
+        executor.execute(() -> {
+            provisioningThreads.inc();
+            try {
+                creation.run();
+            } finally {
+                provisioningThreads.dec();
+            }
+        });
+    }
+
+    int getQueueSize() {
+        return waitingRequests.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    private void rejected(Runnable runnable) {
+        if (!(runnable instanceof ProvisioningTask)) {
+            throw new RejectedExecutionException("The provisioning queue is full or stopped.");
+        }
+        ProvisioningTask task = (ProvisioningTask) runnable;
+        int dropped = drop(task);
+        if (dropped > 0 && !executor.isShutdown()) {
+            LOGGER.warn("Provisioning queue is full, {} container(s) for {} will be requested later.",
+                    dropped, task.profile);
+        }
+    }
+
+    /**
+     * Forgets the requests waiting for the task's profile, the task will not run.
+     *
+     * @return the amount of requests dropped.
+     */
+    private int drop(ProvisioningTask task) {
+        Deque<Map<String, Object>> dropped = waitingRequests.remove(task.profile);
+        if (dropped == null) {
+            return 0;
+        }
+        provisioningQueueSize.dec(dropped.size());
+        return dropped.size();
+    }
+
+    void stop() {
+        // Tasks still queued never run, their requests are dropped so the queue size metric goes back down.
+        executor.shutdownNow().stream()
+                .filter(runnable -> runnable instanceof ProvisioningTask)
+                .forEach(runnable -> drop((ProvisioningTask) runnable));
+    }
+
+    private class ProvisioningTask implements Runnable {
+
+        private final WarmPoolProfile profile;
+
+        ProvisioningTask(WarmPoolProfile profile) {
+            this.profile = profile;
+        }
+
+        @Override
+        public void run() {
+            Map<String, Object> next = takeNext();
+            if (next == null) {
+                return;
+            }
+            try {
+                startAction.accept(next);
+            } catch (Exception e) {
+                LOGGER.error("Failed to start a container for " + next, e);
+            }
+        }
+
+        // Takes the oldest request of the profile and queues the profile again when more are waiting.
+        private Map<String, Object> takeNext() {
+            Deque<Map<String, Object>> taken = new ArrayDeque<>(1);
+            boolean[] queueAgain = {false};
+            waitingRequests.computeIfPresent(profile, (key, requests) -> {
+                if (!requests.isEmpty()) {
+                    taken.add(requests.poll());
+                }
+                queueAgain[0] = !requests.isEmpty();
+                return requests.isEmpty() ? null : requests;
+            });
+            if (!taken.isEmpty()) {
+                provisioningQueueSize.dec();
+            }
+            if (queueAgain[0]) {
+                executor.execute(this);
+            }
+            return taken.peek();
+        }
+    }
+}
@@ -5,12 +5,14 @@ import java.nio.file.CopyOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
@@ -44,21 +46,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import de.zalando.ep.zalenium.container.CommandResult;
 import de.zalando.ep.zalenium.container.ContainerClient;
 import de.zalando.ep.zalenium.container.ContainerClientRegistration;
 import de.zalando.ep.zalenium.container.ContainerFactory;
+import de.zalando.ep.zalenium.container.LifecycleExecutors;
 import de.zalando.ep.zalenium.container.swarm.SwarmUtilities;
 import de.zalando.ep.zalenium.dashboard.DashboardCollection;
 import de.zalando.ep.zalenium.dashboard.TestInformation;
+import de.zalando.ep.zalenium.matcher.DockerSeleniumCapabilityKey;
 import de.zalando.ep.zalenium.matcher.DockerSeleniumCapabilityMatcher;
 import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityType;
 import de.zalando.ep.zalenium.util.CommonProxyUtilities;
 import de.zalando.ep.zalenium.util.Environment;
 import de.zalando.ep.zalenium.util.GoogleAnalyticsApi;
+import de.zalando.ep.zalenium.util.ZaleniumCookie;
+import io.prometheus.client.Histogram;
 
 /*
     The implementation of this class was inspired on https://gist.github.com/krmahadevan/4649607
@@ -82,7 +88,11 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
     private static final int DEFAULT_MAX_TEST_SESSIONS = 1;
     private static final boolean DEFAULT_KEEP_ONLY_FAILED_TESTS = false;
     private static final Environment defaultEnvironment = new Environment();
-    private static final ExecutorService EXECUTOR_SERVICE = Executors.newFixedThreadPool(5);
+    private static final Histogram nodeReuseLatency = Histogram.build()
+            .name("zalenium_node_reuse_latency_seconds")
+            .help("Time from the end of a session until the node can take the next one.")
+            .buckets(0.5, 1, 2.5, 5, 10, 20, 30, 60, 120)
+            .register();
     private static int maxTestSessions;
     private static boolean keepOnlyFailedTests;
     private static boolean videoRecordingEnabledGlobal;
@@ -107,6 +117,11 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
     private AtomicBoolean timedOut = new AtomicBoolean(false);
     private long timeRegistered = System.currentTimeMillis();
     private boolean stopRecordingByCookie = false;
+    // Set while cleaning up the node, the videos are then copied in parallel to the logs.
+    private volatile boolean copyVideosInBackground = false;
+    private volatile CompletableFuture<Void> videoCopy = CompletableFuture.completedFuture(null);
+    // Cleanup still running for a node that gets no other session, the container is stopped after it.
+    private volatile CompletableFuture<Void> pendingArtifacts = CompletableFuture.completedFuture(null);
 
     public DockerSeleniumRemoteProxy(RegistrationRequest request, GridRegistry registry) {
         super(request, registry);
@@ -278,7 +293,8 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
     private long getConfiguredIdleTimeout(Map<String, Object> requestedCapability) {
         long configuredIdleTimeout;
         try {
-            Object idleTimeout = requestedCapability.getOrDefault(ZaleniumCapabilityType.IDLE_TIMEOUT, DEFAULT_MAX_TEST_IDLE_TIME_SECS);
+            Object idleTimeout = Optional.ofNullable(DockerSeleniumCapabilityKey.getZaleniumCapability(requestedCapability,
+                    ZaleniumCapabilityType.IDLE_TIMEOUT)).orElse(DEFAULT_MAX_TEST_IDLE_TIME_SECS);
             configuredIdleTimeout = Long.valueOf(String.valueOf(idleTimeout));
         } catch (Exception e) {
             configuredIdleTimeout = DEFAULT_MAX_TEST_IDLE_TIME_SECS;
@@ -291,97 +307,101 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         return configuredIdleTimeout;
     }
 
+    /*
+        Runs for every command of every test, so it only renames the thread and reads the body for the rare requests
+        that set a cookie.
+     */
     @Override
     public void beforeCommand(TestSession session, HttpServletRequest request, HttpServletResponse response) {
-        String currentName = configureThreadName();
         ensureTestInformation(session);
         super.beforeCommand(session, request, response);
-        LOGGER.debug("lastCommand: {} - executing...", request.getMethod(), request.getPathInfo());
-        if (request instanceof WebDriverRequest && "POST".equalsIgnoreCase(request.getMethod())) {
-            WebDriverRequest seleniumRequest = (WebDriverRequest) request;
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} lastCommand: {} {} - executing...", getId(), request.getMethod(), request.getPathInfo());
+        }
+        if (isPost(request) && StringUtils.endsWith(request.getPathInfo(), "/cookie")) {
+            String currentName = configureThreadName();
             try {
-                if (seleniumRequest.getPathInfo().endsWith("cookie")) {
-                    LOGGER.debug("Checking for cookies... {}", seleniumRequest.getBody());
-                    JsonElement bodyRequest = new JsonParser().parse(seleniumRequest.getBody());
-                    JsonObject cookie = bodyRequest.getAsJsonObject().getAsJsonObject("cookie");
-                    JsonObject emptyName = new JsonObject();
-                    emptyName.addProperty("name", "");
-                    String cookieName = Optional.ofNullable(cookie.get("name")).orElse(emptyName.get("name")).getAsString();
-                    if ("zaleniumTestPassed".equalsIgnoreCase(cookieName)) {
-                        boolean testPassed = Boolean.parseBoolean(cookie.get("value").getAsString());
-                        if (testPassed) {
-                            testInformation.setTestStatus(TestInformation.TestStatus.SUCCESS);
-                        } else {
-                            testInformation.setTestStatus(TestInformation.TestStatus.FAILED);
-                        }
-                    }
-                    if ("zaleniumMessage".equalsIgnoreCase(cookieName)) {
-                        String message = cookie.get("value").getAsString();
-                        if (ContainerFactory.getIsKubernetes().get()) {
-                            // https://github.com/zalando/zalenium/issues/763
-                            message = message.replace("#","");
-                        }
-                        String messageCommand = String.format(" 'Zalenium', '%s', --icon=/home/seluser/images/message.png",
-                                message);
-                        processContainerAction(DockerSeleniumContainerAction.CLEAN_NOTIFICATION, getContainerId());
-                        processContainerAction(DockerSeleniumContainerAction.SEND_NOTIFICATION, messageCommand,
-                                getContainerId());
-                    }
-                    if ("zaleniumVideo".equalsIgnoreCase(cookieName)) {
-                        boolean recordVideo = Boolean.parseBoolean(cookie.get("value").getAsString());
-                        if (recordVideo && !isVideoRecordingEnabled()) {
-                            setVideoRecordingEnabledSession(true);
-                            testInformation.setVideoRecorded(true);
-                            stopRecordingByCookie = false;
-                            videoRecording(DockerSeleniumContainerAction.START_RECORDING);
-                        } else if (!recordVideo && isVideoRecordingEnabled()){
-                            stopRecordingByCookie = true;
-                            videoRecording(DockerSeleniumContainerAction.STOP_RECORDING);
-                            setVideoRecordingEnabledSession(false);
-                            testInformation.setVideoRecorded(false);
-                        }
-                    }
-                    if ("zaleniumTestName".equalsIgnoreCase(cookieName)) {
-                        String newTestName = cookie.get("value").getAsString();
-                        if (!newTestName.isEmpty()) {
-                            testName = newTestName;
-                            testInformation.setTestName(testName);
-                        }
-                    }
-                    else if(CommonProxyUtilities.metadataCookieName.equalsIgnoreCase(cookieName)) {
-                        JsonParser jsonParser = new JsonParser();
-                        JsonObject metadata = jsonParser.parse(cookie.get("value").getAsString()).getAsJsonObject();
-                        testInformation.setMetadata(metadata);
-                    }
+                ZaleniumCookie cookie = ZaleniumCookie.fromRequestBody(((WebDriverRequest) request).getBody());
+                if (cookie != null) {
+                    processZaleniumCookie(cookie);
                 }
             } catch (Exception e) {
                 LOGGER.warn("There was an error while checking for cookies.", e);
             }
+            setThreadName(currentName);
+        }
+    }
+
+    private void processZaleniumCookie(ZaleniumCookie cookie) {
+        LOGGER.debug("Processing cookie {}", cookie.getName());
+        if (cookie.hasName("zaleniumTestPassed")) {
+            boolean testPassed = Boolean.parseBoolean(cookie.getValue());
+            if (testPassed) {
+                testInformation.setTestStatus(TestInformation.TestStatus.SUCCESS);
+            } else {
+                testInformation.setTestStatus(TestInformation.TestStatus.FAILED);
+            }
+        }
+        if (cookie.hasName("zaleniumMessage")) {
+            String message = cookie.getValue();
+            if (ContainerFactory.getIsKubernetes().get()) {
+                // https://github.com/zalando/zalenium/issues/763
+                message = message.replace("#","");
+            }
+            String messageCommand = String.format(" 'Zalenium', '%s', --icon=/home/seluser/images/message.png",
+                    message);
+            Map<DockerSeleniumContainerAction, String> actions = new LinkedHashMap<>();
+            actions.put(DockerSeleniumContainerAction.CLEAN_NOTIFICATION, "");
+            actions.put(DockerSeleniumContainerAction.SEND_NOTIFICATION, messageCommand);
+            processContainerActions(actions, getContainerId());
+        }
+        if (cookie.hasName("zaleniumVideo")) {
+            boolean recordVideo = Boolean.parseBoolean(cookie.getValue());
+            if (recordVideo && !isVideoRecordingEnabled()) {
+                setVideoRecordingEnabledSession(true);
+                testInformation.setVideoRecorded(true);
+                stopRecordingByCookie = false;
+                videoRecording(DockerSeleniumContainerAction.START_RECORDING);
+            } else if (!recordVideo && isVideoRecordingEnabled()){
+                stopRecordingByCookie = true;
+                videoRecording(DockerSeleniumContainerAction.STOP_RECORDING);
+                setVideoRecordingEnabledSession(false);
+                testInformation.setVideoRecorded(false);
+            }
+        }
+        if (cookie.hasName("zaleniumTestName")) {
+            String newTestName = cookie.getValue();
+            if (!newTestName.isEmpty()) {
+                testName = newTestName;
+                testInformation.setTestName(testName);
+            }
+        }
+        else if (cookie.hasName(CommonProxyUtilities.metadataCookieName)) {
+            JsonObject metadata = new JsonParser().parse(cookie.getValue()).getAsJsonObject();
+            testInformation.setMetadata(metadata);
         }
-        setThreadName(currentName);
     }
 
     @Override
     public void afterCommand(TestSession session, HttpServletRequest request, HttpServletResponse response) {
-        String currentName = configureThreadName();
         super.afterCommand(session, request, response);
-        LOGGER.debug("lastCommand: {} - executing...", request.getMethod(), request.getPathInfo());
-        if (request instanceof WebDriverRequest && "POST".equalsIgnoreCase(request.getMethod())) {
-            WebDriverRequest seleniumRequest = (WebDriverRequest) request;
-            if (RequestType.START_SESSION.equals(seleniumRequest.getRequestType())) {
-                ExternalSessionKey externalKey = Optional.ofNullable(session.getExternalKey())
-                        .orElse(new ExternalSessionKey("[No external key present]"));
-                LOGGER.debug(String.format("Test session started with internal key %s and external key %s assigned to remote %s.",
-                        session.getInternalKey(),
-                        externalKey,
-                        getId()));
-                LOGGER.debug("Test session started with internal key {} and external key {} assigned to remote.",
-                        session.getInternalKey(), externalKey);
-                videoRecording(DockerSeleniumContainerAction.START_RECORDING);
-            }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} lastCommand: {} {} - executed", getId(), request.getMethod(), request.getPathInfo());
+        }
+        if (isPost(request) && RequestType.START_SESSION.equals(((WebDriverRequest) request).getRequestType())) {
+            String currentName = configureThreadName();
+            ExternalSessionKey externalKey = Optional.ofNullable(session.getExternalKey())
+                    .orElse(new ExternalSessionKey("[No external key present]"));
+            LOGGER.debug("Test session started with internal key {} and external key {} assigned to remote.",
+                    session.getInternalKey(), externalKey);
+            videoRecording(DockerSeleniumContainerAction.START_RECORDING);
+            setThreadName(currentName);
         }
         this.lastCommandTime = System.currentTimeMillis();
-        setThreadName(currentName);
+    }
+
+    private static boolean isPost(HttpServletRequest request) {
+        return request instanceof WebDriverRequest && "POST".equalsIgnoreCase(request.getMethod());
     }
 
     private void ensureTestInformation(TestSession session) {
@@ -392,6 +412,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         if(testInformation != null && testInformation.getSeleniumSessionId().equals(seleniumSessionId)) {
             return;
         }
+        String currentName = configureThreadName();
         Map<String, Object> requestedCapability = session.getRequestedCapabilities();
 
         LOGGER.info("External ssid {} internal {} ", session.getExternalKey(), session.getInternalKey());
@@ -404,7 +425,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
             testName = seleniumSessionId;
         }
         testBuild = getCapability(requestedCapability, ZaleniumCapabilityType.BUILD_NAME, "");
-        if (requestedCapability.containsKey(ZaleniumCapabilityType.RECORD_VIDEO)) {
+        if (DockerSeleniumCapabilityKey.getZaleniumCapability(requestedCapability, ZaleniumCapabilityType.RECORD_VIDEO) != null) {
             boolean videoRecording = Boolean.parseBoolean(getCapability(requestedCapability, ZaleniumCapabilityType.RECORD_VIDEO, "true"));
             setVideoRecordingEnabledSession(videoRecording);
         }
@@ -428,6 +449,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         testInformation.setVideoRecorded(isVideoRecordingEnabled());
 
         super.beforeSession(session);
+        setThreadName(currentName);
     }
 
     @Override
@@ -479,7 +501,8 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
     }
 
     private String getCapability(Map<String, Object> requestedCapability, String capabilityName, String defaultValue) {
-        return Optional.ofNullable(requestedCapability.get(capabilityName)).orElse(defaultValue).toString();
+        return Optional.ofNullable(DockerSeleniumCapabilityKey.getZaleniumCapability(requestedCapability, capabilityName))
+                .orElse(defaultValue).toString();
     }
 
     @VisibleForTesting
@@ -572,7 +595,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         }
 
         if (shutDown) {
-            EXECUTOR_SERVICE.execute(() -> shutdownNode(shutdownType));
+            LifecycleExecutors.control().execute(() -> shutdownNode(shutdownType));
         }
     }
 
@@ -652,12 +675,42 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
             final String[] command = { "bash", "-c", action.getContainerAction().concat(commandParameters)};
             containerClient.executeCommand(containerId, command, action.isWaitForExecution());
         }
+        processArtifacts(action, containerId);
+    }
+
+    /*
+        Runs the commands of the given actions, in their iteration order, with a single exec in the container and
+        waits for them. Each command gets the parameters mapped to its action.
+     */
+    @VisibleForTesting
+    void processContainerActions(final Map<DockerSeleniumContainerAction, String> actions, final String containerId) {
+        List<String> commands = actions.entrySet().stream()
+                .filter(action -> DockerSeleniumContainerAction.TRANSFER_LOGS != action.getKey())
+                .map(action -> action.getKey().getContainerAction().concat(action.getValue()))
+                .collect(Collectors.toList());
+        if (!commands.isEmpty()) {
+            for (CommandResult result : containerClient.executeBatch(containerId, commands)) {
+                if (!result.isSuccessful()) {
+                    LOGGER.debug("{} exited with {}: {}", result.getCommand(), result.getExitCode(), result.getOutput());
+                }
+            }
+        }
+        actions.keySet().forEach(action -> processArtifacts(action, containerId));
+    }
 
-        if (keepVideoAndLogs()) {
+    private void processArtifacts(final DockerSeleniumContainerAction action, final String containerId) {
+        if (keepVideoAndLogs(testInformation)) {
             if (DockerSeleniumContainerAction.STOP_RECORDING == action) {
-                copyVideos(containerId);
-                if (stopRecordingByCookie) {
-                    DashboardCollection.updateDashboard(testInformation);
+                Runnable copyVideos = () -> {
+                    copyVideos(containerId);
+                    if (stopRecordingByCookie) {
+                        DashboardCollection.updateDashboard(testInformation);
+                    }
+                };
+                if (copyVideosInBackground) {
+                    videoCopy = ArtifactTransfer.submit(copyVideos);
+                } else {
+                    copyVideos.run();
                 }
             }
             if (DockerSeleniumContainerAction.TRANSFER_LOGS == action) {
@@ -693,7 +746,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                     videoFile = Paths.get(String.format("%s/%s", testInformation.getVideoFolderPath(),
                             testInformation.getFileName()));
                 }
-                Files.copy(entry.get(), videoFile, StandardCopyOption.REPLACE_EXISTING);
+                ArtifactTransfer.transfer(entry, videoFile);
                 CommonProxyUtilities.setFilePermissions(videoFile);
                 videoWasCopied = true;
                 testInformation.setFileCount(testInformation.getFileCount() + 1);
@@ -739,7 +792,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                 }
                 String fileName = entry.name().replace("cont/", "");
                 Path logFile = Paths.get(String.format("%s/%s", testInformation.getLogsFolderPath(), fileName));
-                Files.copy(entry.get(), logFile);
+                ArtifactTransfer.transfer(entry, logFile);
                 CommonProxyUtilities.setFilePermissions(logFile);
             }
             LOGGER.debug("Logs copied to: {}", testInformation.getLogsFolderPath());
@@ -801,27 +854,102 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         // willShutdown == true => there won't be a next session
         if (!isCleaningUp()) {
             this.setCleaningMarker(!willShutdown);
+            long cleanupStarted = System.nanoTime();
+            // The steps below can outlive this session, so they only use the values of the session that ended.
+            String containerId = getContainerId();
+            TestInformation endedTest = testInformation;
+            this.copyVideosInBackground = true;
+            this.videoCopy = CompletableFuture.completedFuture(null);
 
             try {
-                if (testInformation != null) {
-                    processContainerAction(DockerSeleniumContainerAction.SEND_NOTIFICATION,
-                        testInformation.getTestStatus().getTestNotificationMessage(), getContainerId());
+                // The notification and the stop of the recording share one exec. Then the videos and logs are copied
+                // in parallel, and the container is reset once both are done. When there is nothing to copy, the reset
+                // joins the same exec.
+                boolean keepsArtifacts = endedTest != null && keepVideoAndLogs(endedTest);
+                boolean copiesArtifacts = keepsArtifacts && !SwarmUtilities.isSwarmActive();
+                Map<DockerSeleniumContainerAction, String> actions = new LinkedHashMap<>();
+                if (endedTest != null) {
+                    actions.put(DockerSeleniumContainerAction.SEND_NOTIFICATION,
+                            endedTest.getTestStatus().getTestNotificationMessage());
                 }
-                videoRecording(DockerSeleniumContainerAction.STOP_RECORDING);
-                processContainerAction(DockerSeleniumContainerAction.TRANSFER_LOGS, getContainerId());
-                processContainerAction(DockerSeleniumContainerAction.CLEANUP_CONTAINER,
-                    getContainerId());
+                if (isVideoRecordingEnabled()) {
+                    actions.put(DockerSeleniumContainerAction.STOP_RECORDING, "");
+                } else {
+                    LOGGER.debug("{}: Video recording is disabled",
+                            DockerSeleniumContainerAction.STOP_RECORDING.getContainerAction());
+                }
+                if (!copiesArtifacts) {
+                    actions.put(DockerSeleniumContainerAction.CLEANUP_CONTAINER, "");
+                }
+                processContainerActions(actions, containerId);
 
-                if (testInformation != null && keepVideoAndLogs()) {
-                    DashboardCollection.updateDashboard(testInformation);
+                CompletableFuture<Void> logsCopied = CompletableFuture.completedFuture(null);
+                if (copiesArtifacts) {
+                    logsCopied = ArtifactTransfer.submit(
+                            () -> processContainerAction(DockerSeleniumContainerAction.TRANSFER_LOGS, containerId));
+                }
+
+                CompletableFuture<Void> cleanedUp = CompletableFuture.allOf(videoCopy, logsCopied)
+                        .thenCompose(artifactsCopied -> runContainerAction(() -> {
+                            if (copiesArtifacts) {
+                                processContainerAction(DockerSeleniumContainerAction.CLEANUP_CONTAINER, containerId);
+                            }
+                            if (keepsArtifacts) {
+                                DashboardCollection.updateDashboard(endedTest);
+                            }
+                        }));
+
+                if (willShutdown) {
+                    // Nothing else runs in the container, so the node is released as soon as the recording stopped.
+                    // shutdownNode stops the container once the cleanup is done.
+                    pendingArtifacts = cleanedUp;
+                } else if (awaitCleanup(cleanedUp)) {
+                    nodeReuseLatency.observe(
+                            (System.nanoTime() - cleanupStarted) / (double) TimeUnit.SECONDS.toNanos(1));
+                } else {
+                    // The container could still be reset while the next session runs, so the node is not reused.
+                    stopReceivingTests();
+                    pendingArtifacts = cleanedUp;
+                    timeout("cleanup not finished in time.", ShutdownType.CLEANUP_TIMEOUT);
                 }
             } finally {
+                this.copyVideosInBackground = false;
                 this.unsetCleaningMarker();
             }
         }
     }
 
-    private boolean keepVideoAndLogs() {
+    private CompletableFuture<Void> runContainerAction(Runnable action) {
+        return CompletableFuture.runAsync(() -> {
+            String currentName = configureThreadName();
+            try {
+                action.run();
+            } finally {
+                setThreadName(currentName);
+            }
+        }, LifecycleExecutors.control()).exceptionally(e -> {
+            LOGGER.warn("Error while cleaning up the node", e);
+            return null;
+        });
+    }
+
+    /**
+     * @return true if the cleanup finished within the proxy cleanup timeout.
+     */
+    private boolean awaitCleanup(CompletableFuture<Void> cleanedUp) {
+        try {
+            cleanedUp.get(getProxyCleanUpTimeout(), TimeUnit.SECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.warn("Cleanup did not finish after {} seconds, the node will not be reused.",
+                    getProxyCleanUpTimeout());
+        }
+        return false;
+    }
+
+    private boolean keepVideoAndLogs(TestInformation testInformation) {
         return !keepOnlyFailedTests || TestInformation.TestStatus.FAILED.equals(testInformation.getTestStatus())
                 || TestInformation.TestStatus.TIMEOUT.equals(testInformation.getTestStatus());
     }
@@ -833,6 +961,11 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
             shutdownReason = String.format(
                     "Marking the node as down because it was stopped after %s tests.", maxTestSessions);
         }
+        else if (shutdownType == ShutdownType.CLEANUP_TIMEOUT) {
+            shutdownReason = String.format(
+                    "Marking the node as down because its cleanup took more than %s seconds.",
+                    getProxyCleanUpTimeout());
+        }
         else {
             shutdownReason = "Marking the node as down because it was idle after the tests had finished.";
         }
@@ -846,9 +979,26 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                     getMaxTestIdleTimeSecs());
         }
 
-        containerClient.stopContainer(getContainerId());
-
-        addNewEvent(new RemoteUnregisterException(shutdownReason));
+        // The container is stopped once its artifacts are copied, without holding a control thread meanwhile.
+        String reason = shutdownReason;
+        Runnable stopContainer = () -> {
+            String threadName = configureThreadName();
+            containerClient.stopContainer(getContainerId());
+            addNewEvent(new RemoteUnregisterException(reason));
+            setThreadName(threadName);
+        };
+        if (pendingArtifacts.isDone()) {
+            stopContainer.run();
+        } else {
+            LifecycleExecutors.withTimeout(pendingArtifacts, getProxyCleanUpTimeout(), TimeUnit.SECONDS)
+                    .whenCompleteAsync((copied, error) -> {
+                        if (error != null) {
+                            LOGGER.warn("Artifacts were not copied after {} seconds, stopping the container anyway.",
+                                    getProxyCleanUpTimeout());
+                        }
+                        stopContainer.run();
+                    }, LifecycleExecutors.control());
+        }
         setThreadName(currentName);
     }
 
@@ -904,7 +1054,8 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
     public enum ShutdownType {
         STALE,
         IDLE,
-        MAX_TEST_SESSIONS_REACHED
+        MAX_TEST_SESSIONS_REACHED,
+        CLEANUP_TIMEOUT
     }
 
 
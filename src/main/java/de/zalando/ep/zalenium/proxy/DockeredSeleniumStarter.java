@@ -2,12 +2,13 @@ package de.zalando.ep.zalenium.proxy;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.spotify.docker.client.messages.ContainerInfo;
 import de.zalando.ep.zalenium.container.DockerContainerClient;
@@ -30,6 +31,7 @@ import de.zalando.ep.zalenium.container.ContainerCreationStatus;
 import de.zalando.ep.zalenium.container.ContainerFactory;
 import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityType;
 import de.zalando.ep.zalenium.util.Environment;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,7 +69,7 @@ public class DockeredSeleniumStarter {
     private static final int UPPER_PORT_BOUNDARY = 49999;
     private static final ContainerClient defaultContainerClient = ContainerFactory.getContainerClient();
     private static final Environment defaultEnvironment = new Environment();
-    private static final List<Integer> allocatedPorts = Collections.synchronizedList(new ArrayList<>());
+    private static final PortAllocator portAllocator = new PortAllocator(LOWER_PORT_BOUNDARY, UPPER_PORT_BOUNDARY);
     private static final String[] HTTP_PROXY_ENV_VARS = {
             "zalenium_http_proxy",
             "zalenium_https_proxy",
@@ -302,13 +304,45 @@ public class DockeredSeleniumStarter {
         String latestImage = getLatestDownloadedImage(getDockerSeleniumImageName());
 
         int containerPort = LOWER_PORT_BOUNDARY;
-        if (containerClient instanceof DockerContainerClient || containerClient instanceof SwarmContainerClient) {
-            containerPort = findFreePortInRange();
+        if (allocatesPorts()) {
+            containerPort = portAllocator.allocate();
+            if (containerPort == PortAllocator.NO_FREE_PORT) {
+                LOGGER.warn("All ports between {} and {} are in use.", LOWER_PORT_BOUNDARY, UPPER_PORT_BOUNDARY);
+                return new ContainerCreationStatus(false);
+            }
         }
         Map<String, String> envVars = buildEnvVars(effectiveTimeZone, effectiveScreenSize, hostIpAddress, sendAnonymousUsageInfo,
                 nodePolling, nodeRegisterCycle, seleniumNodeParams, seleniumNodeHost, containerPort);
 
-        return containerClient.createContainer(getContainerName(), latestImage, envVars, String.valueOf(containerPort));
+        ContainerCreationStatus creationStatus = null;
+        try {
+            creationStatus = containerClient.createContainer(getContainerName(), latestImage, envVars,
+                    String.valueOf(containerPort));
+            return creationStatus;
+        } finally {
+            if (allocatesPorts() && (creationStatus == null || !creationStatus.isCreated())) {
+                portAllocator.release(containerPort);
+            }
+        }
+    }
+
+    /**
+     * Makes the ports of a container available for new ones, once it is not tracked anymore.
+     */
+    public void releasePorts(ContainerCreationStatus creationStatus) {
+        if (!allocatesPorts() || creationStatus.getNodePort() == null) {
+            return;
+        }
+        try {
+            portAllocator.release(Integer.parseInt(creationStatus.getNodePort()));
+        } catch (NumberFormatException e) {
+            LOGGER.debug("{} has no valid node port.", creationStatus);
+        }
+    }
+
+    // With Kubernetes every pod has its own IP, all of them use the same ports.
+    private static boolean allocatesPorts() {
+        return containerClient instanceof DockerContainerClient || containerClient instanceof SwarmContainerClient;
     }
 
     private Map<String, String> buildEnvVars(TimeZone timeZone, Dimension screenSize, String hostIpAddress,
@@ -369,10 +403,27 @@ public class DockeredSeleniumStarter {
         containerClient.stopContainer(containerId);
     }
 
+    /**
+     * Containers started at the same time for waiting requests, the configured amount or the default of the backend.
+     */
+    public static int getMaxConcurrentContainerCreations() {
+        int configured = ZaleniumConfiguration.getMaxConcurrentContainerStarts();
+        return configured > 0 ? configured : containerClient.getDefaultMaxConcurrentCreations();
+    }
+
+    /**
+     * Starts a container on the given executor without blocking the caller, the executor decides how many containers
+     * are created at the same time. The future completes with null when no container could be created.
+     */
+    public CompletableFuture<ContainerCreationStatus> startDockerSeleniumContainerAsync(
+            Map<String, Object> requestedCapability, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> startDockerSeleniumContainer(requestedCapability), executor);
+    }
+
     /*
         This method will search for a screenResolution capability to be passed when creating a docker-selenium node.
     */
-    private Dimension getConfiguredScreenResolutionFromCapabilities(Map<String, Object> requestedCapability) {
+    static Dimension getConfiguredScreenResolutionFromCapabilities(Map<String, Object> requestedCapability) {
         Dimension screenSize = getConfiguredScreenSize();
         List<String> screenResolutionNames = Arrays.asList(ZaleniumCapabilityType.SCREEN_RESOLUTION,
                 ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, ZaleniumCapabilityType.RESOLUTION,
@@ -403,7 +454,7 @@ public class DockeredSeleniumStarter {
     /*
     This method will search for a tz capability to be passed when creating a docker-selenium node.
     */
-    private TimeZone getConfiguredTimeZoneFromCapabilities(Map<String, Object> requestedCapability) {
+    static TimeZone getConfiguredTimeZoneFromCapabilities(Map<String, Object> requestedCapability) {
         List<String> timeZoneCapabilities = Arrays.asList(ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX,
                 ZaleniumCapabilityType.TIME_ZONE);
         TimeZone timeZone = getConfiguredTimeZone();
@@ -418,34 +469,4 @@ public class DockeredSeleniumStarter {
 
         return timeZone;
     }
-
-    /*
-            Method adapted from https://gist.github.com/vorburger/3429822
-         */
-    private int findFreePortInRange() {
-        /*
-            If the list size is this big (~9800), it means that almost all ports have been used, but
-            probably many have been released already. The list is cleared so ports can be reused.
-            If by any chance one of the first allocated ports is still used, it will be skipped by the
-            existing validation.
-         */
-        synchronized (allocatedPorts){
-            if (allocatedPorts.size() > (UPPER_PORT_BOUNDARY - LOWER_PORT_BOUNDARY - 200)) {
-                allocatedPorts.clear();
-                LOGGER.info("Cleaning allocated ports list.");
-            }
-            for (int portNumber = LOWER_PORT_BOUNDARY; portNumber <= UPPER_PORT_BOUNDARY; portNumber++) {
-                int noVncPortNumber = portNumber + NO_VNC_PORT_GAP;
-                int vncPortNumber = portNumber + VNC_PORT_GAP;
-                if (!allocatedPorts.contains(portNumber) && !allocatedPorts.contains(noVncPortNumber)
-                        && !allocatedPorts.contains(vncPortNumber)) {
-                    allocatedPorts.add(portNumber);
-                    allocatedPorts.add(noVncPortNumber);
-                    allocatedPorts.add(vncPortNumber);
-                    return portNumber;
-                }
-            }
-        }
-        return -1;
-    }
 }
@@ -0,0 +1,125 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Default {@link ScalingPolicy}. The target is the containers needed right now (busy ones plus queued requests) plus
+ * the requests expected to arrive while a container starts, i.e. an exponentially weighted moving average (EWMA) of
+ * the arrival rate multiplied by an EWMA of the container start latency. The result is kept between the minimum and
+ * the maximum amount of containers.
+ *
+ * To avoid starting and stopping containers during bursts, the target only grows once per scale up cooldown and only
+ * shrinks after it has been above what is needed for a whole scale down cooldown.
+ */
+@ThreadSafe
+public class EwmaScalingPolicy implements ScalingPolicy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EwmaScalingPolicy.class.getName());
+    // Time constant of the arrival rate average, arrivals older than a few minutes barely count.
+    static final long ARRIVAL_RATE_TIME_CONSTANT = TimeUnit.MINUTES.toMillis(1);
+    // Weight of each new container start latency sample.
+    static final double START_LATENCY_WEIGHT = 0.2;
+
+    private final long minContainers;
+    private final long maxContainers;
+    private final long scaleUpCooldown;
+    private final long scaleDownCooldown;
+    private final Clock clock;
+    private final AtomicLong arrivals = new AtomicLong();
+
+    private double arrivalsPerMilli = 0;
+    private double startLatencyMillis = -1;
+    private long lastUpdate;
+    private long lastScaleUp;
+    // Since when the target is above what is needed, -1 when it is not.
+    private long overProvisionedSince = -1;
+    private long target;
+
+    public EwmaScalingPolicy(long minContainers, long maxContainers, long scaleUpCooldown, long scaleDownCooldown,
+                             Clock clock) {
+        if (minContainers > maxContainers) {
+            LOGGER.info("Only up to {} containers will be started, since it is what is configured by " +
+                    "--maxDockerSeleniumContainers", maxContainers);
+        }
+        this.minContainers = Math.min(minContainers, maxContainers);
+        this.maxContainers = maxContainers;
+        this.scaleUpCooldown = scaleUpCooldown;
+        this.scaleDownCooldown = scaleDownCooldown;
+        this.clock = clock;
+        this.target = this.minContainers;
+        this.lastUpdate = clock.millis();
+        this.lastScaleUp = lastUpdate - scaleUpCooldown;
+    }
+
+    @Override
+    public void sessionRequested() {
+        arrivals.incrementAndGet();
+    }
+
+    @Override
+    public synchronized void containerStarted(long startLatency) {
+        if (startLatencyMillis < 0) {
+            startLatencyMillis = startLatency;
+        } else {
+            startLatencyMillis += START_LATENCY_WEIGHT * (startLatency - startLatencyMillis);
+        }
+    }
+
+    @Override
+    public synchronized long getTargetContainers(long runningContainers, long busyContainers, int queuedRequests) {
+        long now = clock.millis();
+        updateArrivalRate(now);
+
+        long expectedDuringStart = (long) Math.ceil(arrivalsPerMilli * Math.max(startLatencyMillis, 0));
+        long desired = Math.max(minContainers,
+                Math.min(maxContainers, busyContainers + queuedRequests + expectedDuringStart));
+
+        if (desired < target) {
+            if (overProvisionedSince < 0) {
+                overProvisionedSince = now;
+            }
+            if (now - overProvisionedSince >= scaleDownCooldown) {
+                LOGGER.debug("Scaling down from {} to {} containers ({} running, {} busy, {} queued, {} expected).",
+                        target, desired, runningContainers, busyContainers, queuedRequests, expectedDuringStart);
+                target = desired;
+                overProvisionedSince = -1;
+            }
+            return target;
+        }
+
+        overProvisionedSince = -1;
+        if (desired > target && now - lastScaleUp >= scaleUpCooldown) {
+            LOGGER.debug("Scaling up from {} to {} containers ({} running, {} busy, {} queued, {} expected).",
+                    target, desired, runningContainers, busyContainers, queuedRequests, expectedDuringStart);
+            target = desired;
+            lastScaleUp = now;
+        }
+        return target;
+    }
+
+    private void updateArrivalRate(long now) {
+        long elapsed = now - lastUpdate;
+        if (elapsed <= 0) {
+            return;
+        }
+        double currentRate = (double) arrivals.getAndSet(0) / elapsed;
+        double weight = 1 - Math.exp(-(double) elapsed / ARRIVAL_RATE_TIME_CONSTANT);
+        arrivalsPerMilli += weight * (currentRate - arrivalsPerMilli);
+        lastUpdate = now;
+    }
+
+    double getArrivalsPerMinute() {
+        return arrivalsPerMilli * TimeUnit.MINUTES.toMillis(1);
+    }
+
+    double getStartLatencyMillis() {
+        return startLatencyMillis;
+    }
+}
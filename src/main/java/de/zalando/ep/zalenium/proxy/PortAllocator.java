@@ -0,0 +1,70 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.BitSet;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Hands out the node ports of the containers, one bit per port of the range.
+ *
+ * The noVNC and VNC ports of a node are derived from its port with fixed gaps, 10000 and 20000, that are not smaller
+ * than the 10000 ports of the range, so they never fall inside it and reserving the node port reserves the whole
+ * triple. The search starts after the last allocated port, so a released
+ * port is not handed out again right away while there are other free ones.
+ */
+@ThreadSafe
+class PortAllocator {
+
+    static final int NO_FREE_PORT = -1;
+
+    private final int lowerPort;
+    private final int size;
+    private final BitSet allocated;
+    private int next = 0;
+    private int allocatedCount = 0;
+
+    PortAllocator(int lowerPort, int upperPort) {
+        if (upperPort < lowerPort) {
+            throw new IllegalArgumentException(String.format("Invalid port range %s-%s", lowerPort, upperPort));
+        }
+        this.lowerPort = lowerPort;
+        this.size = upperPort - lowerPort + 1;
+        this.allocated = new BitSet(size);
+    }
+
+    /**
+     * @return a free port of the range, or {@link #NO_FREE_PORT} when all of them are allocated.
+     */
+    synchronized int allocate() {
+        if (allocatedCount == size) {
+            return NO_FREE_PORT;
+        }
+        int free = allocated.nextClearBit(next);
+        if (free >= size) {
+            free = allocated.nextClearBit(0);
+        }
+        allocated.set(free);
+        allocatedCount++;
+        next = free + 1 < size ? free + 1 : 0;
+        return lowerPort + free;
+    }
+
+    /**
+     * Makes the port available again. Ports out of the range or not allocated are ignored.
+     *
+     * @return true if the port was allocated.
+     */
+    synchronized boolean release(int port) {
+        int index = port - lowerPort;
+        if (index < 0 || index >= size || !allocated.get(index)) {
+            return false;
+        }
+        allocated.clear(index);
+        allocatedCount--;
+        return true;
+    }
+
+    synchronized int getAllocatedCount() {
+        return allocatedCount;
+    }
+}
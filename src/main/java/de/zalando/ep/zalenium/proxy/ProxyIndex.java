@@ -0,0 +1,168 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.openqa.grid.internal.RemoteProxy;
+import org.openqa.grid.internal.TestSlot;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.CapabilityType;
+
+import de.zalando.ep.zalenium.matcher.CapabilityKey;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Proxies of an {@link AutoStartProxySet} that are worth trying for a new session, so the matcher does not sort and
+ * try every registered proxy for each request.
+ *
+ * Docker proxies are indexed by the {@link CapabilityKey} of their slots while they have no session. A proxy that
+ * got a session leaves the index, and comes back when one of its slots is released. The index can hold proxies that
+ * turn out to be busy, they just decline the session, but it must not miss idle ones, so
+ * {@link #refresh()} puts back the proxies whose release went unnoticed. Other proxies (cloud providers, nodes
+ * registered by hand) are few and are always tried, after the docker ones.
+ *
+ * Proxies with Android slots are recorded on registration, they are skipped for Linux requests.
+ */
+@ThreadSafe
+class ProxyIndex {
+
+    private final Map<CapabilityKey, Set<DockerSeleniumRemoteProxy>> idleProxies = new ConcurrentHashMap<>();
+    private final Map<DockerSeleniumRemoteProxy, List<CapabilityKey>> proxyKeys = new ConcurrentHashMap<>();
+    private final Set<RemoteProxy> otherProxies = ConcurrentHashMap.newKeySet();
+    private final Set<RemoteProxy> androidProxies = ConcurrentHashMap.newKeySet();
+
+    void add(RemoteProxy proxy) {
+        if (proxy.getTestSlots().stream().anyMatch(slot -> Platform.ANDROID.equals(getPlatform(slot)))) {
+            androidProxies.add(proxy);
+        }
+        if (proxy instanceof DockerSeleniumRemoteProxy) {
+            DockerSeleniumRemoteProxy dockerProxy = (DockerSeleniumRemoteProxy) proxy;
+            List<CapabilityKey> keys = proxy.getTestSlots().stream()
+                    .map(slot -> CapabilityKey.fromCapabilities(slot.getCapabilities()))
+                    .distinct().collect(Collectors.toCollection(ArrayList::new));
+            if (keys.isEmpty()) {
+                keys.add(CapabilityKey.ANY);
+            }
+            proxyKeys.put(dockerProxy, keys);
+            if (!proxy.isBusy()) {
+                markIdle(dockerProxy);
+            }
+        } else {
+            otherProxies.add(proxy);
+        }
+    }
+
+    void remove(RemoteProxy proxy) {
+        androidProxies.remove(proxy);
+        otherProxies.remove(proxy);
+        if (proxy instanceof DockerSeleniumRemoteProxy) {
+            // Dropped from the keys first, so a slot released at the same time cannot index it again.
+            List<CapabilityKey> keys = proxyKeys.remove(proxy);
+            if (keys != null) {
+                unindex((DockerSeleniumRemoteProxy) proxy, keys);
+            }
+        }
+    }
+
+    /**
+     * The proxy got a session, it is not tried again until one of its slots is released.
+     */
+    void sessionStarted(RemoteProxy proxy) {
+        if (proxy instanceof DockerSeleniumRemoteProxy) {
+            markBusy((DockerSeleniumRemoteProxy) proxy);
+        }
+    }
+
+    void slotReleased(RemoteProxy proxy) {
+        if (proxy instanceof DockerSeleniumRemoteProxy) {
+            markIdle((DockerSeleniumRemoteProxy) proxy);
+        }
+    }
+
+    /**
+     * Puts back the proxies without session that are not indexed as idle.
+     */
+    void refresh() {
+        proxyKeys.keySet().stream().filter(proxy -> !proxy.isBusy()).forEach(this::markIdle);
+    }
+
+    /**
+     * @return the proxies that could take the request: the idle docker proxies with a matching slot, then the other
+     * proxies with the least used first.
+     */
+    List<RemoteProxy> candidates(Map<String, Object> desiredCapabilities) {
+        CapabilityKey requestKey = CapabilityKey.fromCapabilities(desiredCapabilities);
+        boolean linuxRequest = Platform.LINUX.equals(getPlatform(desiredCapabilities));
+        Set<RemoteProxy> candidates = new LinkedHashSet<>();
+        idleProxies.forEach((slotKey, proxies) -> {
+            if (requestKey.canBeServedBy(slotKey)) {
+                candidates.addAll(proxies);
+            }
+        });
+        if (!otherProxies.isEmpty()) {
+            List<RemoteProxy> others = new ArrayList<>(otherProxies);
+            others.sort(Comparator.comparingDouble(RemoteProxy::getResourceUsageInPercent));
+            candidates.addAll(others);
+        }
+        if (linuxRequest && !androidProxies.isEmpty()) {
+            candidates.removeAll(androidProxies);
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    // Proxies with Android are not taken into account to create a session for a Linux request.
+    boolean canBeConsidered(RemoteProxy proxy, Map<String, Object> desiredCapabilities) {
+        return !androidProxies.contains(proxy) || !Platform.LINUX.equals(getPlatform(desiredCapabilities));
+    }
+
+    private void markIdle(DockerSeleniumRemoteProxy proxy) {
+        List<CapabilityKey> keys = proxyKeys.get(proxy);
+        if (keys != null) {
+            // Added inside compute, so the set cannot be dropped by markBusy in between.
+            keys.forEach(key -> idleProxies.compute(key, (k, proxies) -> {
+                Set<DockerSeleniumRemoteProxy> idle = proxies == null ? ConcurrentHashMap.newKeySet() : proxies;
+                idle.add(proxy);
+                return idle;
+            }));
+        }
+    }
+
+    private void markBusy(DockerSeleniumRemoteProxy proxy) {
+        List<CapabilityKey> keys = proxyKeys.get(proxy);
+        if (keys != null) {
+            unindex(proxy, keys);
+        }
+    }
+
+    private void unindex(DockerSeleniumRemoteProxy proxy, List<CapabilityKey> keys) {
+        keys.forEach(key -> idleProxies.computeIfPresent(key, (k, proxies) -> {
+            proxies.remove(proxy);
+            return proxies.isEmpty() ? null : proxies;
+        }));
+    }
+
+    private static Platform getPlatform(TestSlot slot) {
+        return getPlatform(slot.getCapabilities());
+    }
+
+    static Platform getPlatform(Map<String, Object> capabilities) {
+        Object requested = capabilities.get(CapabilityType.PLATFORM_NAME);
+        if (requested == null) {
+            return null;
+        }
+        if (requested instanceof Platform) {
+            return (Platform) requested;
+        }
+        try {
+            return Platform.fromString(requested.toString());
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package de.zalando.ep.zalenium.proxy;
+
+/**
+ * Decides how many docker-selenium containers {@link AutoStartProxySet} should keep running. The set reports what
+ * happens (new session requests, container start times) and asks for the target on every containers check.
+ *
+ * Containers are still started on demand when a request cannot be served, the policy decides how many are started
+ * ahead of time and how many idle ones are kept.
+ */
+public interface ScalingPolicy {
+
+    /**
+     * A new session request was added to the queue.
+     */
+    void sessionRequested();
+
+    /**
+     * A container took the given time since it was created until it was ready.
+     */
+    void containerStarted(long startLatencyMillis);
+
+    /**
+     * @param runningContainers containers that are not shutting down, including the ones still starting
+     * @param busyContainers    containers running a test
+     * @param queuedRequests    session requests waiting for a node
+     * @return the amount of containers that should be running
+     */
+    long getTargetContainers(long runningContainers, long busyContainers, int queuedRequests);
+}
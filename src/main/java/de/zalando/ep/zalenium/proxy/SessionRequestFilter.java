@@ -1,74 +1,120 @@
 package de.zalando.ep.zalenium.proxy;
 
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import de.zalando.ep.zalenium.util.ProcessedCapabilities;
+import de.zalando.ep.zalenium.util.SessionRequestIds;
+import io.prometheus.client.Counter;
+import net.jcip.annotations.ThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Remembers the requests that already got a node started for them, so waiting requests do not start a new node on
+ * every attempt.
+ *
+ * Requests are tracked by their {@link SessionRequestIds id}. The entries are kept in the order of their last
+ * attempt, which is also the order in which they expire, so cleaning up only looks at the expired ones.
+ */
+@ThreadSafe
 @SuppressWarnings("WeakerAccess")
 public class SessionRequestFilter {
 
+    static final long MAXIMUM_LAST_PROCESSED_TIME = TimeUnit.MINUTES.toMillis(1);
+
     private static final Logger log = LoggerFactory.getLogger(SessionRequestFilter.class.getName());
-    private final Map<Integer, ProcessedCapabilities> processedCapabilitiesMap = new ConcurrentHashMap<>();
-    private int maxTimesToProcessRequest;
+    private static final Counter filterDecisions = Counter.build()
+            .name("zalenium_session_request_filter_decisions_total")
+            .help("Decisions of the session request filter: suppressed (waits for the node started before), "
+                    + "forced (waited too many attempts, starts a new node) and retried (no node could be started, "
+                    + "the next attempt starts one).")
+            .labelNames("decision").register();
+
+    // Access ordered, the eldest entry is the one that was attempted the longest time ago.
+    private final LinkedHashMap<Long, ProcessedCapabilities> processedCapabilitiesMap =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxTimesToProcessRequest;
+    private final Clock clock;
 
     public SessionRequestFilter(int maxTimesToProcessRequest) {
+        this(maxTimesToProcessRequest, Clock.systemUTC());
+    }
+
+    public SessionRequestFilter(int maxTimesToProcessRequest, Clock clock) {
         this.maxTimesToProcessRequest = maxTimesToProcessRequest;
+        this.clock = clock;
     }
 
-    public boolean hasRequestBeenProcessed(Map<String, Object> requestedCapability) {
-        int requestedCapabilityHashCode = System.identityHashCode(requestedCapability);
-        ProcessedCapabilities processedCapability = processedCapabilitiesMap.get(requestedCapabilityHashCode);
-        
+    public synchronized boolean hasRequestBeenProcessed(Map<String, Object> requestedCapability) {
+        long requestId = SessionRequestIds.idOf(requestedCapability);
+        ProcessedCapabilities processedCapability = processedCapabilitiesMap.get(requestId);
+
         if (processedCapability != null) {
-            processedCapability.setLastProcessedTime(System.currentTimeMillis());
+            processedCapability.setLastProcessedTime(clock.millis());
             int processedTimes = processedCapability.getProcessedTimes() + 1;
             processedCapability.setProcessedTimes(processedTimes);
 
             if (processedTimes >= maxTimesToProcessRequest) {
                 processedCapability.setProcessedTimes(1);
-                log.info(String.format("Request has waited %s attempts for a node, something " +
+                log.info(String.format("Request %s has waited %s attempts for a node, something " +
                         "went wrong with the previous attempts, creating a new node for %s.",
-                    maxTimesToProcessRequest, requestedCapability));
+                    requestId, maxTimesToProcessRequest, requestedCapability));
+                filterDecisions.labels("forced").inc();
                 return false;
             }
 
+            filterDecisions.labels("suppressed").inc();
             return true;
         }
 
         return false;
     }
-    
-    public void requestHasBeenProcessed(Map<String, Object> desiredCapabilities) {
-        ProcessedCapabilities processedCapabilities = new ProcessedCapabilities(desiredCapabilities,
-                System.identityHashCode(desiredCapabilities));
-        processedCapabilitiesMap.put(processedCapabilities.getIdentityHashCode(), processedCapabilities);
+
+    public synchronized void requestHasBeenProcessed(Map<String, Object> desiredCapabilities) {
+        long requestId = SessionRequestIds.idOf(desiredCapabilities);
+        // Removed first, so a request processed again moves to the end of the expiry order.
+        processedCapabilitiesMap.remove(requestId);
+        processedCapabilitiesMap.put(requestId,
+                new ProcessedCapabilities(desiredCapabilities, requestId, clock.millis()));
     }
-    
+
+    /**
+     * Notify the Session Request Filter that no node could be started for the given desiredCapabilities, so the
+     * next attempt tries again right away.
+     *
+     * @param desiredCapabilities The desiredCapabilities to check
+     */
+    public synchronized void requestHasFailed(Map<String, Object> desiredCapabilities) {
+        if (processedCapabilitiesMap.remove(SessionRequestIds.idOf(desiredCapabilities)) != null) {
+            filterDecisions.labels("retried").inc();
+        }
+    }
+
     /**
      * Notify the Session Request Filter that a Test Session has started for the given desiredCapabilities.
-     * 
+     *
      * @param desiredCapabilities The desiredCapabilities to check
      */
-    public void testSessionHasStarted(Map<String, Object> desiredCapabilities) {
-        int desiredCapabilityHashCode = System.identityHashCode(desiredCapabilities);
-        processedCapabilitiesMap.remove(desiredCapabilityHashCode);
+    public synchronized void testSessionHasStarted(Map<String, Object> desiredCapabilities) {
+        processedCapabilitiesMap.remove(SessionRequestIds.idOf(desiredCapabilities));
     }
-    
-    public void cleanProcessedCapabilities() {
-        /*
-            Cleaning processed capabilities to reduce the risk of having two objects with the same
-            identityHashCode after the garbage collector did its job.
-            Not a silver bullet solution, but should be good enough.
-         */
-        processedCapabilitiesMap.entrySet().stream().filter( cap -> {
-            long timeSinceLastProcess = System.currentTimeMillis() - cap.getValue().getLastProcessedTime();
-            long maximumLastProcessedTime = 1000 * 60;
-            return timeSinceLastProcess >= maximumLastProcessedTime;
-        })
-        // When you return null on a compute, it deletes the entry from the map
-        .forEach(cap -> processedCapabilitiesMap.compute(cap.getKey(), (hash, capability) -> null));
+
+    /**
+     * Forgets the requests that were not attempted for a minute, most likely the client gave up on them.
+     */
+    public synchronized void cleanProcessedCapabilities() {
+        long expired = clock.millis() - MAXIMUM_LAST_PROCESSED_TIME;
+        Iterator<ProcessedCapabilities> eldest = processedCapabilitiesMap.values().iterator();
+        while (eldest.hasNext() && eldest.next().getLastProcessedTime() <= expired) {
+            eldest.remove();
+        }
+    }
+
+    synchronized int size() {
+        return processedCapabilitiesMap.size();
     }
 }
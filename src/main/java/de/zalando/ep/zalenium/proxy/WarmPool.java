@@ -0,0 +1,101 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.prometheus.client.Counter;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Warm pools of docker-selenium containers per {@link WarmPoolProfile}, so requests for a non default screen
+ * resolution or time zone find an already registered node instead of waiting for a container to start.
+ *
+ * The size of each pool is the configured one, or the amount of requests per minute seen for that profile during the
+ * last {@link #DEMAND_WINDOW} if it is bigger. {@link AutoStartProxySet} keeps that many idle (or starting) containers
+ * for each profile.
+ *
+ * A request counts as a hit when it gets a session the first time it is tried, and as a miss otherwise.
+ */
+@ThreadSafe
+class WarmPool {
+
+    static final long DEMAND_WINDOW = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Counter warmPoolHits = Counter.build()
+            .name("zalenium_warm_pool_hits_total")
+            .help("Requests that got a node from the warm pool of their capability profile.")
+            .labelNames("profile").register();
+    private static final Counter warmPoolMisses = Counter.build()
+            .name("zalenium_warm_pool_misses_total")
+            .help("Requests that had to wait for a node although their capability profile has a warm pool.")
+            .labelNames("profile").register();
+
+    private final Map<WarmPoolProfile, Integer> configuredSizes;
+    private final Map<WarmPoolProfile, Deque<Long>> recentRequests = new ConcurrentHashMap<>();
+    // Requests already counted, weak keys are compared by identity like the rest of the request tracking.
+    private final Cache<Map<String, Object>, Boolean> countedRequests = CacheBuilder.newBuilder()
+            .weakKeys()
+            .expireAfterWrite(DEMAND_WINDOW, TimeUnit.MILLISECONDS)
+            .build();
+    private final Clock clock;
+
+    WarmPool(Map<WarmPoolProfile, Integer> configuredSizes, Clock clock) {
+        this.configuredSizes = Collections.unmodifiableMap(configuredSizes);
+        this.clock = clock;
+        configuredSizes.keySet().forEach(profile -> recentRequests.put(profile, new ConcurrentLinkedDeque<>()));
+    }
+
+    Set<WarmPoolProfile> getProfiles() {
+        return configuredSizes.keySet();
+    }
+
+    Optional<WarmPoolProfile> getProfile(Map<String, Object> desiredCapabilities) {
+        if (configuredSizes.isEmpty()) {
+            return Optional.empty();
+        }
+        WarmPoolProfile profile = WarmPoolProfile.fromCapabilities(desiredCapabilities);
+        return configuredSizes.containsKey(profile) ? Optional.of(profile) : Optional.empty();
+    }
+
+    /**
+     * Records the outcome of trying to get a session for a request. Only the first attempt of each request counts.
+     */
+    void sessionRequested(Map<String, Object> desiredCapabilities, boolean sessionCreated) {
+        Optional<WarmPoolProfile> profile = getProfile(desiredCapabilities);
+        if (!profile.isPresent() || countedRequests.asMap().putIfAbsent(desiredCapabilities, Boolean.TRUE) != null) {
+            return;
+        }
+        recentRequests.get(profile.get()).add(clock.millis());
+        if (sessionCreated) {
+            warmPoolHits.labels(profile.get().toString()).inc();
+        } else {
+            warmPoolMisses.labels(profile.get().toString()).inc();
+        }
+    }
+
+    int getTargetSize(WarmPoolProfile profile) {
+        Integer configuredSize = configuredSizes.get(profile);
+        if (configuredSize == null) {
+            return 0;
+        }
+        Deque<Long> requests = recentRequests.get(profile);
+        long windowStart = clock.millis() - DEMAND_WINDOW;
+        Long oldest;
+        while ((oldest = requests.peekFirst()) != null && oldest < windowStart) {
+            requests.pollFirst();
+        }
+        long windowInMinutes = TimeUnit.MILLISECONDS.toMinutes(DEMAND_WINDOW);
+        int requestsPerMinute = (int) ((requests.size() + windowInMinutes - 1) / windowInMinutes);
+        return Math.max(configuredSize, requestsPerMinute);
+    }
+}
@@ -0,0 +1,115 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+
+import org.openqa.selenium.Dimension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityType;
+
+/**
+ * The part of the requested capabilities that is baked into a docker-selenium container when it is created: screen
+ * resolution and time zone. Written as "1280x1024/UTC" or "1920x1080/Europe/Berlin".
+ */
+public final class WarmPoolProfile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmPoolProfile.class.getName());
+
+    private final Dimension screenSize;
+    private final TimeZone timeZone;
+
+    WarmPoolProfile(Dimension screenSize, TimeZone timeZone) {
+        this.screenSize = screenSize;
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Profile of the container that {@link DockeredSeleniumStarter} would create for the given capabilities, the
+     * configured screen size and time zone are used when they are not requested.
+     */
+    public static WarmPoolProfile fromCapabilities(Map<String, Object> capabilities) {
+        return new WarmPoolProfile(DockeredSeleniumStarter.getConfiguredScreenResolutionFromCapabilities(capabilities),
+                DockeredSeleniumStarter.getConfiguredTimeZoneFromCapabilities(capabilities));
+    }
+
+    /**
+     * Parses a list of pools like "1280x1024/UTC:5,1920x1080/Europe/Berlin:2". Invalid entries are logged and
+     * skipped.
+     */
+    public static Map<WarmPoolProfile, Integer> parse(String warmPools) {
+        Map<WarmPoolProfile, Integer> pools = new LinkedHashMap<>();
+        if (warmPools == null || warmPools.trim().isEmpty()) {
+            return pools;
+        }
+        for (String pool : warmPools.split(",")) {
+            try {
+                int sizeSeparator = pool.lastIndexOf(':');
+                int timeZoneSeparator = pool.indexOf('/');
+                String[] screenSize = pool.substring(0, timeZoneSeparator).trim().split("x");
+                String timeZoneId = pool.substring(timeZoneSeparator + 1, sizeSeparator).trim();
+                int size = Integer.parseInt(pool.substring(sizeSeparator + 1).trim());
+                if (!Arrays.asList(TimeZone.getAvailableIDs()).contains(timeZoneId)) {
+                    throw new IllegalArgumentException("Unknown time zone " + timeZoneId);
+                }
+                WarmPoolProfile profile = new WarmPoolProfile(
+                        new Dimension(Integer.parseInt(screenSize[0].trim()), Integer.parseInt(screenSize[1].trim())),
+                        TimeZone.getTimeZone(timeZoneId));
+                if (size > 0) {
+                    pools.put(profile, size);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Ignoring warm pool '{}', the expected format is <width>x<height>/<time zone>:<size>",
+                        pool);
+                LOGGER.debug("Invalid warm pool " + pool, e);
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * Capabilities that make {@link DockeredSeleniumStarter} create a container with this profile.
+     */
+    public Map<String, Object> toCapabilities() {
+        Map<String, Object> capabilities = new HashMap<>();
+        capabilities.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX,
+                String.format("%sx%s", screenSize.getWidth(), screenSize.getHeight()));
+        capabilities.put(ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX, timeZone.getID());
+        return capabilities;
+    }
+
+    public Dimension getScreenSize() {
+        return screenSize;
+    }
+
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        WarmPoolProfile that = (WarmPoolProfile) o;
+        return screenSize.equals(that.screenSize) && timeZone.getID().equals(that.timeZone.getID());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(screenSize, timeZone.getID());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%sx%s/%s", screenSize.getWidth(), screenSize.getHeight(), timeZone.getID());
+    }
+}
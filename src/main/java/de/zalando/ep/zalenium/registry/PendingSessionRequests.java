@@ -0,0 +1,328 @@
+package de.zalando.ep.zalenium.registry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.openqa.grid.internal.listeners.Prioritizer;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import de.zalando.ep.zalenium.matcher.CapabilityKey;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Queue of the new session requests waiting for a slot, bucketed by {@link CapabilityKey}. Replaces the hub's
+ * NewSessionRequestQueue, which sorts and walks every request on each change in the registry.
+ *
+ * Inside a bucket, requests are ordered by the hub's prioritizer (if one is configured) and then by arrival. The
+ * prioritizer is read when the bucket is created, so the order of a bucket never changes while it has requests. A slot
+ * that frees up is offered only to the head of each bucket that could use it, so the work per change is
+ * proportional to the freed slots and not to the amount of waiting requests.
+ *
+ * Requests and removals can come from any thread without locking. Matching is done by a single thread (the registry
+ * Matcher).
+ *
+ * Each request goes through WAITING -> MATCHING -> (ASSIGNED | WAITING), or WAITING -> REMOVED when the client gives
+ * up, so a request is never handed a session after it has been removed from the queue. A removal that finds the
+ * request MATCHING waits on it until the matcher has decided.
+ */
+@ThreadSafe
+class PendingSessionRequests {
+
+    private final Map<CapabilityKey, NavigableSet<PendingRequest>> buckets = new ConcurrentHashMap<>();
+    // Buckets that can use a slot with a given key, computed again when bucketsVersion has changed.
+    private final Map<CapabilityKey, ServedBuckets> bucketsBySlot = new ConcurrentHashMap<>();
+    // Incremented after a bucket is created or removed.
+    private final AtomicLong bucketsVersion = new AtomicLong();
+    private final Queue<PendingRequest> arrivals = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Supplier<Prioritizer> prioritizer;
+
+    PendingSessionRequests() {
+        this(() -> null);
+    }
+
+    /**
+     * @param prioritizer supplies the hub's prioritizer, it is read for each new bucket and each sort because the hub
+     *                    (and its configuration) can be set after the registry is created.
+     */
+    PendingSessionRequests(Supplier<Prioritizer> prioritizer) {
+        this.prioritizer = prioritizer;
+    }
+
+    /**
+     * @return the order of the requests for the current prioritizer. It does not read the prioritizer again, so it
+     * stays consistent for the sorted set or the sort using it.
+     */
+    private Comparator<PendingRequest> order() {
+        Prioritizer currentPrioritizer = prioritizer.get();
+        Comparator<PendingRequest> byPriority = currentPrioritizer == null ? (a, b) -> 0 :
+                (a, b) -> currentPrioritizer.compareTo(a.handler.getRequest().getDesiredCapabilities(),
+                        b.handler.getRequest().getDesiredCapabilities());
+        return byPriority.thenComparingLong(pendingRequest -> pendingRequest.sequence);
+    }
+
+    void add(RequestHandler handler) {
+        CapabilityKey key = CapabilityKey.fromCapabilities(handler.getRequest().getDesiredCapabilities());
+        PendingRequest pendingRequest = new PendingRequest(handler, key, sequence.incrementAndGet());
+        AtomicBoolean created = new AtomicBoolean(false);
+        buckets.compute(key, (k, bucket) -> {
+            NavigableSet<PendingRequest> requests = bucket;
+            if (requests == null) {
+                requests = new ConcurrentSkipListSet<>(order());
+                created.set(true);
+            }
+            requests.add(pendingRequest);
+            return requests;
+        });
+        if (created.get()) {
+            // After the bucket is in the map, so a list cached with the new version includes it.
+            bucketsVersion.incrementAndGet();
+        }
+        size.incrementAndGet();
+        arrivals.add(pendingRequest);
+    }
+
+    boolean remove(RequestHandler handler) {
+        PendingRequest pendingRequest = find(handler);
+        if (pendingRequest == null) {
+            return false;
+        }
+        while (true) {
+            if (pendingRequest.state.compareAndSet(State.WAITING, State.REMOVED)) {
+                unlink(pendingRequest);
+                return true;
+            }
+            State state = pendingRequest.state.get();
+            if (state == State.ASSIGNED || state == State.REMOVED) {
+                return false;
+            }
+            // The matcher is trying to assign this request right now, wait for its decision.
+            pendingRequest.awaitMatching();
+        }
+    }
+
+    void clear() {
+        snapshot().forEach(pendingRequest -> remove(pendingRequest.handler));
+    }
+
+    void stop() {
+        snapshot().forEach(pendingRequest -> {
+            if (remove(pendingRequest.handler)) {
+                pendingRequest.handler.stop();
+            }
+        });
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    Iterable<DesiredCapabilities> getDesiredCapabilities() {
+        return snapshot().stream()
+                .map(pendingRequest -> new DesiredCapabilities(pendingRequest.handler.getRequest().getDesiredCapabilities()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tries once every request that arrived since the previous call, so each new request gets a chance to be
+     * assigned (or to trigger a new node) straight away.
+     */
+    void processArrivals(Predicate<RequestHandler> handlerConsumer) {
+        PendingRequest pendingRequest;
+        while ((pendingRequest = arrivals.poll()) != null) {
+            tryAssign(pendingRequest, handlerConsumer);
+        }
+    }
+
+    /**
+     * Offers a freed slot to the heads of the buckets that could use it, in priority order, until one of them takes
+     * it. Requests further down a bucket are equivalent for the matcher, so they are not looked at.
+     *
+     * @return true if a request took the slot
+     */
+    boolean processFreedSlot(CapabilityKey slotKey, Predicate<RequestHandler> slotOffer) {
+        List<PendingRequest> heads = new ArrayList<>();
+        for (CapabilityKey bucketKey : bucketsServedBy(slotKey)) {
+            NavigableSet<PendingRequest> bucket = buckets.get(bucketKey);
+            if (bucket != null) {
+                bucket.stream()
+                        .filter(pendingRequest -> pendingRequest.state.get() == State.WAITING)
+                        .findFirst()
+                        .ifPresent(heads::add);
+            }
+        }
+        heads.sort(order());
+        for (PendingRequest head : heads) {
+            if (tryAssign(head, slotOffer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<CapabilityKey> bucketsServedBy(CapabilityKey slotKey) {
+        // Read before the buckets, a bucket created meanwhile changes the version and the list is computed again.
+        long version = bucketsVersion.get();
+        ServedBuckets servedBuckets = bucketsBySlot.get(slotKey);
+        if (servedBuckets == null || servedBuckets.version != version) {
+            servedBuckets = new ServedBuckets(version, buckets.keySet().stream()
+                    .filter(bucketKey -> bucketKey.canBeServedBy(slotKey))
+                    .collect(Collectors.toList()));
+            bucketsBySlot.put(slotKey, servedBuckets);
+        }
+        return servedBuckets.bucketKeys;
+    }
+
+    /**
+     * Full pass over all the waiting requests, ordered by the prioritizer (if any) and then by arrival.
+     */
+    void processAll(Predicate<RequestHandler> handlerConsumer) {
+        arrivals.clear();
+        List<PendingRequest> requests = snapshot();
+        requests.sort(order());
+        requests.forEach(pendingRequest -> tryAssign(pendingRequest, handlerConsumer));
+    }
+
+    private boolean tryAssign(PendingRequest pendingRequest, Predicate<RequestHandler> handlerConsumer) {
+        if (!pendingRequest.state.compareAndSet(State.WAITING, State.MATCHING)) {
+            return false;
+        }
+        boolean assigned = false;
+        try {
+            assigned = handlerConsumer.test(pendingRequest.handler);
+        } finally {
+            if (assigned) {
+                pendingRequest.state.set(State.ASSIGNED);
+                unlink(pendingRequest);
+            } else {
+                pendingRequest.state.set(State.WAITING);
+            }
+            pendingRequest.matchingDone();
+        }
+        return assigned;
+    }
+
+    private void unlink(PendingRequest pendingRequest) {
+        AtomicBoolean removed = new AtomicBoolean(false);
+        buckets.computeIfPresent(pendingRequest.key, (k, bucket) -> {
+            bucket.remove(pendingRequest);
+            if (bucket.isEmpty()) {
+                removed.set(true);
+                return null;
+            }
+            return bucket;
+        });
+        if (removed.get()) {
+            bucketsVersion.incrementAndGet();
+        }
+        size.decrementAndGet();
+    }
+
+    /*
+        RequestHandler implements equals() through its session, which is null for every waiting request, so the
+        lookup has to be done by identity.
+     */
+    private PendingRequest find(RequestHandler handler) {
+        CapabilityKey key = CapabilityKey.fromCapabilities(handler.getRequest().getDesiredCapabilities());
+        PendingRequest pendingRequest = findInBucket(buckets.get(key), handler);
+        if (pendingRequest != null) {
+            return pendingRequest;
+        }
+        for (Set<PendingRequest> bucket : buckets.values()) {
+            pendingRequest = findInBucket(bucket, handler);
+            if (pendingRequest != null) {
+                return pendingRequest;
+            }
+        }
+        return null;
+    }
+
+    private static PendingRequest findInBucket(Set<PendingRequest> bucket, RequestHandler handler) {
+        if (bucket != null) {
+            for (PendingRequest pendingRequest : bucket) {
+                if (pendingRequest.handler == handler) {
+                    return pendingRequest;
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<PendingRequest> snapshot() {
+        List<PendingRequest> requests = new ArrayList<>();
+        buckets.values().forEach(bucket -> bucket.stream()
+                .filter(pendingRequest -> pendingRequest.state.get() == State.WAITING)
+                .forEach(requests::add));
+        requests.sort(Comparator.comparingLong(pendingRequest -> pendingRequest.sequence));
+        return requests;
+    }
+
+    private enum State {
+        WAITING,
+        MATCHING,
+        ASSIGNED,
+        REMOVED
+    }
+
+    private static final class ServedBuckets {
+        private final long version;
+        private final List<CapabilityKey> bucketKeys;
+
+        private ServedBuckets(long version, List<CapabilityKey> bucketKeys) {
+            this.version = version;
+            this.bucketKeys = bucketKeys;
+        }
+    }
+
+    private static final class PendingRequest {
+        private final RequestHandler handler;
+        private final CapabilityKey key;
+        private final long sequence;
+        private final AtomicReference<State> state = new AtomicReference<>(State.WAITING);
+
+        private PendingRequest(RequestHandler handler, CapabilityKey key, long sequence) {
+            this.handler = handler;
+            this.key = key;
+            this.sequence = sequence;
+        }
+
+        /*
+            Blocks until the matcher has decided on this request. The state is checked while holding the monitor and
+            the matcher notifies after changing it, so the decision cannot be missed.
+         */
+        private synchronized void awaitMatching() {
+            boolean interrupted = false;
+            while (state.get() == State.MATCHING) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private synchronized void matchingDone() {
+            notifyAll();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package de.zalando.ep.zalenium.registry;
 
+import de.zalando.ep.zalenium.matcher.CapabilityKey;
 import de.zalando.ep.zalenium.prometheus.ContainerStatusCollectorExports;
 import de.zalando.ep.zalenium.prometheus.TestSessionCollectorExports;
 import net.jcip.annotations.ThreadSafe;
@@ -8,12 +9,12 @@ import org.openqa.grid.internal.ActiveTestSessions;
 import org.openqa.grid.internal.BaseGridRegistry;
 import org.openqa.grid.internal.ExternalSessionKey;
 import org.openqa.grid.internal.GridRegistry;
-import org.openqa.grid.internal.NewSessionRequestQueue;
 import org.openqa.grid.internal.ProxySet;
 import org.openqa.grid.internal.RemoteProxy;
 import org.openqa.grid.internal.SessionTerminationReason;
 import org.openqa.grid.internal.TestSession;
 import org.openqa.grid.internal.TestSlot;
+import org.openqa.grid.internal.listeners.Prioritizer;
 import org.openqa.grid.internal.listeners.RegistrationListener;
 import org.openqa.grid.internal.listeners.SelfHealingProxy;
 import org.openqa.grid.web.Hub;
@@ -25,8 +26,14 @@ import org.openqa.selenium.remote.server.log.LoggingManager;
 import de.zalando.ep.zalenium.proxy.AutoStartProxySet;
 import de.zalando.ep.zalenium.proxy.DockerSeleniumRemoteProxy;
 import de.zalando.ep.zalenium.proxy.DockeredSeleniumStarter;
+import de.zalando.ep.zalenium.proxy.EwmaScalingPolicy;
+import de.zalando.ep.zalenium.proxy.ScalingPolicy;
+import de.zalando.ep.zalenium.proxy.WarmPoolProfile;
 import de.zalando.ep.zalenium.util.Environment;
+import de.zalando.ep.zalenium.util.GridEvents;
+import de.zalando.ep.zalenium.util.SessionRequestIds;
 import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
+import com.google.gson.JsonObject;
 import io.prometheus.client.Collector;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
@@ -34,15 +41,17 @@ import io.prometheus.client.Histogram;
 import java.net.URL;
 import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -50,6 +59,9 @@ import org.slf4j.MDC;
 /**
  * Kernel of the grid. Keeps track of what's happening, what's free/used and assigns resources to
  * incoming requests.
+ *
+ * There is no global lock: new session requests, registrations and releases are handed over to the Matcher thread
+ * through concurrent queues, and the Matcher only re-examines the requests that could use the slots that changed.
  */
 @SuppressWarnings("WeakerAccess")
 @ThreadSafe
@@ -67,13 +79,14 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
             .register();
     private static final Gauge seleniumTestSessionsWaiting = Gauge.build()
             .name("selenium_test_sessions_waiting").help("The number of Selenium test sessions that are waiting for a container").register();
-    // lock for anything modifying the tests session currently running on this
-    // registry.
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition testSessionAvailable = lock.newCondition();
+    // Interval to go through all the waiting requests, even when no slot changed, so nodes get started for them.
+    private static final long FULL_MATCH_INTERVAL = TimeUnit.SECONDS.toMillis(5);
     private final ProxySet proxies;
     private final ActiveTestSessions activeTestSessions = new ActiveTestSessions();
-    private final NewSessionRequestQueue newSessionQueue;
+    private final PendingSessionRequests newSessionQueue = new PendingSessionRequests(this::getPrioritizer);
+    // Slots that were freed or registered since the last Matcher pass.
+    private final Queue<TestSlot> freedSlots = new ConcurrentLinkedQueue<>();
+    private final Semaphore matcherSignal = new Semaphore(0);
     private final Matcher matcherThread = new Matcher();
     private final Set<RemoteProxy> registeringProxies = ConcurrentHashMap.newKeySet();
     private volatile boolean stop = false;
@@ -85,7 +98,6 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
     public ZaleniumRegistry(Hub hub) {
         super(hub);
-        this.newSessionQueue = new NewSessionRequestQueue();
 
         long minContainers = ZaleniumConfiguration.getDesiredContainersOnStartup();
         long maxContainers = ZaleniumConfiguration.getMaxDockerSeleniumContainers();
@@ -93,11 +105,17 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
         boolean waitForAvailableNodes = ZaleniumConfiguration.isWaitForAvailableNodes();
         int maxTimesToProcessRequest = ZaleniumConfiguration.getMaxTimesToProcessRequest();
         int checkContainersInterval = ZaleniumConfiguration.getCheckContainersInterval();
+        Map<WarmPoolProfile, Integer> warmPools = WarmPoolProfile.parse(ZaleniumConfiguration.getWarmPools());
 
         DockeredSeleniumStarter starter = new DockeredSeleniumStarter();
-
-        AutoStartProxySet autoStart = new AutoStartProxySet(false, minContainers, maxContainers, timeToWaitToStart,
-            waitForAvailableNodes, starter, Clock.systemDefaultZone(), maxTimesToProcessRequest, checkContainersInterval);
+        Clock clock = Clock.systemDefaultZone();
+        ScalingPolicy scalingPolicy = new EwmaScalingPolicy(minContainers, maxContainers,
+            ZaleniumConfiguration.getScaleUpCooldown(), ZaleniumConfiguration.getScaleDownCooldown(), clock);
+
+        AutoStartProxySet autoStart = new AutoStartProxySet(false, maxContainers, timeToWaitToStart,
+            waitForAvailableNodes, starter, clock, maxTimesToProcessRequest, checkContainersInterval,
+            warmPools, scalingPolicy);
+        autoStart.setQueuedRequests(newSessionQueue::size);
         proxies = autoStart;
         this.matcherThread.setUncaughtExceptionHandler(new UncaughtExceptionHandler());
 
@@ -113,7 +131,6 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      */
     public ZaleniumRegistry(Hub hub, ProxySet proxySet) {
         super(hub);
-        this.newSessionQueue = new NewSessionRequestQueue();
         proxies = proxySet;
         this.matcherThread.setUncaughtExceptionHandler(new UncaughtExceptionHandler());
     }
@@ -146,15 +163,6 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
     public void start() {
         matcherThread.start();
-
-        // freynaud : TODO
-        // Grid registry is in a valid state when testSessionAvailable.await(); from
-        // assignRequestToProxy is reached. Not before.
-        try {
-            Thread.sleep(250);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
     }
 
     /**
@@ -196,13 +204,8 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
         final String internalKey = testSlot.getInternalKey();
 
-        try {
-            lock.lock();
-            testSlot.finishReleaseProcess();
-            release(internalKey, reason);
-        } finally {
-            lock.unlock();
-        }
+        testSlot.finishReleaseProcess();
+        release(internalKey, reason);
     }
 
     /**
@@ -249,30 +252,52 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      */
     public void addNewSessionRequest(RequestHandler handler) {
         try {
-            lock.lock();
             Map<String, Object> requestedCapabilities = handler.getRequest().getDesiredCapabilities();
             proxies.verifyAbilityToHandleDesiredCapabilities(requestedCapabilities);
             requestedCapabilities.forEach((k, v) -> MDC.put(k,v.toString()));
-            LOG.info("Adding sessionRequest for " + requestedCapabilities.toString());
+            long requestId = SessionRequestIds.idOf(requestedCapabilities);
+            LOG.info("Adding sessionRequest " + requestId + " for " + requestedCapabilities.toString());
             newSessionQueue.add(handler);
             seleniumTestSessionsWaiting.inc();
+            if (proxies instanceof AutoStartProxySet) {
+                ((AutoStartProxySet) proxies).sessionRequested();
+            }
             fireMatcherStateChanged();
         } finally {
             MDC.clear();
-            lock.unlock();
         }
     }
 
     /**
-     * iterates the list of incoming session request to find a potential match in the list of proxies.
-     * If something changes in the registry, the matcher iteration is stopped to account for that
-     * change.
+     * Waits for something to change in the registry and then tries to match only what could be affected: new
+     * requests are tried once, and each freed or newly registered slot is offered, on its own proxy only, to the
+     * first request of each capability bucket that could use it. Every few seconds all the waiting requests are
+     * processed, so nodes keep being requested for them.
      */
     private void assignRequestToProxy() {
+        long lastFullMatch = 0;
         while (!stop) {
             try {
-                testSessionAvailable.await(5, TimeUnit.SECONDS);
-                newSessionQueue.processQueue(this::takeRequestHandler, getHub().getConfiguration().prioritizer);
+                matcherSignal.tryAcquire(FULL_MATCH_INTERVAL, TimeUnit.MILLISECONDS);
+                matcherSignal.drainPermits();
+
+                List<TestSlot> slotsToOffer = new ArrayList<>();
+                TestSlot freedSlot;
+                while ((freedSlot = freedSlots.poll()) != null) {
+                    slotsToOffer.add(freedSlot);
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastFullMatch >= FULL_MATCH_INTERVAL) {
+                    lastFullMatch = now;
+                    newSessionQueue.processAll(this::takeRequestHandler);
+                } else {
+                    for (TestSlot slot : slotsToOffer) {
+                        newSessionQueue.processFreedSlot(slotKey(slot),
+                                handler -> takeRequestHandler(handler, slot.getProxy()));
+                    }
+                    newSessionQueue.processArrivals(this::takeRequestHandler);
+                }
                 // Just make sure we delete anything that is logged on this thread from memory
                 LoggingManager.perSessionLogHandler().clearThreadTempLogs();
             } catch (InterruptedException e) {
@@ -284,8 +309,26 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
     }
 
+    private Prioritizer getPrioritizer() {
+        return getHub() == null ? null : getHub().getConfiguration().prioritizer;
+    }
+
     private boolean takeRequestHandler(RequestHandler handler) {
-        final TestSession session = proxies.getNewSession(handler.getRequest().getDesiredCapabilities());
+        return bindSession(handler, proxies.getNewSession(handler.getRequest().getDesiredCapabilities()));
+    }
+
+    private boolean takeRequestHandler(RequestHandler handler, RemoteProxy proxy) {
+        Map<String, Object> requestedCapabilities = handler.getRequest().getDesiredCapabilities();
+        final TestSession session;
+        if (proxies instanceof AutoStartProxySet) {
+            session = ((AutoStartProxySet) proxies).getNewSession(requestedCapabilities, proxy);
+        } else {
+            session = proxies.contains(proxy) ? proxy.getNewSession(requestedCapabilities) : null;
+        }
+        return bindSession(handler, session);
+    }
+
+    private boolean bindSession(RequestHandler handler, TestSession session) {
         final boolean sessionCreated = session != null;
         if (sessionCreated) {
             String remoteName = session.getSlot().getProxy().getId();
@@ -299,6 +342,7 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
             seleniumTestSessionsWaiting.dec();
             activeTestSessions.add(session);
             handler.bindSession(session);
+            GridEvents.getInstance().publish(GridEvents.SESSION_STARTED, sessionEvent(session));
         }
         return sessionCreated;
     }
@@ -311,17 +355,25 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      * @param reason  the reason for the release
      */
     private void release(TestSession session, SessionTerminationReason reason) {
-        try {
-            lock.lock();
-            boolean removed = activeTestSessions.remove(session, reason);
-            if (removed) {
-                fireMatcherStateChanged();
-            }
-        } finally {
-            lock.unlock();
+        boolean removed = activeTestSessions.remove(session, reason);
+        if (removed) {
+            fireMatcherStateChanged(session.getSlot());
+            JsonObject stoppedSession = sessionEvent(session);
+            stoppedSession.addProperty("reason", reason.name());
+            GridEvents.getInstance().publish(GridEvents.SESSION_STOPPED, stoppedSession);
         }
     }
 
+    private static JsonObject sessionEvent(TestSession session) {
+        JsonObject testSession = new JsonObject();
+        testSession.addProperty("internalKey", session.getInternalKey());
+        if (session.getExternalKey() != null) {
+            testSession.addProperty("externalKey", session.getExternalKey().getKey());
+        }
+        testSession.addProperty("node", session.getSlot().getProxy().getId());
+        return testSession;
+    }
+
     private void release(String internalKey, SessionTerminationReason reason) {
         if (internalKey == null) {
             return;
@@ -344,33 +396,25 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
     	LOG.debug("Received a node registration request {}", proxy);
 
-        try {
-            lock.lock();
-
-            /*
-                We don't reuse proxies in a long period, so it is unlikely that a proxy registers twice as an intended
-                behaviour. This creates a race condition when the proxy is trying to register itself several times
-                since it does not get a confirmation from the hub. Nevertheless, this still applies to nodes
-                registered by hand by any user.
-             */
-            if (proxy instanceof DockerSeleniumRemoteProxy) {
-                if (proxies.contains(proxy)) {
-                    LOG.debug("Proxy '{}' is already registered.", proxy);
-                    return;
-                }
-            } else {
-                removeIfPresent(proxy);
-            }
-
-            if (registeringProxies.contains(proxy)) {
-                LOG.debug("Proxy '{}' is already queued for registration.", proxy);
+        /*
+            We don't reuse proxies in a long period, so it is unlikely that a proxy registers twice as an intended
+            behaviour. This creates a race condition when the proxy is trying to register itself several times
+            since it does not get a confirmation from the hub. Nevertheless, this still applies to nodes
+            registered by hand by any user.
+         */
+        if (proxy instanceof DockerSeleniumRemoteProxy) {
+            if (proxies.contains(proxy)) {
+                LOG.debug("Proxy '{}' is already registered.", proxy);
                 return;
             }
+        } else {
+            removeIfPresent(proxy);
+        }
 
-            registeringProxies.add(proxy);
-            fireMatcherStateChanged();
-        } finally {
-            lock.unlock();
+        // No lock needed: add() is atomic and the proxy joins the set before leaving registeringProxies.
+        if (!registeringProxies.add(proxy)) {
+            LOG.debug("Proxy '{}' is already queued for registration.", proxy);
+            return;
         }
 
         boolean listenerOk = true;
@@ -385,18 +429,16 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
         }
 
         try {
-            lock.lock();
-            registeringProxies.remove(proxy);
             if (listenerOk) {
                 if (proxy instanceof SelfHealingProxy) {
                     ((SelfHealingProxy) proxy).startPolling();
                 }
                 proxies.add(proxy);
                 LOG.info("Registered a node {}", proxy);
-                fireMatcherStateChanged();
+                proxy.getTestSlots().forEach(this::fireMatcherStateChanged);
             }
         } finally {
-            lock.unlock();
+            registeringProxies.remove(proxy);
         }
 
     }
@@ -409,7 +451,22 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
     }
 
     private void fireMatcherStateChanged() {
-        testSessionAvailable.signalAll();
+        matcherSignal.release();
+    }
+
+    private void fireMatcherStateChanged(TestSlot slot) {
+        if (proxies instanceof AutoStartProxySet) {
+            ((AutoStartProxySet) proxies).slotReleased(slot.getProxy());
+        }
+        freedSlots.add(slot);
+        fireMatcherStateChanged();
+    }
+
+    private static CapabilityKey slotKey(TestSlot slot) {
+        if (slot.getProxy() instanceof DockerSeleniumRemoteProxy) {
+            return CapabilityKey.fromCapabilities(slot.getCapabilities());
+        }
+        return CapabilityKey.ANY;
     }
 
     /**
@@ -445,14 +502,14 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      */
     public int getNewSessionRequestCount() {
         // may race
-        return newSessionQueue.getNewSessionRequestCount();
+        return newSessionQueue.size();
     }
 
     /**
      * @see GridRegistry#clearNewSessionRequests()
      */
     public void clearNewSessionRequests() {
-        newSessionQueue.clearNewSessionRequests();
+        newSessionQueue.clear();
         seleniumTestSessionsWaiting.set(0);
     }
 
@@ -460,9 +517,12 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      * @see GridRegistry#removeNewSessionRequest(RequestHandler)
      */
     public boolean removeNewSessionRequest(RequestHandler request) {
-        boolean wasRemoved = newSessionQueue.removeNewSessionRequest(request);
+        boolean wasRemoved = newSessionQueue.remove(request);
         if (wasRemoved) {
             seleniumTestSessionsWaiting.dec();
+            if (proxies instanceof AutoStartProxySet) {
+                ((AutoStartProxySet) proxies).sessionRequestRemoved(request.getRequest().getDesiredCapabilities());
+            }
         }
         return wasRemoved;
     }
@@ -537,12 +597,7 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
         @Override
         public void run() {
-            try {
-                lock.lock();
-                assignRequestToProxy();
-            } finally {
-                lock.unlock();
-            }
+            assignRequestToProxy();
         }
 
     }
@@ -0,0 +1,270 @@
+package de.zalando.ep.zalenium.servlet;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import de.zalando.ep.zalenium.util.GridEvents;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/**
+ * Streams the {@link GridEvents} as server-sent events, so the dashboard and the live preview do not need to poll.
+ *
+ * Clients are served with asynchronous, non-blocking writes by a single dispatcher thread that wakes up when an event
+ * is published. A client that cannot take more data is skipped and catches up when its connection is writable again.
+ * If it falls behind by more than the ring of events, its stream is closed, and it reconnects starting from the
+ * newest event.
+ */
+public class GridEventsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(GridEventsServlet.class.getName());
+    private static final long KEEP_ALIVE_INTERVAL = TimeUnit.SECONDS.toMillis(15);
+    private static final byte[] STREAM_START = ("retry: 5000\n\n").getBytes(UTF_8);
+    private static final byte[] KEEP_ALIVE = (": keep-alive\n\n").getBytes(UTF_8);
+    private static final Gauge connectedClients = Gauge.build()
+            .name("zalenium_grid_events_clients")
+            .help("Clients connected to the grid events stream.").register();
+    private static final Counter droppedClients = Counter.build()
+            .name("zalenium_grid_events_dropped_clients_total")
+            .help("Clients of the grid events stream dropped because they could not keep up.").register();
+
+    private final transient GridEvents gridEvents;
+    private final transient Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final transient AtomicBoolean dispatchScheduled = new AtomicBoolean(false);
+    private final transient Runnable eventListener = this::scheduleDispatch;
+    private transient ScheduledExecutorService dispatcher;
+
+    @SuppressWarnings("unused")
+    public GridEventsServlet() {
+        this(GridEvents.getInstance());
+    }
+
+    @VisibleForTesting
+    GridEventsServlet(GridEvents gridEvents) {
+        this.gridEvents = gridEvents;
+    }
+
+    @Override
+    public void init() {
+        dispatcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("Grid events dispatcher").setDaemon(true).build());
+        dispatcher.scheduleWithFixedDelay(this::keepAlive, KEEP_ALIVE_INTERVAL, KEEP_ALIVE_INTERVAL,
+                TimeUnit.MILLISECONDS);
+        gridEvents.addListener(eventListener);
+    }
+
+    @Override
+    public void destroy() {
+        gridEvents.removeListener(eventListener);
+        dispatcher.shutdownNow();
+        subscribers.forEach(Subscriber::close);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!request.isAsyncSupported()) {
+            response.sendError(HTTP_UNAVAILABLE, "The grid events stream needs asynchronous requests");
+            return;
+        }
+        response.setStatus(HTTP_OK);
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding(UTF_8.name());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        // Tells nginx not to buffer the stream.
+        response.setHeader("X-Accel-Buffering", "no");
+        response.addHeader("Access-Control-Allow-Origin", "*");
+
+        AsyncContext context = request.startAsync();
+        context.setTimeout(0);
+        Subscriber subscriber = new Subscriber(context, response.getOutputStream(),
+                getStartSequence(request.getHeader("Last-Event-ID")));
+        context.addListener(subscriber);
+        subscribers.add(subscriber);
+        connectedClients.inc();
+        // The container calls onWritePossible right away, which sends what the client missed.
+        subscriber.out.setWriteListener(subscriber);
+    }
+
+    /**
+     * A client that reconnects gets the events it missed, if they are still in the ring. Otherwise it gets the events
+     * published from now on.
+     */
+    private long getStartSequence(String lastEventId) {
+        long lastSequence = gridEvents.getLastSequence();
+        if (lastEventId != null) {
+            try {
+                long lastReceived = Long.parseLong(lastEventId.trim());
+                if (lastReceived >= gridEvents.getFirstSequence() - 1 && lastReceived <= lastSequence) {
+                    return lastReceived;
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Invalid Last-Event-ID {}", lastEventId);
+            }
+        }
+        return lastSequence;
+    }
+
+    private void scheduleDispatch() {
+        // Events published while a dispatch is pending are sent by that dispatch.
+        if (dispatchScheduled.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(this::dispatch);
+            } catch (RejectedExecutionException e) {
+                dispatchScheduled.set(false);
+            }
+        }
+    }
+
+    private void dispatch() {
+        dispatchScheduled.set(false);
+        subscribers.forEach(Subscriber::send);
+    }
+
+    private void keepAlive() {
+        subscribers.forEach(Subscriber::keepAlive);
+    }
+
+    @VisibleForTesting
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private final class Subscriber implements WriteListener, AsyncListener {
+        private final AsyncContext context;
+        private final ServletOutputStream out;
+        private long sentSequence;
+        private boolean started = false;
+        private boolean keepAlivePending = false;
+        private boolean unflushed = false;
+        private boolean closed = false;
+
+        private Subscriber(AsyncContext context, ServletOutputStream out, long sentSequence) {
+            this.context = context;
+            this.out = out;
+            this.sentSequence = sentSequence;
+        }
+
+        @Override
+        public void onWritePossible() {
+            send();
+        }
+
+        /**
+         * Writes what the client is missing for as long as the connection takes it without blocking.
+         */
+        private synchronized void send() {
+            if (closed) {
+                return;
+            }
+            try {
+                while (true) {
+                    // Checked first, a client that stopped reading is never ready again.
+                    if (sentSequence < gridEvents.getFirstSequence() - 1) {
+                        LOGGER.debug("Dropping a grid events client that is {} events behind",
+                                gridEvents.getLastSequence() - sentSequence);
+                        droppedClients.inc();
+                        close();
+                        return;
+                    }
+                    if (!out.isReady()) {
+                        return;
+                    }
+                    GridEvents.Event event = gridEvents.get(sentSequence + 1);
+                    if (!started) {
+                        out.write(STREAM_START);
+                        started = true;
+                        unflushed = true;
+                    } else if (event != null) {
+                        out.write(event.getBytes());
+                        sentSequence = event.getSequence();
+                        unflushed = true;
+                    } else if (keepAlivePending) {
+                        out.write(KEEP_ALIVE);
+                        keepAlivePending = false;
+                        unflushed = true;
+                    } else if (unflushed) {
+                        out.flush();
+                        unflushed = false;
+                    } else {
+                        return;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.debug("Grid events client is gone: {}", e.toString());
+                close();
+            }
+        }
+
+        private synchronized void keepAlive() {
+            keepAlivePending = true;
+            send();
+        }
+
+        private synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (subscribers.remove(this)) {
+                connectedClients.dec();
+            }
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container.
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Not restarted.
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package de.zalando.ep.zalenium.streams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public final class FileInputStreamDescriptor implements InputStreamDescriptor {
+    private final Path file;
+    private final String name;
+
+    public FileInputStreamDescriptor(Path file, String name) {
+        this.file = file;
+        this.name = name;
+    }
+
+    @Override
+    public InputStream get() {
+        // Opened on demand, files that are moved are never read.
+        try {
+            return Files.newInputStream(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Optional<Path> file() {
+        return Optional.of(file);
+    }
+}
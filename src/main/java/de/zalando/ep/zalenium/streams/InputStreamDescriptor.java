@@ -1,10 +1,19 @@
 package de.zalando.ep.zalenium.streams;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
 
 public interface InputStreamDescriptor {
 
     InputStream get();
     String name();
 
-}
\ No newline at end of file
+    /**
+     * The file with the content, when it is on a volume shared with the hub. It can then be moved instead of copied.
+     */
+    default Optional<Path> file() {
+        return Optional.empty();
+    }
+
+}
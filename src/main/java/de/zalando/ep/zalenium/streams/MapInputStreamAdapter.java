@@ -1,27 +1,25 @@
 package de.zalando.ep.zalenium.streams;
 
-import java.io.FileInputStream;
-import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Iterator;
-import java.io.File;
 import java.util.Map;
 
 public class MapInputStreamAdapter implements  InputStreamGroupIterator{
 
-    Iterator<Map.Entry<String, File>> streams;
+    Iterator<Map.Entry<String, Path>> streams;
 
-    public MapInputStreamAdapter(Map<String, File> files) {
+    public MapInputStreamAdapter(Map<String, Path> files) {
         streams = files.entrySet().stream()
                 .iterator();
     }
 
     @Override
-    public InputStreamDescriptor next() throws IOException {
+    public InputStreamDescriptor next() {
         return streams.hasNext() ? getNextDescriptor() : null;
     }
 
-    private InputStreamDescriptor getNextDescriptor() throws IOException {
-        Map.Entry<String, File> entry = streams.next();
-        return new DefaultInputStreamDescriptor(new FileInputStream(entry.getValue()), entry.getKey());
+    private InputStreamDescriptor getNextDescriptor() {
+        Map.Entry<String, Path> entry = streams.next();
+        return new FileInputStreamDescriptor(entry.getValue(), entry.getKey());
     }
-}
\ No newline at end of file
+}
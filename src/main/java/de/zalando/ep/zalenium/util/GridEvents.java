@@ -0,0 +1,127 @@
+package de.zalando.ep.zalenium.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * The latest events of the grid: tests added to the dashboard, nodes registered and removed, sessions started and
+ * stopped. They are kept in a ring buffer, already formatted as server-sent events, for the clients of the event
+ * stream.
+ *
+ * Publishing stores the event and wakes up the listeners, it never waits for the clients. Every client reads the ring
+ * from its own position, a client that falls behind by more than the capacity of the ring has lost events.
+ */
+@ThreadSafe
+public class GridEvents {
+
+    public static final String TEST_ADDED = "testAdded";
+    public static final String NODE_ADDED = "nodeAdded";
+    public static final String NODE_REMOVED = "nodeRemoved";
+    public static final String SESSION_STARTED = "sessionStarted";
+    public static final String SESSION_STOPPED = "sessionStopped";
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final Logger LOGGER = LoggerFactory.getLogger(GridEvents.class.getName());
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final GridEvents gridEvents = new GridEvents(DEFAULT_CAPACITY);
+
+    private final Event[] ring;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private long lastSequence = 0;
+
+    GridEvents(int capacity) {
+        this.ring = new Event[capacity];
+    }
+
+    public static GridEvents getInstance() {
+        return gridEvents;
+    }
+
+    /**
+     * @param type the name of the event.
+     * @param data sent as JSON.
+     */
+    public void publish(String type, Object data) {
+        String json = GSON.toJson(data);
+        synchronized (this) {
+            long sequence = ++lastSequence;
+            ring[(int) (sequence % ring.length)] = new Event(sequence, type, json);
+        }
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                LOGGER.warn("Grid events listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return the event, or null if it was not published yet or was already overwritten.
+     */
+    public synchronized Event get(long sequence) {
+        if (sequence > lastSequence || sequence < getFirstSequence()) {
+            return null;
+        }
+        return ring[(int) (sequence % ring.length)];
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return the sequence of the oldest event in the ring.
+     */
+    public synchronized long getFirstSequence() {
+        return Math.max(1, lastSequence - ring.length + 1);
+    }
+
+    /**
+     * @param listener called after each event is published, by the thread publishing it. It must not block.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    public static final class Event {
+        private final long sequence;
+        private final String type;
+        private final byte[] bytes;
+
+        private Event(long sequence, String type, String json) {
+            this.sequence = sequence;
+            this.type = type;
+            // Gson escapes line breaks, so the data fits in one line.
+            this.bytes = ("id: " + sequence + "\nevent: " + type + "\ndata: " + json + "\n\n").getBytes(UTF_8);
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return the event in the format of a server-sent event.
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -4,15 +4,15 @@ import java.util.Map;
 
 public class ProcessedCapabilities {
     private Map<String, Object> requestedCapability;
-    private int identityHashCode;
+    private final long requestId;
     private long lastProcessedTime;
     private int processedTimes;
     private final long firstProcessedTime;
 
-    public ProcessedCapabilities(Map<String, Object> requestedCapability, int identityHashCode) {
+    public ProcessedCapabilities(Map<String, Object> requestedCapability, long requestId, long processedTime) {
         this.requestedCapability = requestedCapability;
-        this.identityHashCode = identityHashCode;
-        this.lastProcessedTime = System.currentTimeMillis();
+        this.requestId = requestId;
+        this.lastProcessedTime = processedTime;
         this.firstProcessedTime = this.lastProcessedTime;
         this.processedTimes = 1;
     }
@@ -25,8 +25,8 @@ public class ProcessedCapabilities {
         this.requestedCapability = requestedCapability;
     }
 
-    public int getIdentityHashCode() {
-        return identityHashCode;
+    public long getRequestId() {
+        return requestId;
     }
 
     public long getLastProcessedTime() {
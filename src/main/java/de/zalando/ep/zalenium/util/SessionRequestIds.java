@@ -0,0 +1,36 @@
+package de.zalando.ep.zalenium.util;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Gives each new session request an id that stays the same while it waits in the queue.
+ *
+ * The hub passes the same desired capabilities map around for every attempt of a request, so the map itself
+ * identifies the request. Weak keys are compared by identity and go away with the request, unlike
+ * {@link System#identityHashCode(Object)}, which different live maps can share.
+ */
+@ThreadSafe
+public final class SessionRequestIds {
+
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final LoadingCache<Map<String, Object>, Long> IDS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(capabilities -> sequence.incrementAndGet()));
+
+    private SessionRequestIds() {
+    }
+
+    /**
+     * @return the id of the request with the given desired capabilities, a new one if the request was not seen yet.
+     */
+    public static long idOf(Map<String, Object> desiredCapabilities) {
+        return IDS.getUnchecked(desiredCapabilities);
+    }
+}
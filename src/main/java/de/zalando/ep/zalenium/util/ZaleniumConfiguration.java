@@ -21,6 +21,14 @@ public class ZaleniumConfiguration {
     @VisibleForTesting
     public static final int DEFAULT_CHECK_CONTAINERS_INTERVAL = 5000;
     @VisibleForTesting
+    public static final int DEFAULT_SCALE_UP_COOLDOWN = 10000;
+    @VisibleForTesting
+    public static final int DEFAULT_SCALE_DOWN_COOLDOWN = 60000;
+    @VisibleForTesting
+    public static final int DEFAULT_NODE_CONTROL_THREADS = 10;
+    @VisibleForTesting
+    public static final int DEFAULT_ARTIFACT_TRANSFER_THREADS = 4;
+    @VisibleForTesting
     public static final String ZALENIUM_DESIRED_CONTAINERS = "ZALENIUM_DESIRED_CONTAINERS";
     @VisibleForTesting
     public static final String ZALENIUM_SWARM_OVERLAY_NETWORK = "ZALENIUM_SWARM_OVERLAY_NETWORK";
@@ -30,6 +38,13 @@ public class ZaleniumConfiguration {
     private static final String TIME_TO_WAIT_TO_START = "TIME_TO_WAIT_TO_START";
     private static final String MAX_TIMES_TO_PROCESS_REQUEST = "MAX_TIMES_TO_PROCESS_REQUEST";
     private static final String CHECK_CONTAINERS_INTERVAL = "CHECK_CONTAINERS_INTERVAL";
+    private static final String SCALE_UP_COOLDOWN = "SCALE_UP_COOLDOWN";
+    private static final String SCALE_DOWN_COOLDOWN = "SCALE_DOWN_COOLDOWN";
+    private static final String MAX_CONCURRENT_CONTAINER_STARTS = "MAX_CONCURRENT_CONTAINER_STARTS";
+    private static final String NODE_CONTROL_THREADS = "NODE_CONTROL_THREADS";
+    private static final String ARTIFACT_TRANSFER_THREADS = "ARTIFACT_TRANSFER_THREADS";
+    @VisibleForTesting
+    public static final String ZALENIUM_WARM_POOLS = "ZALENIUM_WARM_POOLS";
 
     // Intended to start Zalenium locally for debugging or development. See ZaleniumRegistryTest#runLocally
     @VisibleForTesting
@@ -45,6 +60,12 @@ public class ZaleniumConfiguration {
     private static int timeToWaitToStart;
     private static int maxTimesToProcessRequest;
     private static int checkContainersInterval;
+    private static String warmPools;
+    private static int scaleUpCooldown;
+    private static int scaleDownCooldown;
+    private static int maxConcurrentContainerStarts;
+    private static int nodeControlThreads;
+    private static int artifactTransferThreads;
     private static String currentUser;
     private static String HOST_UID;
     private static String HOST_GID;
@@ -83,6 +104,17 @@ public class ZaleniumConfiguration {
         int checkContainers = env.getIntEnvVariable(CHECK_CONTAINERS_INTERVAL, DEFAULT_CHECK_CONTAINERS_INTERVAL);
         setCheckContainersInterval(checkContainers);
 
+        setWarmPools(env.getStringEnvVariable(ZALENIUM_WARM_POOLS, ""));
+
+        setScaleUpCooldown(env.getIntEnvVariable(SCALE_UP_COOLDOWN, DEFAULT_SCALE_UP_COOLDOWN));
+        setScaleDownCooldown(env.getIntEnvVariable(SCALE_DOWN_COOLDOWN, DEFAULT_SCALE_DOWN_COOLDOWN));
+
+        setMaxConcurrentContainerStarts(env.getIntEnvVariable(MAX_CONCURRENT_CONTAINER_STARTS, 0));
+
+        setNodeControlThreads(env.getIntEnvVariable(NODE_CONTROL_THREADS, DEFAULT_NODE_CONTROL_THREADS));
+        setArtifactTransferThreads(env.getIntEnvVariable(ARTIFACT_TRANSFER_THREADS,
+                DEFAULT_ARTIFACT_TRANSFER_THREADS));
+
         currentUser = System.getProperty("user.name", "seluser");
         HOST_GID = env.getStringEnvVariable("HOST_GID", "1000");
         HOST_UID = env.getStringEnvVariable("HOST_UID", "1000");
@@ -97,6 +129,71 @@ public class ZaleniumConfiguration {
                 DEFAULT_CHECK_CONTAINERS_INTERVAL : checkContainersInterval;
     }
 
+    /**
+     * Warm pools per capability profile, e.g. "1280x1024/UTC:5,1920x1080/Europe/Berlin:2".
+     */
+    public static String getWarmPools() {
+        return warmPools;
+    }
+
+    @VisibleForTesting
+    public static void setWarmPools(String warmPools) {
+        ZaleniumConfiguration.warmPools = warmPools;
+    }
+
+    public static int getScaleUpCooldown() {
+        return scaleUpCooldown;
+    }
+
+    public static void setScaleUpCooldown(int scaleUpCooldown) {
+        ZaleniumConfiguration.scaleUpCooldown = scaleUpCooldown < 0 ? DEFAULT_SCALE_UP_COOLDOWN : scaleUpCooldown;
+    }
+
+    public static int getScaleDownCooldown() {
+        return scaleDownCooldown;
+    }
+
+    public static void setScaleDownCooldown(int scaleDownCooldown) {
+        ZaleniumConfiguration.scaleDownCooldown = scaleDownCooldown < 0 ?
+                DEFAULT_SCALE_DOWN_COOLDOWN : scaleDownCooldown;
+    }
+
+    /**
+     * Containers started at the same time for waiting requests, 0 to use the default of the container backend.
+     */
+    public static int getMaxConcurrentContainerStarts() {
+        return maxConcurrentContainerStarts;
+    }
+
+    @VisibleForTesting
+    public static void setMaxConcurrentContainerStarts(int maxConcurrentContainerStarts) {
+        ZaleniumConfiguration.maxConcurrentContainerStarts = Math.max(0, maxConcurrentContainerStarts);
+    }
+
+    /**
+     * Threads stopping the containers of the nodes and running commands in them.
+     */
+    public static int getNodeControlThreads() {
+        return nodeControlThreads;
+    }
+
+    public static void setNodeControlThreads(int nodeControlThreads) {
+        ZaleniumConfiguration.nodeControlThreads = nodeControlThreads < 1 ?
+                DEFAULT_NODE_CONTROL_THREADS : nodeControlThreads;
+    }
+
+    /**
+     * Threads copying videos and logs from the containers of the nodes.
+     */
+    public static int getArtifactTransferThreads() {
+        return artifactTransferThreads;
+    }
+
+    public static void setArtifactTransferThreads(int artifactTransferThreads) {
+        ZaleniumConfiguration.artifactTransferThreads = artifactTransferThreads < 1 ?
+                DEFAULT_ARTIFACT_TRANSFER_THREADS : artifactTransferThreads;
+    }
+
     public static int getMaxTimesToProcessRequest() {
         return maxTimesToProcessRequest;
     }
@@ -0,0 +1,109 @@
+package de.zalando.ep.zalenium.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * A cookie set by a test to talk to Zalenium (test status, messages, video recording, test name and metadata).
+ *
+ * Tests send every cookie of the application through the hub, so the request body is first searched for the
+ * "zalenium" prefix, and then only the name and value of the cookie are read with a streaming scan, without building
+ * the JSON tree of the whole body.
+ */
+public final class ZaleniumCookie {
+
+    private static final String NAME_PREFIX = "zalenium";
+
+    private final String name;
+    private final String value;
+
+    private ZaleniumCookie(String name, String value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    /**
+     * @param body body of an add cookie request, {@code {"cookie": {"name": ..., "value": ...}}}.
+     * @return the cookie, or null if it is not a Zalenium cookie or has no value.
+     * @throws IOException when the body is not valid JSON.
+     */
+    public static ZaleniumCookie fromRequestBody(String body) throws IOException {
+        if (body == null || !mentionsZalenium(body)) {
+            return null;
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(body))) {
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("cookie".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    return readCookie(reader);
+                }
+                reader.skipValue();
+            }
+        } catch (IllegalStateException e) {
+            throw new IOException("Unexpected cookie request body", e);
+        }
+        return null;
+    }
+
+    // Same as StringUtils.containsIgnoreCase, but only compares the regions starting with a 'z'.
+    private static boolean mentionsZalenium(String body) {
+        int last = body.length() - NAME_PREFIX.length();
+        for (int i = 0; i <= last; i++) {
+            char c = body.charAt(i);
+            if ((c == 'z' || c == 'Z') && body.regionMatches(true, i, NAME_PREFIX, 0, NAME_PREFIX.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ZaleniumCookie readCookie(JsonReader reader) throws IOException {
+        String name = null;
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if ("name".equals(field)) {
+                name = readScalar(reader);
+            } else if ("value".equals(field)) {
+                value = readScalar(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (name == null || value == null || !name.regionMatches(true, 0, NAME_PREFIX, 0, NAME_PREFIX.length())) {
+            return null;
+        }
+        return new ZaleniumCookie(name, value);
+    }
+
+    private static String readScalar(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public boolean hasName(String cookieName) {
+        return name.equalsIgnoreCase(cookieName);
+    }
+}
@@ -0,0 +1,104 @@
+package de.zalando.ep.zalenium.container;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandBatchTest {
+
+    @Test
+    public void everyCommandGetsItsExitCodeAndOutput() throws Exception {
+        CommandBatch batch = new CommandBatch(Arrays.asList("echo started", "echo failed >&2; exit 3", "printf done"));
+
+        List<CommandResult> results = batch.parseResults(run(batch.toCommand()));
+
+        assertEquals(3, results.size());
+        assertEquals("echo started", results.get(0).getCommand());
+        assertEquals(0, results.get(0).getExitCode());
+        assertEquals("started\n", results.get(0).getOutput());
+        assertEquals(3, results.get(1).getExitCode());
+        assertEquals("failed\n", results.get(1).getOutput());
+        assertFalse(results.get(1).isSuccessful());
+        assertTrue(results.get(2).isSuccessful());
+        assertEquals("done", results.get(2).getOutput());
+    }
+
+    @Test
+    public void batchesRunOneAfterTheOtherInAnOpenShell() throws Exception {
+        CommandBatch first = new CommandBatch(Arrays.asList("read line; echo \"read $line\"", "exit 2"));
+        CommandBatch second = new CommandBatch(Collections.singletonList("echo second"));
+
+        Process shell = new ProcessBuilder("bash").redirectErrorStream(true).start();
+        try (Writer input = new OutputStreamWriter(shell.getOutputStream(), StandardCharsets.UTF_8);
+             BufferedReader output = new BufferedReader(
+                     new InputStreamReader(shell.getInputStream(), StandardCharsets.UTF_8))) {
+            input.write(first.toScript());
+            input.flush();
+            List<CommandResult> firstResults = first.parseResults(readUntil(output, first.getCompletionMarker()));
+            input.write(second.toScript());
+            input.flush();
+            List<CommandResult> secondResults = second.parseResults(readUntil(output, second.getCompletionMarker()));
+
+            // The commands do not read the input of the shell, nor end it.
+            assertEquals("read \n", firstResults.get(0).getOutput());
+            assertEquals(2, firstResults.get(1).getExitCode());
+            assertEquals("second\n", secondResults.get(0).getOutput());
+        } finally {
+            shell.destroy();
+        }
+    }
+
+    @Test
+    public void commandsAfterAnInterruptedExecAreNotExecuted() {
+        CommandBatch batch = new CommandBatch(Arrays.asList("stop-video", "cleanup-container.sh"));
+
+        List<CommandResult> results = batch.parseResults("stopped\n__ZALENIUM_STEP__ 0 0\ncleaning");
+
+        assertEquals(0, results.get(0).getExitCode());
+        assertEquals("stopped", results.get(0).getOutput());
+        assertEquals(CommandResult.NOT_EXECUTED, results.get(1).getExitCode());
+        assertEquals("cleaning", results.get(1).getOutput());
+    }
+
+    @Test
+    public void failedExecMarksAllCommands() {
+        CommandBatch batch = new CommandBatch(Arrays.asList("stop-video", "cleanup-container.sh"));
+
+        for (CommandResult result : batch.notExecuted("No such container")) {
+            assertEquals(CommandResult.NOT_EXECUTED, result.getExitCode());
+            assertEquals("No such container", result.getOutput());
+        }
+    }
+
+    private static String readUntil(BufferedReader output, String completionMarker) throws IOException {
+        StringBuilder read = new StringBuilder();
+        String line;
+        while ((line = output.readLine()) != null) {
+            read.append(line).append('\n');
+            if (line.startsWith(completionMarker)) {
+                break;
+            }
+        }
+        return read.toString();
+    }
+
+    private static String run(String[] command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8);
+        process.waitFor();
+        return output;
+    }
+}
@@ -0,0 +1,78 @@
+package de.zalando.ep.zalenium.container;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.spotify.docker.client.messages.ContainerMount;
+
+import de.zalando.ep.zalenium.dashboard.Dashboard;
+import de.zalando.ep.zalenium.streams.InputStreamGroupIterator;
+import de.zalando.ep.zalenium.util.DockerContainerMock;
+import de.zalando.ep.zalenium.util.TestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DockerContainerClientSharedArtifactsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws IOException {
+        Dashboard.setCommonProxyUtilities(TestUtils.mockCommonProxyUtilitiesForDashboardTesting(temporaryFolder));
+        temporaryFolder.newFolder(Dashboard.VIDEOS_FOLDER_NAME);
+        DockerContainerClient.setSharedArtifactsEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        DockerContainerClient.setSharedArtifactsEnabled(false);
+        Dashboard.restoreCommonProxyUtilities();
+    }
+
+    @Test
+    public void artifactsAreFoundByTheClientOfAnotherProxy() throws IOException {
+        ContainerMount videosMount = mock(ContainerMount.class);
+        when(videosMount.destination()).thenReturn(Dashboard.getLocalVideosPath());
+        when(videosMount.source()).thenReturn("/tmp/videos");
+        // Every proxy has its own client, the one creating the container is not the one of its node.
+        DockerContainerClient starterClient = DockerContainerMock.getMockedDockerContainerClient("default",
+                Collections.singletonList(videosMount));
+        DockerContainerClient nodeClient = DockerContainerMock.getMockedDockerContainerClient();
+
+        Map<String, String> envVars = new HashMap<>();
+        envVars.put("NOVNC_PORT", "50000");
+        ContainerCreationStatus status = starterClient.createContainer("zalenium", "elgalu/selenium", envVars,
+                "40000");
+        assertTrue(status.isCreated());
+        assertEquals("/home/seluser/artifacts/videos", envVars.get("VIDEOS_DIR"));
+
+        Path artifactsFolder = Paths.get(Dashboard.getLocalVideosPath(), Dashboard.SHARED_ARTIFACTS_FOLDER_NAME,
+                status.getContainerName());
+        Files.write(artifactsFolder.resolve(SharedArtifactsWatcher.VIDEOS_FOLDER).resolve("test.mp4"),
+                new byte[] { 1, 2, 3 });
+
+        InputStreamGroupIterator videos = nodeClient.copyFiles(status.getContainerId(), "/videos/");
+        assertEquals("test.mp4", videos.next().name());
+        assertNull(videos.next());
+
+        nodeClient.stopContainer(status.getContainerId());
+        assertFalse(Files.exists(artifactsFolder));
+    }
+}
@@ -0,0 +1,94 @@
+package de.zalando.ep.zalenium.container;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.Event;
+
+import de.zalando.ep.zalenium.container.DockerContainerStateCache.State;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DockerContainerStateCacheTest {
+
+    private DockerClient dockerClient;
+    private DockerContainerStateCache stateCache;
+
+    @Before
+    public void setUp() {
+        dockerClient = mock(DockerClient.class);
+        stateCache = new DockerContainerStateCache(dockerClient, DockerContainerClient.ZALENIUM_CONTAINER_LABEL,
+                "zalenium");
+    }
+
+    @Test
+    public void stateFollowsTheContainerEvents() {
+        stateCache.apply(event("id", "create"));
+        assertEquals(State.CREATED, stateCache.getState("id"));
+
+        stateCache.apply(event("id", "start"));
+        assertEquals(State.STARTED, stateCache.getState("id"));
+        assertFalse(stateCache.getState("id").isTerminated());
+
+        stateCache.apply(event("id", "die"));
+        assertTrue(stateCache.getState("id").isTerminated());
+
+        stateCache.apply(event("id", "destroy"));
+        assertEquals(State.DESTROYED, stateCache.getState("id"));
+    }
+
+    @Test
+    public void readyContainersStayReadyWhenStartedIsReportedAgain() {
+        stateCache.created("id");
+        stateCache.apply(event("id", "start"));
+        stateCache.ready("id");
+
+        stateCache.apply(event("id", "start"));
+
+        assertEquals(State.READY, stateCache.getState("id"));
+    }
+
+    @Test
+    public void unknownContainersHaveNoState() {
+        stateCache.apply(event("id", "exec_start: bash"));
+
+        assertNull(stateCache.getState("id"));
+        assertNull(stateCache.getState(null));
+    }
+
+    @Test
+    public void reconcileForgetsRemovedContainersAndFixesMissedEvents() throws Exception {
+        stateCache.created("removed");
+        stateCache.created("exited");
+        Container exited = mock(Container.class);
+        when(exited.id()).thenReturn("exited");
+        when(exited.state()).thenReturn("exited");
+        when(dockerClient.listContainers(any(), any())).thenReturn(Collections.singletonList(exited));
+
+        stateCache.reconcile();
+
+        assertNull(stateCache.getState("removed"));
+        assertEquals(State.DIED, stateCache.getState("exited"));
+    }
+
+    private static Event event(String containerId, String action) {
+        Event event = mock(Event.class);
+        Event.Actor actor = mock(Event.Actor.class);
+        when(actor.id()).thenReturn(containerId);
+        when(event.actor()).thenReturn(actor);
+        when(event.action()).thenReturn(action);
+        when(event.time()).thenReturn(new Date());
+        return event;
+    }
+}
@@ -0,0 +1,49 @@
+package de.zalando.ep.zalenium.container;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LifecycleExecutorsTest {
+
+    @Test
+    public void controlAndArtifactTasksRunOnSeparatePools() throws Exception {
+        String controlThread = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(),
+                LifecycleExecutors.control()).get(5, TimeUnit.SECONDS);
+        String artifactsThread = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(),
+                LifecycleExecutors.artifacts()).get(5, TimeUnit.SECONDS);
+
+        assertTrue(controlThread, controlThread.startsWith("NodeControl-"));
+        assertTrue(artifactsThread, artifactsThread.startsWith("ArtifactTransfer-"));
+    }
+
+    @Test
+    public void timeoutKeepsTheResultOfFuturesCompletingInTime() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> limited = LifecycleExecutors.withTimeout(future, 5, TimeUnit.SECONDS);
+
+        future.complete("copied");
+
+        assertEquals("copied", limited.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void slowFuturesTimeOut() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            LifecycleExecutors.withTimeout(future, 50, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+            fail("The future should have timed out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertFalse(future.isDone());
+    }
+}
@@ -0,0 +1,64 @@
+package de.zalando.ep.zalenium.container;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharedArtifactsWatcherTest {
+
+    private SharedArtifactsWatcher watcher;
+    private Path nodeFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        watcher = new SharedArtifactsWatcher();
+        nodeFolder = Files.createTempDirectory("zalenium-node").resolve("node-1");
+        watcher.register(nodeFolder);
+    }
+
+    @After
+    public void tearDown() {
+        watcher.unregister(nodeFolder);
+    }
+
+    @Test
+    public void onlyVideosAndLogsAreCollected() throws Exception {
+        Path videos = nodeFolder.resolve(SharedArtifactsWatcher.VIDEOS_FOLDER);
+        Files.write(videos.resolve("test.mp4"), new byte[] { 1, 2, 3 });
+        Files.write(videos.resolve("test.mp4.tmp"), new byte[] { 1 });
+
+        Map<String, Path> files = watcher.finishedFiles(videos);
+
+        assertEquals(1, files.size());
+        assertEquals(videos.resolve("test.mp4"), files.get("test.mp4"));
+    }
+
+    @Test
+    public void waitsUntilFilesAreNotWrittenAnymore() throws Exception {
+        Path log = nodeFolder.resolve(SharedArtifactsWatcher.LOGS_FOLDER).resolve("selenium-node.log");
+        Files.write(log, "started\n".getBytes(StandardCharsets.UTF_8));
+        long start = System.currentTimeMillis();
+
+        Map<String, Path> files = watcher.finishedFiles(log.getParent());
+
+        assertTrue(files.containsKey("selenium-node.log"));
+        assertTrue(System.currentTimeMillis() - start >= 400);
+    }
+
+    @Test
+    public void unregisterDeletesTheFolders() throws Exception {
+        watcher.unregister(nodeFolder);
+
+        assertFalse(Files.exists(nodeFolder));
+        assertTrue(watcher.finishedFiles(nodeFolder.resolve(SharedArtifactsWatcher.VIDEOS_FOLDER)).isEmpty());
+    }
+}
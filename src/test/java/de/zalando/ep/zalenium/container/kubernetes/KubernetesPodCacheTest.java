@@ -0,0 +1,101 @@
+package de.zalando.ep.zalenium.container.kubernetes;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class KubernetesPodCacheTest {
+
+    private static final Map<String, String> CREATED_BY_ZALENIUM = Collections.singletonMap("createdBy", "zalenium");
+
+    private KubernetesServer server;
+    private KubernetesClient client;
+    private KubernetesPodCache podCache;
+
+    @BeforeMethod
+    public void setUp() {
+        server = new KubernetesServer(false, true);
+        server.before();
+        client = server.getClient();
+        podCache = new KubernetesPodCache(client, CREATED_BY_ZALENIUM);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        podCache.stop();
+        server.after();
+    }
+
+    @Test
+    public void listedPodsAreIndexedByNameAndIp() {
+        client.pods().create(pod("zalenium-40000-abcde", CREATED_BY_ZALENIUM, "10.0.0.1"));
+        client.pods().create(pod("other-pod", Collections.singletonMap("app", "other"), "10.0.0.2"));
+
+        podCache.start();
+
+        assertThat(podCache.getPod("zalenium-40000-abcde").getStatus().getPodIP(), is("10.0.0.1"));
+        assertThat(podCache.getPodByIp("10.0.0.1").getMetadata().getName(), is("zalenium-40000-abcde"));
+        assertThat(podCache.getPod("other-pod"), nullValue());
+        assertThat(podCache.getPodByIp("10.0.0.2"), nullValue());
+    }
+
+    @Test
+    public void watchEventsKeepTheIndexesCurrent() {
+        podCache.eventReceived(Watcher.Action.ADDED, pod("zalenium-40000-abcde", CREATED_BY_ZALENIUM, null));
+        assertThat(podCache.getPod("zalenium-40000-abcde").getMetadata().getName(), is("zalenium-40000-abcde"));
+
+        podCache.eventReceived(Watcher.Action.MODIFIED, pod("zalenium-40000-abcde", CREATED_BY_ZALENIUM, "10.0.0.1"));
+        assertThat(podCache.getPodByIp("10.0.0.1").getMetadata().getName(), is("zalenium-40000-abcde"));
+
+        podCache.eventReceived(Watcher.Action.MODIFIED, pod("zalenium-40000-abcde", CREATED_BY_ZALENIUM, "10.0.0.3"));
+        assertThat(podCache.getPodByIp("10.0.0.1"), nullValue());
+        assertThat(podCache.getPodByIp("10.0.0.3").getMetadata().getName(), is("zalenium-40000-abcde"));
+
+        podCache.eventReceived(Watcher.Action.DELETED, pod("zalenium-40000-abcde", CREATED_BY_ZALENIUM, "10.0.0.3"));
+        assertThat(podCache.getPod("zalenium-40000-abcde"), nullValue());
+        assertThat(podCache.getPodByIp("10.0.0.3"), nullValue());
+    }
+
+    @Test
+    public void podsGoneWhileNotWatchingAreForgottenOnResync() {
+        podCache.eventReceived(Watcher.Action.ADDED, pod("zalenium-40000-gone", CREATED_BY_ZALENIUM, "10.0.0.4"));
+
+        podCache.start();
+
+        assertThat(podCache.getPod("zalenium-40000-gone"), nullValue());
+        assertThat(podCache.getPodByIp("10.0.0.4"), nullValue());
+    }
+
+    @Test
+    public void cacheIsNotTrustedAfterStopping() {
+        podCache.start();
+        podCache.stop();
+
+        assertThat(podCache.isSynced(), is(false));
+    }
+
+    private static Pod pod(String name, Map<String, String> labels, String podIp) {
+        return new PodBuilder()
+                .withNewMetadata()
+                .withName(name)
+                .withNamespace("test")
+                .withLabels(labels)
+                .endMetadata()
+                .withNewStatus()
+                .withPodIP(podIp)
+                .endStatus()
+                .build();
+    }
+}
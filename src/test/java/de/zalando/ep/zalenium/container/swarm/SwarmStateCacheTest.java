@@ -0,0 +1,114 @@
+package de.zalando.ep.zalenium.container.swarm;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.messages.swarm.ContainerStatus;
+import com.spotify.docker.client.messages.swarm.NetworkAttachment;
+import com.spotify.docker.client.messages.swarm.Task;
+import com.spotify.docker.client.messages.swarm.TaskStatus;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SwarmStateCacheTest {
+
+    private DockerClient dockerClient;
+    private SwarmStateCache stateCache;
+
+    @Before
+    public void setUp() {
+        dockerClient = mock(DockerClient.class);
+        stateCache = new SwarmStateCache(dockerClient);
+    }
+
+    @After
+    public void tearDown() {
+        stateCache.stop();
+    }
+
+    @Test
+    public void tasksAreFoundByContainerIdAndServiceFromOneSnapshot() throws Exception {
+        Task task = task("service", "container", "10.0.0.5/24", TaskStatus.TASK_STATE_RUNNING);
+        when(dockerClient.listTasks()).thenReturn(Collections.singletonList(task));
+
+        assertSame(task, stateCache.getTaskByContainerId("container"));
+        assertSame(task, stateCache.getTaskByServiceId("service"));
+
+        verify(dockerClient, times(1)).listTasks();
+    }
+
+    @Test
+    public void reusedIpIsLookedUpInANewSnapshot() throws Exception {
+        Task stopped = task("old-service", "old-container", "10.0.0.5/24", TaskStatus.TASK_STATE_RUNNING);
+        Task registering = task("new-service", "new-container", "10.0.0.5/24", TaskStatus.TASK_STATE_RUNNING);
+        when(dockerClient.listTasks())
+                .thenReturn(Collections.singletonList(stopped))
+                .thenReturn(Collections.singletonList(registering));
+
+        assertSame(stopped, stateCache.getTaskByContainerId("old-container"));
+        assertSame(registering, stateCache.getTaskByIp("10.0.0.5"));
+    }
+
+    @Test
+    public void missingTaskRefreshesTheSnapshot() throws Exception {
+        Task task = task("service", "container", "10.0.0.5/24", TaskStatus.TASK_STATE_RUNNING);
+        when(dockerClient.listTasks())
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.singletonList(task));
+
+        assertNull(stateCache.getTaskByContainerId("container"));
+        assertSame(task, stateCache.getTaskByContainerId("container"));
+
+        verify(dockerClient, times(2)).listTasks();
+    }
+
+    @Test
+    public void tasksWithoutContainerAreNotIndexed() throws Exception {
+        Task task = task("service", null, "10.0.0.5/24", TaskStatus.TASK_STATE_RUNNING);
+        when(dockerClient.listTasks()).thenReturn(Collections.singletonList(task));
+
+        assertNull(stateCache.getTaskByServiceId("service"));
+        assertNull(stateCache.getTaskByIp("10.0.0.5"));
+    }
+
+    @Test
+    public void currentTaskOfARestartedServiceIsFound() throws Exception {
+        Task shutdown = task("service", "old-container", "10.0.0.5/24", TaskStatus.TASK_STATE_SHUTDOWN);
+        Task running = task("service", "new-container", "10.0.0.5/24", TaskStatus.TASK_STATE_RUNNING);
+        when(dockerClient.listTasks()).thenReturn(Arrays.asList(running, shutdown));
+
+        assertSame(running, stateCache.getTaskByServiceId("service"));
+        assertSame(running, stateCache.getTaskByIp("10.0.0.5"));
+        assertSame(shutdown, stateCache.getTaskByContainerId("old-container"));
+    }
+
+    private static Task task(String serviceId, String containerId, String address, String desiredState) {
+        ContainerStatus containerStatus = null;
+        if (containerId != null) {
+            containerStatus = mock(ContainerStatus.class);
+            when(containerStatus.containerId()).thenReturn(containerId);
+        }
+        TaskStatus taskStatus = mock(TaskStatus.class);
+        when(taskStatus.containerStatus()).thenReturn(containerStatus);
+        NetworkAttachment networkAttachment = mock(NetworkAttachment.class);
+        when(networkAttachment.addresses()).thenReturn(ImmutableList.of(address));
+
+        Task task = mock(Task.class);
+        when(task.serviceId()).thenReturn(serviceId);
+        when(task.status()).thenReturn(taskStatus);
+        when(task.desiredState()).thenReturn(desiredState);
+        when(task.networkAttachments()).thenReturn(ImmutableList.of(networkAttachment));
+        return task;
+    }
+}
@@ -0,0 +1,136 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Date;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+
+import de.zalando.ep.zalenium.util.CommonProxyUtilities;
+import de.zalando.ep.zalenium.util.TestUtils;
+
+public class DashboardInformationServletTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private DashboardInformationServlet dashboardInformationServlet;
+
+    @Before
+    public void initMocksAndService() throws IOException {
+        CommonProxyUtilities proxyUtilities = TestUtils.mockCommonProxyUtilitiesForDashboardTesting(temporaryFolder);
+        Dashboard.setCommonProxyUtilities(proxyUtilities);
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(TestUtils.getMockedServletOutputStream());
+        dashboardInformationServlet = new DashboardInformationServlet();
+    }
+
+    @After
+    public void restoreCommonProxyUtilities() {
+        Dashboard.restoreCommonProxyUtilities();
+    }
+
+    @Test
+    public void testsAddedAfterTheGivenDateAreSent() throws IOException {
+        TestHistory testHistory = Dashboard.getTestHistory();
+        testHistory.add(testInformation("first"));
+        testHistory.add(testInformation("second"));
+        long firstAdded = testHistory.getTests().get(0).getAddedToDashboardTime();
+        when(request.getParameter("lastDateAddedToDashboard")).thenReturn(String.valueOf(firstAdded));
+
+        dashboardInformationServlet.doGet(request, response);
+
+        String body = response.getOutputStream().toString();
+        Assert.assertFalse(body.contains(System.lineSeparator()));
+        JsonArray tests = new JsonParser().parse(body).getAsJsonArray();
+        Assert.assertEquals(1, tests.size());
+        Assert.assertEquals("second", tests.get(0).getAsJsonObject().get("testName").getAsString());
+    }
+
+    @Test
+    public void upToDateDashboardGetsNotModified() throws IOException {
+        Dashboard.getTestHistory().add(testInformation("first"));
+        dashboardInformationServlet.doGet(request, response);
+        ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), eTag.capture());
+
+        HttpServletResponse notModified = mock(HttpServletResponse.class);
+        when(request.getHeader("If-None-Match")).thenReturn(eTag.getValue());
+        dashboardInformationServlet.doGet(request, notModified);
+
+        verify(notModified).setStatus(304);
+        verify(notModified, never()).getOutputStream();
+    }
+
+    @Test
+    public void newTestChangesTheETag() throws IOException {
+        Dashboard.getTestHistory().add(testInformation("first"));
+        dashboardInformationServlet.doGet(request, response);
+        ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), eTag.capture());
+
+        Dashboard.getTestHistory().add(testInformation("second"));
+        HttpServletResponse modified = mock(HttpServletResponse.class);
+        when(modified.getOutputStream()).thenReturn(TestUtils.getMockedServletOutputStream());
+        when(request.getHeader("If-None-Match")).thenReturn(eTag.getValue());
+        dashboardInformationServlet.doGet(request, modified);
+
+        verify(modified).setStatus(200);
+    }
+
+    @Test
+    public void largeResponsesAreGzipped() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            Dashboard.getTestHistory().add(testInformation("test" + i));
+        }
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+
+        dashboardInformationServlet.doGet(request, response);
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+    }
+
+    @Test
+    public void unknownStatusIsRejected() throws IOException {
+        when(request.getParameter("testStatus")).thenReturn("flaky");
+
+        dashboardInformationServlet.doGet(request, response);
+
+        verify(response).sendError(eq(400), anyString());
+    }
+
+    private TestInformation testInformation(String testName) {
+        TestInformation testInformation = new TestInformation.TestInformationBuilder()
+                .withSeleniumSessionId(testName)
+                .withTestName(testName)
+                .withProxyName("Zalenium")
+                .withBrowser("chrome")
+                .withBrowserVersion("70")
+                .withPlatform("linux")
+                .withTestStatus(TestInformation.TestStatus.COMPLETED)
+                .build();
+        testInformation.setRetentionDate(new Date(System.currentTimeMillis() + 86400000L));
+        return testInformation;
+    }
+}
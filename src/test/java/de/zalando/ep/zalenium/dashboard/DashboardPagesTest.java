@@ -0,0 +1,130 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DashboardPagesTest {
+
+    private static final Pattern TEST_NAME = Pattern.compile("data-test-name=\"([^\"]*)\"");
+    private static final Map<String, String> VALUES = Collections.singletonMap("retentionPeriod", "3");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path templateFile;
+    private Path dashboardHtml;
+    private TestHistory history;
+    private DashboardPages pages;
+
+    @Before
+    public void setUp() throws IOException {
+        Path videos = temporaryFolder.newFolder(Dashboard.VIDEOS_FOLDER_NAME).toPath();
+        templateFile = temporaryFolder.getRoot().toPath().resolve("dashboard_template.html");
+        Files.write(templateFile, ("<p>{retentionPeriod} days {unknown}</p>\n"
+                + "<div id=\"tests\" class=\"list-group\"></div>\n").getBytes(UTF_8));
+        dashboardHtml = videos.resolve("dashboard.html");
+        history = new TestHistory(videos.resolve(TestHistory.FOLDER_NAME), Clock.systemUTC(), 2);
+        pages = new DashboardPages(videos.resolve(DashboardPages.FOLDER_NAME));
+    }
+
+    @Test
+    public void templateKeepsPlaceholdersWithoutValue() throws IOException {
+        Template template = Template.compileSingleLine("<a\n    href=\"{url}\">\n    {text} {other}\n</a>\n");
+        StringWriter out = new StringWriter();
+
+        template.render(out, name -> name.equals("url") ? "/videos" : name.equals("text") ? "Video" : null);
+
+        assertEquals("<a href=\"/videos\"> Video {other} </a>", out.toString());
+    }
+
+    @Test
+    public void dashboardWithoutTestsOnlyRendersTheTemplate() throws IOException {
+        pages.writeDashboard(dashboardHtml, templateFile, VALUES);
+
+        assertEquals("<p>3 days {unknown}</p>\n<div id=\"tests\" class=\"list-group\"></div>\n",
+                new String(Files.readAllBytes(dashboardHtml), UTF_8));
+    }
+
+    @Test
+    public void savedDashboardListsNewestTestsFirst() throws IOException {
+        add("a", "b", "c");
+        add("d", "e");
+
+        pages.writeDashboard(dashboardHtml, templateFile, VALUES, history);
+
+        String dashboard = new String(Files.readAllBytes(dashboardHtml), UTF_8);
+        assertEquals(Arrays.asList("e", "d", "c", "b", "a"), testNames(dashboard));
+        assertTrue(dashboard.startsWith("<p>3 days {unknown}</p>"));
+        assertTrue(dashboard.endsWith("</div>\n"));
+    }
+
+    @Test
+    public void pagesFollowTheSegmentsOfTheHistory() throws IOException {
+        add("a", "b", "c");
+        List<Long> segmentStarts = history.getSegmentStarts();
+        assertEquals(2, segmentStarts.size());
+
+        pages.retain(segmentStarts.subList(1, 2));
+        pages.writeDashboard(dashboardHtml, templateFile, VALUES, history);
+
+        // The page of the first segment is rendered again, as it is still in the history.
+        assertEquals(Arrays.asList("c", "b", "a"),
+                testNames(new String(Files.readAllBytes(dashboardHtml), UTF_8)));
+        pages.clear();
+        assertFalse(Files.list(pages.getFolder()).findAny().isPresent());
+    }
+
+    private void add(String... names) throws IOException {
+        List<TestInformation> tests = Arrays.stream(names).map(this::test).collect(Collectors.toList());
+        history.add(tests);
+        pages.add(tests, history);
+    }
+
+    private TestInformation test(String name) {
+        TestInformation testInformation = new TestInformation.TestInformationBuilder()
+                .withSeleniumSessionId(name)
+                .withTestName(name)
+                .withProxyName("Zalenium")
+                .withBrowser("chrome")
+                .withBrowserVersion("70")
+                .withPlatform("linux")
+                .withTestStatus(TestInformation.TestStatus.SUCCESS)
+                .build();
+        testInformation.buildSeleniumLogFileName();
+        testInformation.buildBrowserDriverLogFileName();
+        testInformation.setRetentionDate(new Date());
+        return testInformation;
+    }
+
+    private static List<String> testNames(String dashboard) {
+        Matcher matcher = TEST_NAME.matcher(dashboard);
+        List<String> names = new ArrayList<>();
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        return names;
+    }
+}
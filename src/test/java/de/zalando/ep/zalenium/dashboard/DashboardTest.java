@@ -4,7 +4,11 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import de.zalando.ep.zalenium.util.CommonProxyUtilities;
 import de.zalando.ep.zalenium.util.TestUtils;
@@ -77,7 +81,7 @@ public class DashboardTest {
     }
 
     @Test
-    public void nonNumberContentsIgnored() throws IOException {
+    public void nonNumberContentsIgnored() throws IOException, InterruptedException {
         File testCountFile = new File(temporaryFolder.getRoot().getAbsolutePath() + "/" + Dashboard.VIDEOS_FOLDER_NAME
                 + "/" + TEST_COUNT_FILE_NAME);
         JsonObject testQuantities = new JsonObject();
@@ -86,10 +90,120 @@ public class DashboardTest {
         FileUtils.writeStringToFile(testCountFile, testQuantities.toString(), UTF_8);
         Dashboard.setExecutedTests(0, 0);
         DashboardCollection.updateDashboard(ti);
+        Assert.assertTrue(DashboardCollection.awaitDashboardUpdates(10, TimeUnit.SECONDS));
         Assert.assertEquals(1, Dashboard.getExecutedTests());
         Assert.assertEquals(1, Dashboard.getExecutedTestsWithVideo());
     }
 
+    @Test
+    public void testsFinishingTogetherAreWrittenInOneBatch() throws InterruptedException {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        DashboardInterface localDashboard = DashboardCollection.localDashboard;
+        DashboardCollection.localDashboard = new DashboardInterface() {
+            @Override
+            public void resetDashboard() {
+            }
+
+            @Override
+            public void cleanupDashboard() {
+            }
+
+            @Override
+            public void updateDashboard(TestInformation testInformation) {
+                batchSizes.add(1);
+            }
+
+            @Override
+            public void updateDashboard(List<TestInformation> testsInformation) {
+                batchSizes.add(testsInformation.size());
+            }
+        };
+        try {
+            for (int i = 0; i < 5; i++) {
+                DashboardCollection.updateDashboard(ti);
+            }
+            Assert.assertTrue(DashboardCollection.awaitDashboardUpdates(10, TimeUnit.SECONDS));
+            Assert.assertEquals(5, batchSizes.stream().mapToInt(Integer::intValue).sum());
+            Assert.assertTrue(batchSizes.size() < 5);
+        } finally {
+            DashboardCollection.localDashboard = localDashboard;
+        }
+    }
+
+    @Test
+    public void queuedTestsDoNotChangeWithTheProxy() throws InterruptedException {
+        List<TestInformation> written = new CopyOnWriteArrayList<>();
+        DashboardInterface localDashboard = DashboardCollection.localDashboard;
+        DashboardCollection.localDashboard = new DashboardInterface() {
+            @Override
+            public void resetDashboard() {
+            }
+
+            @Override
+            public void cleanupDashboard() {
+            }
+
+            @Override
+            public void updateDashboard(TestInformation testInformation) {
+                written.add(testInformation);
+            }
+
+            @Override
+            public void updateDashboard(List<TestInformation> testsInformation) {
+                written.addAll(testsInformation);
+            }
+        };
+        try {
+            DashboardCollection.updateDashboard(ti);
+            // The proxy still holds the test, e.g. a cookie can change its status.
+            ti.setTestStatus(TestInformation.TestStatus.FAILED);
+            Assert.assertTrue(DashboardCollection.awaitDashboardUpdates(10, TimeUnit.SECONDS));
+
+            Assert.assertEquals(1, written.size());
+            Assert.assertNotSame(ti, written.get(0));
+            Assert.assertEquals(TestInformation.TestStatus.COMPLETED, written.get(0).getTestStatus());
+            Assert.assertEquals(ti.getFileName(), written.get(0).getFileName());
+        } finally {
+            ti.setTestStatus(TestInformation.TestStatus.COMPLETED);
+            DashboardCollection.localDashboard = localDashboard;
+        }
+    }
+
+    @Test
+    public void testInformationFileIsMovedToTheHistory() throws IOException {
+        File videosFolder = temporaryFolder.newFolder(Dashboard.VIDEOS_FOLDER_NAME);
+        File testInformationFile = new File(videosFolder, "testInformation.json");
+        ti.setAddedToDashboardTime(1000);
+        FileUtils.writeStringToFile(testInformationFile, new Gson().toJson(ti) + System.lineSeparator(), UTF_8);
+
+        Dashboard dashboard = new Dashboard();
+        dashboard.updateDashboard(ti);
+
+        Assert.assertFalse(testInformationFile.exists());
+        List<TestInformation> testInformation = Dashboard.loadTestInformation();
+        Assert.assertEquals(2, testInformation.size());
+        Assert.assertEquals(1000, testInformation.get(0).getAddedToDashboardTime());
+    }
+
+    @Test
+    public void resetKeepsTheArtifactsOfRunningNodes() throws IOException {
+        Dashboard dashboard = new Dashboard();
+        dashboard.updateDashboard(ti);
+        File videosFolder = new File(Dashboard.getLocalVideosPath());
+        File testVideo = new File(videosFolder, "test.mp4");
+        FileUtils.writeStringToFile(testVideo, "video", UTF_8);
+        // Folder of a running node, bind mounted into its container.
+        File nodeVideo = new File(videosFolder,
+                Dashboard.SHARED_ARTIFACTS_FOLDER_NAME + "/zalenium_40000/videos/test.mp4");
+        FileUtils.writeStringToFile(nodeVideo, "video", UTF_8);
+
+        dashboard.resetDashboard();
+
+        Assert.assertTrue(nodeVideo.exists());
+        Assert.assertFalse(testVideo.exists());
+        Assert.assertTrue(new File(videosFolder, "dashboard.html").exists());
+    }
+
     private void cleanTempVideosFolder() throws IOException {
         FileUtils.cleanDirectory(new File(temporaryFolder.getRoot().getAbsolutePath()));
     }
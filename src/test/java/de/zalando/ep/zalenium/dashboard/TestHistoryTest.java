@@ -0,0 +1,179 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestHistoryTest {
+
+    private static final long DAY = 86400000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private long now = 1000000;
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now);
+        }
+    };
+
+    @Test
+    public void testsAddedInTheSameMillisecondGetIncreasingTimes() throws IOException {
+        TestHistory history = new TestHistory(folder(), clock, 2);
+
+        history.add(test("first", "build", TestInformation.TestStatus.SUCCESS));
+        history.add(test("second", "build", TestInformation.TestStatus.SUCCESS));
+        history.add(test("third", "build", TestInformation.TestStatus.SUCCESS));
+
+        List<TestInformation> tests = history.getTests();
+        assertEquals(Arrays.asList(now, now + 1, now + 2),
+                tests.stream().map(TestInformation::getAddedToDashboardTime).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("third"), names(history.getTests(now + 1, null, null)));
+    }
+
+    @Test
+    public void addingTheSameTestAgainKeepsTheHistoryInOrder() throws IOException {
+        TestHistory history = new TestHistory(folder(), clock, 10);
+        TestInformation first = test("first", "build", TestInformation.TestStatus.SUCCESS);
+
+        history.add(first);
+        history.add(test("second", "build", TestInformation.TestStatus.SUCCESS));
+        first.setTestStatus(TestInformation.TestStatus.FAILED);
+        history.add(first);
+
+        assertEquals(Arrays.asList(now, now + 1, now + 2), history.getTests().stream()
+                .map(TestInformation::getAddedToDashboardTime).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("second", "first"), names(history.getTests(now, null, null)));
+        assertEquals(Arrays.asList("first", "second"), names(history.getTests(Long.MIN_VALUE, null,
+                TestInformation.TestStatus.SUCCESS)));
+    }
+
+    @Test
+    public void testsAreFilteredByTimeBuildAndStatus() throws IOException {
+        TestHistory history = new TestHistory(folder(), clock, 2);
+        history.add(test("a", "nightly", TestInformation.TestStatus.SUCCESS));
+        now += 10;
+        history.add(test("b", "release", TestInformation.TestStatus.FAILED));
+        now += 10;
+        history.add(test("c", "nightly", TestInformation.TestStatus.FAILED));
+        now += 10;
+        history.add(test("d", "nightly", TestInformation.TestStatus.SUCCESS));
+
+        long firstAdded = history.getTests().get(0).getAddedToDashboardTime();
+        assertEquals(Arrays.asList("c", "d"), names(history.getTests(firstAdded, "nightly", null)));
+        assertEquals(Arrays.asList("b", "c"), names(history.getTests(Long.MIN_VALUE, null,
+                TestInformation.TestStatus.FAILED)));
+        assertEquals(Arrays.asList("c"), names(history.getTests(Long.MIN_VALUE, "nightly",
+                TestInformation.TestStatus.FAILED)));
+        assertEquals(0, history.getTests(Long.MIN_VALUE, "unknown", null).size());
+    }
+
+    @Test
+    public void historyIsReadBackFromTheSegments() throws IOException {
+        Path folder = folder();
+        TestHistory history = new TestHistory(folder, clock, 2);
+        for (String name : Arrays.asList("a", "b", "c", "d", "e")) {
+            history.add(test(name, "build", TestInformation.TestStatus.COMPLETED));
+        }
+
+        File[] segments = folder.toFile().listFiles();
+        assertEquals(3, segments == null ? 0 : segments.length);
+        TestHistory reopened = new TestHistory(folder, clock, 2);
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), names(reopened.getTests()));
+
+        reopened.add(test("f", "build", TestInformation.TestStatus.COMPLETED));
+        assertTrue(reopened.getTests().get(5).getAddedToDashboardTime()
+                > reopened.getTests().get(4).getAddedToDashboardTime());
+    }
+
+    @Test
+    public void retentionDropsWholeSegments() throws IOException {
+        Path folder = folder();
+        TestHistory history = new TestHistory(folder, clock, 2);
+        history.add(test("a", "build", TestInformation.TestStatus.SUCCESS));
+        history.add(test("b", "build", TestInformation.TestStatus.SUCCESS));
+        now += DAY;
+        history.add(test("c", "build", TestInformation.TestStatus.SUCCESS));
+
+        // "a" and "b" expire with the first day, "c" is in its own segment and stays.
+        now += DAY - 1;
+        List<TestInformation> expired = history.removeExpired();
+
+        assertEquals(Arrays.asList("a", "b"), names(expired));
+        assertEquals(Arrays.asList("c"), names(history.getTests()));
+        assertEquals(Arrays.asList("c"), names(new TestHistory(folder, clock, 2).getTests()));
+    }
+
+    @Test
+    public void jsonAndVersionFollowTheHistory() throws IOException {
+        TestHistory history = new TestHistory(folder(), clock, 2);
+        assertEquals("[]", history.getTestsAsJson(Long.MIN_VALUE, null, null));
+        String emptyVersion = history.getVersion();
+
+        history.add(test("a", "build", TestInformation.TestStatus.SUCCESS));
+        history.add(test("b", "build", TestInformation.TestStatus.FAILED));
+        String version = history.getVersion();
+        assertNotEquals(emptyVersion, version);
+
+        JsonArray tests = new JsonParser().parse(history.getTestsAsJson(Long.MIN_VALUE, null,
+                TestInformation.TestStatus.FAILED)).getAsJsonArray();
+        assertEquals(1, tests.size());
+        assertEquals("b", tests.get(0).getAsJsonObject().get("testName").getAsString());
+        assertEquals(version, history.getVersion());
+
+        history.clear();
+        assertNotEquals(version, history.getVersion());
+    }
+
+    private Path folder() {
+        return temporaryFolder.getRoot().toPath().resolve(TestHistory.FOLDER_NAME);
+    }
+
+    private TestInformation test(String name, String build, TestInformation.TestStatus status) {
+        TestInformation testInformation = new TestInformation.TestInformationBuilder()
+                .withSeleniumSessionId(name)
+                .withTestName(name)
+                .withProxyName("Zalenium")
+                .withBrowser("chrome")
+                .withBrowserVersion("70")
+                .withPlatform("linux")
+                .withBuild(build)
+                .withTestStatus(status)
+                .build();
+        testInformation.setRetentionDate(new Date(now + DAY));
+        return testInformation;
+    }
+
+    private static List<String> names(List<TestInformation> tests) {
+        return tests.stream().map(TestInformation::getTestName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,177 @@
+package de.zalando.ep.zalenium.matcher;
+
+import de.zalando.ep.zalenium.proxy.DockeredSeleniumStarter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openqa.grid.internal.utils.DefaultCapabilityMatcher;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of matching one request against the docker-selenium nodes, with the compiled capability keys and with the
+ * previous implementation (kept below), which renamed the Zalenium capabilities inside both maps on every call.
+ *
+ * Run it from the IDE or with the test classpath through main().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DockerSeleniumCapabilityMatcherBenchmark {
+
+    private static final String[] RESOLUTIONS = { "1920x1080", "1280x1024", "1024x768", "1366x768", "1600x900" };
+    private static final String[] TIME_ZONES = { "Europe/Berlin", "UTC" };
+
+    private final DockerSeleniumCapabilityMatcher matcher = new DockerSeleniumCapabilityMatcher();
+    private final LegacyDockerSeleniumCapabilityMatcher legacyMatcher = new LegacyDockerSeleniumCapabilityMatcher();
+    private List<Map<String, Object>> nodes;
+    private List<Map<String, Object>> requests;
+    private int nextNode;
+    private int nextRequest;
+
+    @Setup
+    public void setUp() {
+        nodes = new ArrayList<>();
+        requests = new ArrayList<>();
+        for (String browser : new String[] { BrowserType.CHROME, BrowserType.FIREFOX }) {
+            for (String resolution : RESOLUTIONS) {
+                for (String timeZone : TIME_ZONES) {
+                    Map<String, Object> node = new HashMap<>();
+                    node.put(CapabilityType.BROWSER_NAME, browser);
+                    node.put(CapabilityType.VERSION, "70.0");
+                    node.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+                    node.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, resolution);
+                    node.put(ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX, timeZone);
+                    nodes.add(node);
+
+                    Map<String, Object> request = new HashMap<>();
+                    request.put(CapabilityType.BROWSER_NAME, browser);
+                    request.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+                    request.put(ZaleniumCapabilityType.TEST_NAME_NO_PREFIX, "benchmark");
+                    request.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, resolution);
+                    request.put(ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX, timeZone);
+                    requests.add(request);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int compiledKeys() {
+        return matchNextRequest(matcher);
+    }
+
+    @Benchmark
+    public int legacy() {
+        return matchNextRequest(legacyMatcher);
+    }
+
+    private int matchNextRequest(DefaultCapabilityMatcher capabilityMatcher) {
+        nextRequest = (nextRequest + 1) % requests.size();
+        Map<String, Object> request = requests.get(nextRequest);
+        int matches = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            nextNode = (nextNode + 1) % nodes.size();
+            if (capabilityMatcher.matches(nodes.get(nextNode), request)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DockerSeleniumCapabilityMatcherBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    // The matcher as it was before the capability keys, only used as a baseline.
+    private static class LegacyDockerSeleniumCapabilityMatcher extends DefaultCapabilityMatcher {
+        private static final List<String> ZALENIUM_CUSTOM_CAPABILITIES_NO_PREFIX = Arrays.asList(
+                ZaleniumCapabilityType.TEST_NAME_NO_PREFIX,
+                ZaleniumCapabilityType.BUILD_NAME_NO_PREFIX,
+                ZaleniumCapabilityType.TEST_FILE_NAME_TEMPLATE_NO_PREFIX,
+                ZaleniumCapabilityType.IDLE_TIMEOUT_NO_PREFIX,
+                ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX,
+                ZaleniumCapabilityType.RESOLUTION_NO_PREFIX,
+                ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH_NO_PREFIX,
+                ZaleniumCapabilityType.RECORD_VIDEO_NO_PREFIX,
+                ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX);
+
+        @Override
+        public boolean matches(Map<String, Object> nodeCapability, Map<String, Object> requestedCapability) {
+            if (!requestedCapability.containsKey(CapabilityType.BROWSER_NAME)) {
+                return false;
+            }
+            if (super.matches(nodeCapability, requestedCapability)) {
+                prefixZaleniumCustomCapabilities(nodeCapability);
+                prefixZaleniumCustomCapabilities(requestedCapability);
+                return isScreenResolutionMatching(nodeCapability, requestedCapability)
+                        && isTimeZoneMatching(nodeCapability, requestedCapability);
+            }
+            return false;
+        }
+
+        private void prefixZaleniumCustomCapabilities(Map<String, Object> capabilities) {
+            for (String zaleniumCustomCapability : ZALENIUM_CUSTOM_CAPABILITIES_NO_PREFIX) {
+                if (capabilities.containsKey(zaleniumCustomCapability)) {
+                    String prefixedCapability = ZaleniumCapabilityType.CUSTOM_CAPABILITY_PREFIX.concat(zaleniumCustomCapability);
+                    capabilities.put(prefixedCapability, capabilities.get(zaleniumCustomCapability));
+                    capabilities.remove(zaleniumCustomCapability);
+                }
+            }
+        }
+
+        private boolean isScreenResolutionMatching(Map<String, Object> nodeCapability, Map<String, Object> requestedCapability) {
+            boolean screenResolutionCapabilityMatches = true;
+            boolean screenSizeCapabilityIsRequested = false;
+            List<String> screenResolutionNames = Arrays.asList(ZaleniumCapabilityType.SCREEN_RESOLUTION,
+                    ZaleniumCapabilityType.RESOLUTION, ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH);
+            for (String screenResolutionName : screenResolutionNames) {
+                if (requestedCapability.containsKey(screenResolutionName)) {
+                    screenSizeCapabilityIsRequested = true;
+                    screenResolutionCapabilityMatches = nodeCapability.containsKey(screenResolutionName) &&
+                            requestedCapability.get(screenResolutionName).equals(nodeCapability.get(screenResolutionName));
+                }
+            }
+            String defaultScreenResolution = String.format("%sx%s",
+                    DockeredSeleniumStarter.getConfiguredScreenSize().getWidth(),
+                    DockeredSeleniumStarter.getConfiguredScreenSize().getHeight());
+            String nodeScreenResolution = nodeCapability.get(ZaleniumCapabilityType.SCREEN_RESOLUTION).toString();
+            if (!screenSizeCapabilityIsRequested && !defaultScreenResolution.equalsIgnoreCase(nodeScreenResolution)) {
+                screenResolutionCapabilityMatches = false;
+            }
+            return screenResolutionCapabilityMatches;
+        }
+
+        private boolean isTimeZoneMatching(Map<String, Object> nodeCapability, Map<String, Object> requestedCapability) {
+            String defaultTimeZone = DockeredSeleniumStarter.getConfiguredTimeZone().getID();
+            String nodeTimeZone = nodeCapability.get(ZaleniumCapabilityType.TIME_ZONE).toString();
+            if (requestedCapability.containsKey(ZaleniumCapabilityType.TIME_ZONE)) {
+                return nodeCapability.containsKey(ZaleniumCapabilityType.TIME_ZONE) &&
+                        requestedCapability.get(ZaleniumCapabilityType.TIME_ZONE).equals(nodeCapability.get(ZaleniumCapabilityType.TIME_ZONE));
+            }
+            return defaultTimeZone.equalsIgnoreCase(nodeTimeZone);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.zalando.ep.zalenium.matcher;
+
+import de.zalando.ep.zalenium.proxy.DockeredSeleniumStarter;
+import org.junit.Test;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DockerSeleniumCapabilityMatcherTest {
+
+    private final DockerSeleniumCapabilityMatcher matcher = new DockerSeleniumCapabilityMatcher();
+
+    @Test
+    public void capabilitiesAreNotModifiedWhileMatching() {
+        Map<String, Object> node = nodeCapabilities("1280x1024");
+        Map<String, Object> requested = requestedCapabilities();
+        requested.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, "1280x1024");
+        requested.put(ZaleniumCapabilityType.TEST_NAME_NO_PREFIX, "myTest");
+        Map<String, Object> nodeCopy = new HashMap<>(node);
+        Map<String, Object> requestedCopy = new HashMap<>(requested);
+
+        assertTrue(matcher.matches(node, requested));
+        assertEquals(nodeCopy, node);
+        assertEquals(requestedCopy, requested);
+    }
+
+    @Test
+    public void prefixedAndNotPrefixedCapabilitiesAreEquivalent() {
+        Map<String, Object> node = nodeCapabilities("1280x1024");
+        Map<String, Object> notPrefixed = requestedCapabilities();
+        notPrefixed.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, "1280x1024");
+        Map<String, Object> prefixed = requestedCapabilities();
+        prefixed.put(ZaleniumCapabilityType.SCREEN_RESOLUTION, "1280x1024");
+
+        assertTrue(matcher.matches(node, notPrefixed));
+        assertTrue(matcher.matches(node, prefixed));
+        assertSame(DockerSeleniumCapabilityKey.of(notPrefixed), DockerSeleniumCapabilityKey.of(prefixed));
+    }
+
+    @Test
+    public void nodeWithCustomScreenResolutionIsOnlyUsedWhenRequested() {
+        Map<String, Object> node = nodeCapabilities("1280x1024");
+
+        assertFalse(matcher.matches(node, requestedCapabilities()));
+    }
+
+    private static Map<String, Object> nodeCapabilities(String screenResolution) {
+        Map<String, Object> node = new HashMap<>();
+        node.put(CapabilityType.BROWSER_NAME, BrowserType.CHROME);
+        node.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+        node.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, screenResolution);
+        node.put(ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX, DockeredSeleniumStarter.getConfiguredTimeZone().getID());
+        return node;
+    }
+
+    private static Map<String, Object> requestedCapabilities() {
+        Map<String, Object> requested = new HashMap<>();
+        requested.put(CapabilityType.BROWSER_NAME, BrowserType.CHROME);
+        requested.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+        return requested;
+    }
+}
@@ -0,0 +1,156 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArtifactTransferTest {
+
+    private Path folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("artifacts");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path file : Files.list(folder).toArray(Path[]::new)) {
+            Files.delete(file);
+        }
+        Files.delete(folder);
+    }
+
+    @Test
+    public void fileIsCopiedThroughATemporaryFile() throws IOException {
+        // Larger than the buffer, so it is copied in several chunks.
+        byte[] video = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(video);
+        Path target = folder.resolve("video.mp4");
+
+        long copied = ArtifactTransfer.copy(new ByteArrayInputStream(video), target);
+
+        assertEquals(video.length, copied);
+        assertArrayEquals(video, Files.readAllBytes(target));
+        assertFalse(Files.exists(folder.resolve("video.mp4.part")));
+    }
+
+    @Test
+    public void existingFileIsReplaced() throws IOException {
+        Path target = folder.resolve("selenium.log");
+        Files.write(target, "old".getBytes(StandardCharsets.UTF_8));
+
+        ArtifactTransfer.copy(new ByteArrayInputStream("new".getBytes(StandardCharsets.UTF_8)), target);
+
+        assertEquals("new", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void closedPipeEndsTheCopy() throws IOException {
+        Path target = folder.resolve("video.mp4");
+
+        ArtifactTransfer.copy(new FailingInputStream("video", "Pipe closed"), target);
+
+        assertEquals("video", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void failedCopyLeavesNoFile() {
+        Path target = folder.resolve("video.mp4");
+        try {
+            ArtifactTransfer.copy(new FailingInputStream("video", "Connection reset"), target);
+            fail("The copy should have failed");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Connection reset"));
+        }
+
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(folder.resolve("video.mp4.part")));
+    }
+
+    @Test
+    public void copiesRunningAtTheSameTimeDoNotShareBuffers() throws Exception {
+        // More copies than pooled buffers, all of them holding their buffer until every copy has started.
+        int copies = 8;
+        CountDownLatch started = new CountDownLatch(copies);
+        ExecutorService executor = Executors.newFixedThreadPool(copies);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < copies; i++) {
+                String content = "video " + i;
+                Path target = folder.resolve("video" + i + ".mp4");
+                InputStream input = new FailingInputStream(content, i % 2 == 0 ? "Pipe closed" : null) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        started.countDown();
+                        try {
+                            started.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return super.read(b, off, len);
+                    }
+                };
+                results.add(executor.submit(() -> ArtifactTransfer.copy(input, target)));
+            }
+            for (int i = 0; i < copies; i++) {
+                assertEquals(("video " + i).length(), (long) results.get(i).get(10, TimeUnit.SECONDS));
+                assertEquals("video " + i, new String(Files.readAllBytes(folder.resolve("video" + i + ".mp4")),
+                        StandardCharsets.UTF_8));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Returns the given content and then fails instead of reaching the end of the stream, unless failure is null.
+    private static class FailingInputStream extends InputStream {
+
+        private final InputStream content;
+        private final String failure;
+
+        FailingInputStream(String content, String failure) {
+            this.content = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+            this.failure = failure;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = content.read();
+            if (read < 0 && failure != null) {
+                throw new IOException(failure);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = content.read(b, off, len);
+            if (read < 0 && failure != null) {
+                throw new IOException(failure);
+            }
+            return read;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -27,7 +28,7 @@ public class AutoStartProxySetTest {
         // Given a proxy set that will not autostart containers.
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "id", "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(containerCreationStatus);
 
@@ -43,12 +44,31 @@ public class AutoStartProxySetTest {
         Mockito.verify(starter, Mockito.timeout(1000)).startDockerSeleniumContainer(Collections.emptyMap());
     }
 
+    @Test
+    public void warmPoolContainersAreStartedInTheBackground() {
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
+
+        DockeredSeleniumStarter starter = starter();
+        Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(
+                new ContainerCreationStatus(true, "name1", "id1", "40000"),
+                new ContainerCreationStatus(true, "name2", "id2", "40001"));
+
+        // Given a proxy set without minimum containers and a warm pool of 2 containers.
+        Map<WarmPoolProfile, Integer> warmPools = WarmPoolProfile.parse("1280x1024/UTC:2");
+        new AutoStartProxySet(false, 0, 5, 1000, false, starter, clock, 30, 30000, warmPools);
+
+        // Then the containers of the warm pool are started, and no more than that.
+        Map<String, Object> profileCapabilities = warmPools.keySet().iterator().next().toCapabilities();
+        Mockito.verify(starter, Mockito.timeout(5000).times(2)).startDockerSeleniumContainer(profileCapabilities);
+        Mockito.verify(starter, Mockito.after(500).times(2)).startDockerSeleniumContainer(Mockito.any());
+    }
+
     @Test
     public void amountOfCreatedContainersIsTheConfiguredOne() {
         // Given a proxy set that will not autostart containers.
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "id", "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(containerCreationStatus);
 
@@ -63,7 +83,7 @@ public class AutoStartProxySetTest {
         // Given a proxy set that will not autostart containers.
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "id", "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(containerCreationStatus);
 
@@ -92,7 +112,7 @@ public class AutoStartProxySetTest {
         // Given a proxy set that will not autostart containers.
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "id", "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(containerCreationStatus);
 
@@ -119,7 +139,7 @@ public class AutoStartProxySetTest {
         // Given a proxy set that will not autostart containers.
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "id", "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenCallRealMethod();
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any(), Mockito.any())).thenReturn(containerCreationStatus);
@@ -147,7 +167,7 @@ public class AutoStartProxySetTest {
         // Given a proxy set that will not autostart containers.
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "id", "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenCallRealMethod();
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any(), Mockito.any())).thenReturn(containerCreationStatus);
@@ -174,7 +194,7 @@ public class AutoStartProxySetTest {
     public void containersAreStartedWhenProxiesAreBusy() {
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "id", "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(containerCreationStatus);
 
@@ -201,7 +221,7 @@ public class AutoStartProxySetTest {
 
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
 
         Mockito.when(starter.startDockerSeleniumContainer(session1))
                 .thenReturn(new ContainerCreationStatus(true, "name", "id_1", "40000"));
@@ -227,7 +247,7 @@ public class AutoStartProxySetTest {
         // Given a proxy set that will not autostart containers.
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "id", "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(containerCreationStatus);
 
@@ -254,7 +274,7 @@ public class AutoStartProxySetTest {
 
         DockerSeleniumRemoteProxy proxy = proxy("container_id", false);
 
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "container_id",
                 "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(containerCreationStatus);
@@ -284,7 +304,7 @@ public class AutoStartProxySetTest {
     public void containersAreStoppedWhenProxiesAreRemoved() {
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
         DockerSeleniumRemoteProxy proxy = proxy("container_id", false);
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "container_id",
                 "40000");
         Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(containerCreationStatus);
@@ -303,7 +323,7 @@ public class AutoStartProxySetTest {
     @Test
     public void orphanedContainersAreMarkedDown() {
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
-        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        DockeredSeleniumStarter starter = starter();
         AutoStartProxySet autoStartProxySet = new AutoStartProxySet(false, 0, 5, 1000, false, starter, clock, 30, 30000);
 
         DockerSeleniumRemoteProxy proxy = proxy("container_id", false);
@@ -313,6 +333,59 @@ public class AutoStartProxySetTest {
         Mockito.verify(proxy).markDown();
     }
 
+    @Test
+    public void containersRegisteringWhileTheirCreationIsInProgressAreTracked() throws Exception {
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
+        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        CompletableFuture<ContainerCreationStatus> creation = new CompletableFuture<>();
+        Mockito.when(starter.startDockerSeleniumContainerAsync(Mockito.any(), Mockito.any())).thenReturn(creation);
+        AutoStartProxySet autoStartProxySet = new AutoStartProxySet(false, 0, 5, 1000, false, starter, clock, 30, 30000);
+
+        autoStartProxySet.getNewSession(Collections.emptyMap());
+        Mockito.verify(starter, Mockito.timeout(1000)).startDockerSeleniumContainerAsync(Mockito.eq(Collections.emptyMap()), Mockito.any());
+        // The placeholder counts as a started container while the backend creates it.
+        Assert.assertEquals(autoStartProxySet.getStartedContainers().size(), 1);
+
+        DockerSeleniumRemoteProxy proxy = proxy("container_id", false);
+        Thread registration = new Thread(() -> autoStartProxySet.add(proxy));
+        registration.start();
+        Thread.sleep(200);
+        creation.complete(new ContainerCreationStatus(true, "name", "container_id", "40000"));
+        registration.join(5000);
+
+        Mockito.verify(proxy, Mockito.never()).markDown();
+        Assert.assertTrue(autoStartProxySet.contains(proxy));
+        Assert.assertEquals(autoStartProxySet.getStartedContainers().size(), 1);
+    }
+
+    @Test
+    public void containersThatWereNotCreatedAreNotTracked() {
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
+        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        CompletableFuture<ContainerCreationStatus> creation = new CompletableFuture<>();
+        Mockito.when(starter.startDockerSeleniumContainerAsync(Mockito.any(), Mockito.any())).thenReturn(creation);
+        AutoStartProxySet autoStartProxySet = new AutoStartProxySet(false, 0, 5, 1000, false, starter, clock, 30, 30000);
+
+        autoStartProxySet.getNewSession(Collections.emptyMap());
+        Mockito.verify(starter, Mockito.timeout(1000)).startDockerSeleniumContainerAsync(Mockito.eq(Collections.emptyMap()), Mockito.any());
+        creation.complete(new ContainerCreationStatus(false));
+
+        // Nothing would ever remove it, so it would count against the maximum of containers forever.
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!autoStartProxySet.getStartedContainers().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        Assert.assertEquals(0, autoStartProxySet.getStartedContainers().size());
+    }
+
+    // Mocked starter that creates the containers right away with startDockerSeleniumContainer.
+    private static DockeredSeleniumStarter starter() {
+        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        Mockito.when(starter.startDockerSeleniumContainerAsync(Mockito.any(), Mockito.any())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(starter.startDockerSeleniumContainer(invocation.getArgument(0))));
+        return starter;
+    }
+
     private static DockerSeleniumRemoteProxy proxy(String containerId, boolean isBusy) {
         DockerSeleniumRemoteProxy remoteProxy = Mockito.mock(DockerSeleniumRemoteProxy.class);
         Mockito.when(remoteProxy.getContainerId()).thenReturn(containerId);
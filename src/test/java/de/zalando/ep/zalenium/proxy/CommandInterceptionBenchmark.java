@@ -0,0 +1,131 @@
+package de.zalando.ep.zalenium.proxy;
+
+import de.zalando.ep.zalenium.util.DockerContainerMock;
+import de.zalando.ep.zalenium.util.SimpleRegistry;
+import de.zalando.ep.zalenium.util.TestUtils;
+import de.zalando.ep.zalenium.util.ZaleniumCookie;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openqa.grid.common.RegistrationRequest;
+import org.openqa.grid.internal.TestSession;
+import org.openqa.grid.web.servlet.handler.RequestType;
+import org.openqa.grid.web.servlet.handler.WebDriverRequest;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the command interception of a docker-selenium proxy: beforeCommand and afterCommand for a regular
+ * command and for a request setting an application cookie, which is not a Zalenium one. The requests are mocks, so
+ * their calls are part of the measured time, compare the runs with {@code -prof gc} to see the allocations per
+ * command.
+ *
+ * The cookie benchmarks compare the streaming scan of the body with the tree parse that was done for every cookie.
+ *
+ * Run it from the IDE or with the test classpath through main().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandInterceptionBenchmark {
+
+    private static final String APPLICATION_COOKIE = "{\"cookie\": {\"name\": \"JSESSIONID\", \"path\": \"/\", "
+            + "\"value\": \"6F1A9B3C2D4E5F60718293A4B5C6D7E8\", \"domain\": \"shop.example.com\", "
+            + "\"secure\": true, \"httpOnly\": true}}";
+    private static final String ZALENIUM_COOKIE = "{\"cookie\": {\"name\": \"zaleniumTestName\", "
+            + "\"value\": \"Checkout with a gift card\"}}";
+
+    private DockerSeleniumRemoteProxy proxy;
+    private TestSession session;
+    private WebDriverRequest command;
+    private WebDriverRequest cookieCommand;
+    private HttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RegistrationRequest request = TestUtils.getRegistrationRequestForTesting(40000,
+                DockerSeleniumRemoteProxy.class.getCanonicalName());
+        request.getConfiguration().capabilities.clear();
+        request.getConfiguration().capabilities.addAll(TestUtils.getDockerSeleniumCapabilitiesForTesting());
+        proxy = DockerSeleniumRemoteProxy.getNewInstance(request, new SimpleRegistry());
+        proxy.setContainerClient(DockerContainerMock.getMockedDockerContainerClient());
+
+        Map<String, Object> requestedCapability = new HashMap<>();
+        requestedCapability.put(CapabilityType.BROWSER_NAME, BrowserType.CHROME);
+        requestedCapability.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+        session = proxy.getNewSession(requestedCapability);
+
+        command = request("GET", "/session/1234/element/5678/text", "");
+        cookieCommand = request("POST", "/session/1234/cookie", APPLICATION_COOKIE);
+        response = Mockito.mock(HttpServletResponse.class);
+    }
+
+    @Benchmark
+    public TestSession command() {
+        proxy.beforeCommand(session, command, response);
+        proxy.afterCommand(session, command, response);
+        return session;
+    }
+
+    @Benchmark
+    public TestSession applicationCookieCommand() {
+        proxy.beforeCommand(session, cookieCommand, response);
+        proxy.afterCommand(session, cookieCommand, response);
+        return session;
+    }
+
+    @Benchmark
+    public ZaleniumCookie applicationCookieScan() throws IOException {
+        return ZaleniumCookie.fromRequestBody(APPLICATION_COOKIE);
+    }
+
+    @Benchmark
+    public ZaleniumCookie zaleniumCookieScan() throws IOException {
+        return ZaleniumCookie.fromRequestBody(ZALENIUM_COOKIE);
+    }
+
+    @Benchmark
+    public String zaleniumCookieTreeParse() {
+        JsonObject cookie = new JsonParser().parse(ZALENIUM_COOKIE).getAsJsonObject().getAsJsonObject("cookie");
+        return cookie.get("name").getAsString();
+    }
+
+    private static WebDriverRequest request(String method, String path, String body) {
+        WebDriverRequest request = Mockito.mock(WebDriverRequest.class);
+        Mockito.when(request.getMethod()).thenReturn(method);
+        Mockito.when(request.getPathInfo()).thenReturn(path);
+        Mockito.when(request.getRequestType()).thenReturn(RequestType.REGULAR);
+        Mockito.when(request.getBody()).thenReturn(body);
+        return request;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CommandInterceptionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,148 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.prometheus.client.CollectorRegistry;
+
+import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContainerProvisionerTest {
+
+    @Test
+    public void sameRequestIsOnlyProvisionedOnceWhileWaiting() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Map<String, Object>> started = new CopyOnWriteArrayList<>();
+        ContainerProvisioner provisioner = new ContainerProvisioner(1, request -> {
+            await(release);
+            started.add(request);
+        });
+        Map<String, Object> blocking = new HashMap<>();
+        Map<String, Object> request = new HashMap<>();
+
+        provisioner.provision(blocking);
+        waitUntil(() -> provisioner.getQueueSize() == 0);
+        for (int i = 0; i < 10; i++) {
+            provisioner.provision(request);
+        }
+        assertEquals(1, provisioner.getQueueSize());
+
+        release.countDown();
+        waitUntil(() -> started.size() == 2);
+        provisioner.stop();
+    }
+
+    @Test
+    public void cancelledRequestsAreNotProvisioned() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Map<String, Object>> started = new CopyOnWriteArrayList<>();
+        ContainerProvisioner provisioner = new ContainerProvisioner(1, request -> {
+            await(release);
+            started.add(request);
+        });
+        Map<String, Object> blocking = new HashMap<>();
+        Map<String, Object> cancelled = new HashMap<>();
+        Map<String, Object> waiting = new HashMap<>();
+
+        provisioner.provision(blocking);
+        waitUntil(() -> provisioner.getQueueSize() == 0);
+        provisioner.provision(cancelled);
+        provisioner.provision(waiting);
+        provisioner.cancel(cancelled);
+        release.countDown();
+
+        waitUntil(() -> started.size() == 2);
+        assertTrue(started.stream().anyMatch(request -> request == waiting));
+        assertTrue(started.stream().noneMatch(request -> request == cancelled));
+        provisioner.stop();
+    }
+
+    @Test
+    public void concurrentStartsAreLimited() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        ContainerProvisioner provisioner = new ContainerProvisioner(2, request -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(20);
+            running.decrementAndGet();
+            done.incrementAndGet();
+        });
+
+        for (int i = 0; i < 20; i++) {
+            Map<String, Object> request = new HashMap<>();
+            // Requests of several profiles take turns in the queue
+            request.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, i % 2 == 0 ? "1280x1024" : "1920x1080");
+            provisioner.provision(request);
+        }
+
+        waitUntil(() -> done.get() == 20);
+        assertEquals(2, maxRunning.get());
+        provisioner.stop();
+    }
+
+    @Test
+    public void queueSizeMetricDropsRequestsNotStartedOnStop() throws Exception {
+        double queueSize = getQueueSizeMetric();
+        CountDownLatch release = new CountDownLatch(1);
+        ContainerProvisioner provisioner = new ContainerProvisioner(1, request -> await(release));
+        provisioner.provision(new HashMap<>());
+        waitUntil(() -> provisioner.getQueueSize() == 0);
+        for (int i = 0; i < 5; i++) {
+            Map<String, Object> request = new HashMap<>();
+            request.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, i + "x1024");
+            provisioner.provision(request);
+        }
+        assertEquals(queueSize + 5, getQueueSizeMetric(), 0);
+
+        provisioner.stop();
+        provisioner.provision(new HashMap<>());
+        release.countDown();
+
+        assertEquals(queueSize, getQueueSizeMetric(), 0);
+    }
+
+    private static double getQueueSizeMetric() {
+        return CollectorRegistry.defaultRegistry.getSampleValue("zalenium_provisioning_queue_size");
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    private static void waitUntil(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (!condition.isMet()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met in time");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package de.zalando.ep.zalenium.proxy;
+
+import de.zalando.ep.zalenium.container.ContainerClient;
+import de.zalando.ep.zalenium.container.ContainerCreationStatus;
+import de.zalando.ep.zalenium.util.DockerContainerMock;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * Time to create a burst of 100 containers with the mocked docker client, where each creation waits for a simulated
+ * daemon round trip. With 1 concurrent creation it matches the former synchronized start, the throughput in
+ * containers per minute is 100 * 60000 / the reported milliseconds.
+ *
+ * Run it from the IDE or with the test classpath through main().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContainerProvisioningBenchmark {
+
+    private static final int BURST = 100;
+    private static final long CREATE_LATENCY_MILLIS = 50;
+
+    @Param({ "1", "4", "10" })
+    public int concurrentCreations;
+
+    private DockeredSeleniumStarter starter;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ContainerClient client = Mockito.spy(DockerContainerMock.getMockedDockerContainerClient());
+        Mockito.doAnswer(invocation -> {
+            Thread.sleep(CREATE_LATENCY_MILLIS);
+            return invocation.callRealMethod();
+        }).when(client).createContainer(anyString(), anyString(), anyMap(), anyString());
+        DockeredSeleniumStarter.setContainerClient(client);
+        starter = new DockeredSeleniumStarter();
+        executor = Executors.newFixedThreadPool(concurrentCreations);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        DockeredSeleniumStarter.restoreContainerClient();
+    }
+
+    @Benchmark
+    public List<ContainerCreationStatus> burst() {
+        List<CompletableFuture<ContainerCreationStatus>> creations = new ArrayList<>();
+        for (int i = 0; i < BURST; i++) {
+            creations.add(starter.startDockerSeleniumContainerAsync(Collections.emptyMap(), executor));
+        }
+        List<ContainerCreationStatus> created = new ArrayList<>();
+        creations.forEach(creation -> created.add(creation.join()));
+        return created;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContainerProvisioningBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -2,6 +2,11 @@ package de.zalando.ep.zalenium.proxy;
 
 import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -468,11 +473,9 @@ public class DockerSeleniumRemoteProxyTest {
             spyProxy.afterSession(newSession);
 
             Assert.assertFalse(spyProxy.isBusy());
-            verify(spyProxy, timeout(40000))
-                    .videoRecording(DockerSeleniumRemoteProxy.DockerSeleniumContainerAction.STOP_RECORDING);
-            verify(spyProxy, timeout(40000))
-                    .processContainerAction(DockerSeleniumRemoteProxy.DockerSeleniumContainerAction.STOP_RECORDING,
-                            containerId);
+            verify(spyProxy, timeout(40000)).processContainerActions(argThat(actions -> actions
+                    .containsKey(DockerSeleniumRemoteProxy.DockerSeleniumContainerAction.STOP_RECORDING)),
+                    eq(containerId));
             verify(spyProxy, timeout(40000)).copyVideos(containerId);
         } finally {
             ObjectName objectName = new ObjectName("org.seleniumhq.grid:type=RemoteProxy,node=\"http://localhost:30000\"");
@@ -533,9 +536,10 @@ public class DockerSeleniumRemoteProxyTest {
             spyProxy.afterSession(newSession);
 
             Assert.assertFalse(spyProxy.isBusy());
-            // Now we assert that videoRecording was invoked but processContainerAction not, neither copyVideos
-            verify(spyProxy, timeout(40000))
-                    .videoRecording(DockerSeleniumRemoteProxy.DockerSeleniumContainerAction.STOP_RECORDING);
+            // Now we assert that the cleanup did not stop the recording, neither copyVideos
+            verify(spyProxy, timeout(40000)).processContainerActions(argThat(actions -> !actions
+                    .containsKey(DockerSeleniumRemoteProxy.DockerSeleniumContainerAction.STOP_RECORDING)),
+                    anyString());
             verify(spyProxy, never())
                     .processContainerAction(DockerSeleniumRemoteProxy.DockerSeleniumContainerAction.STOP_RECORDING, "");
             verify(spyProxy, never()).copyVideos("");
@@ -547,6 +551,51 @@ public class DockerSeleniumRemoteProxyTest {
         }
     }
 
+    @Test
+    public void nodeIsNotReusedWhenTheCleanupTimesOut() throws MalformedObjectNameException, IOException {
+
+        try {
+            // Two sessions per node, so the node waits for its cleanup to take the next one
+            Environment environment = mock(Environment.class);
+            when(environment.getIntEnvVariable(eq(DockerSeleniumRemoteProxy.ZALENIUM_MAX_TEST_SESSIONS), anyInt()))
+                    .thenReturn(2);
+            when(environment.getIntEnvVariable(eq("ZALENIUM_PROXY_CLEANUP_TIMEOUT"), anyInt())).thenReturn(1);
+
+            CommonProxyUtilities commonProxyUtilities = TestUtils.mockCommonProxyUtilitiesForDashboardTesting(temporaryFolder);
+            TestUtils.ensureRequiredInputFilesExist(temporaryFolder);
+            Dashboard.setCommonProxyUtilities(commonProxyUtilities);
+            DockerSeleniumRemoteProxy spyProxy = spy(proxy);
+            DockerSeleniumRemoteProxy.setEnv(environment);
+            DockerSeleniumRemoteProxy.readEnvVars();
+
+            // The reset of the container takes longer than the cleanup timeout
+            doAnswer(invocation -> {
+                Thread.sleep(3000);
+                return null;
+            }).when(spyProxy).processContainerAction(
+                    eq(DockerSeleniumRemoteProxy.DockerSeleniumContainerAction.CLEANUP_CONTAINER), anyString());
+
+            TestSession newSession = spyProxy.getNewSession(getCapabilitySupportedByDockerSelenium());
+            newSession.setExternalKey(new ExternalSessionKey("DockerSeleniumRemoteProxy Test"));
+            Assert.assertNotNull(newSession);
+
+            newSession.getSlot().doFinishRelease();
+            spyProxy.afterSession(newSession);
+
+            // The node does not take a session while its container can still be reset, and it is removed instead
+            Assert.assertTrue(spyProxy.isTestSessionLimitReached());
+            Assert.assertNull(spyProxy.getNewSession(getCapabilitySupportedByDockerSelenium()));
+            verify(spyProxy, timeout(10000))
+                    .shutdownNode(DockerSeleniumRemoteProxy.ShutdownType.CLEANUP_TIMEOUT);
+        } finally {
+            DockerSeleniumRemoteProxy.restoreEnvironment();
+            DockerSeleniumRemoteProxy.readEnvVars();
+            Dashboard.restoreCommonProxyUtilities();
+            ObjectName objectName = new ObjectName("org.seleniumhq.grid:type=RemoteProxy,node=\"http://localhost:30000\"");
+            new JMXHelper().unregister(objectName);
+        }
+    }
+
     @Test
     public void videoRecordingIsDisabledViaCapability() {
         Map<String, Object> requestedCapability = getCapabilitySupportedByDockerSelenium();
@@ -0,0 +1,121 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EwmaScalingPolicyTest {
+
+    private static final long SCALE_UP_COOLDOWN = TimeUnit.SECONDS.toMillis(10);
+    private static final long SCALE_DOWN_COOLDOWN = TimeUnit.SECONDS.toMillis(60);
+
+    private final TestClock clock = new TestClock();
+
+    @Test
+    public void targetIsTheMinimumWithoutDemand() {
+        EwmaScalingPolicy policy = new EwmaScalingPolicy(2, 10, SCALE_UP_COOLDOWN, SCALE_DOWN_COOLDOWN, clock);
+
+        assertEquals(2, policy.getTargetContainers(2, 0, 0));
+    }
+
+    @Test
+    public void minimumIsLimitedByTheMaximum() {
+        EwmaScalingPolicy policy = new EwmaScalingPolicy(5, 3, SCALE_UP_COOLDOWN, SCALE_DOWN_COOLDOWN, clock);
+
+        assertEquals(3, policy.getTargetContainers(0, 0, 0));
+    }
+
+    @Test
+    public void queuedRequestsAndBusyContainersAreCovered() {
+        EwmaScalingPolicy policy = new EwmaScalingPolicy(0, 10, SCALE_UP_COOLDOWN, SCALE_DOWN_COOLDOWN, clock);
+
+        assertEquals(5, policy.getTargetContainers(2, 2, 3));
+    }
+
+    @Test
+    public void arrivalsDuringTheStartLatencyAreStartedAhead() {
+        EwmaScalingPolicy policy = new EwmaScalingPolicy(0, 20, SCALE_UP_COOLDOWN, SCALE_DOWN_COOLDOWN, clock);
+        policy.containerStarted(TimeUnit.SECONDS.toMillis(30));
+
+        // Steady 12 requests per minute during several time constants
+        for (int i = 0; i < 60; i++) {
+            policy.sessionRequested();
+            policy.sessionRequested();
+            clock.advance(TimeUnit.SECONDS.toMillis(10));
+            policy.getTargetContainers(0, 0, 0);
+        }
+
+        assertEquals(12, policy.getArrivalsPerMinute(), 0.5);
+        // 12 requests per minute arriving while a container starts in 30 seconds
+        assertEquals(6, policy.getTargetContainers(0, 0, 0));
+    }
+
+    @Test
+    public void scaleUpWaitsForTheCooldown() {
+        EwmaScalingPolicy policy = new EwmaScalingPolicy(0, 10, SCALE_UP_COOLDOWN, SCALE_DOWN_COOLDOWN, clock);
+
+        assertEquals(2, policy.getTargetContainers(0, 0, 2));
+        clock.advance(SCALE_UP_COOLDOWN / 2);
+        assertEquals(2, policy.getTargetContainers(2, 0, 4));
+        clock.advance(SCALE_UP_COOLDOWN / 2);
+        assertEquals(4, policy.getTargetContainers(2, 0, 4));
+    }
+
+    @Test
+    public void scaleDownWaitsForAWholeCooldownOfLowerDemand() {
+        EwmaScalingPolicy policy = new EwmaScalingPolicy(1, 10, SCALE_UP_COOLDOWN, SCALE_DOWN_COOLDOWN, clock);
+        assertEquals(6, policy.getTargetContainers(0, 0, 6));
+
+        clock.advance(SCALE_DOWN_COOLDOWN / 2);
+        assertEquals(6, policy.getTargetContainers(6, 0, 0));
+        // Demand comes back, the cooldown starts again
+        clock.advance(1);
+        assertEquals(6, policy.getTargetContainers(6, 6, 0));
+        clock.advance(SCALE_DOWN_COOLDOWN / 2);
+        assertEquals(6, policy.getTargetContainers(6, 0, 0));
+        clock.advance(SCALE_DOWN_COOLDOWN - 1);
+        assertEquals(6, policy.getTargetContainers(6, 0, 0));
+        clock.advance(1);
+        assertEquals(1, policy.getTargetContainers(6, 0, 0));
+    }
+
+    @Test
+    public void startLatencyIsAveraged() {
+        EwmaScalingPolicy policy = new EwmaScalingPolicy(0, 10, SCALE_UP_COOLDOWN, SCALE_DOWN_COOLDOWN, clock);
+
+        policy.containerStarted(10000);
+        assertEquals(10000, policy.getStartLatencyMillis(), 0);
+        policy.containerStarted(20000);
+        assertTrue(policy.getStartLatencyMillis() > 10000);
+        assertTrue(policy.getStartLatencyMillis() < 20000);
+    }
+
+    private static class TestClock extends Clock {
+        private long millis = TimeUnit.DAYS.toMillis(1);
+
+        void advance(long millis) {
+            this.millis += millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package de.zalando.ep.zalenium.proxy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of allocating and releasing the ports of a node while other nodes hold their ports, with the bitmap allocator
+ * and with the former linear scan over a synchronized list of allocated ports. About every other allocated port is
+ * released in the setup, so the free ports are spread across the range like after creating and removing containers
+ * for a while.
+ *
+ * Run it from the IDE or with the test classpath through main().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PortAllocationBenchmark {
+
+    private static final int LOWER_PORT = 40000;
+    private static final int UPPER_PORT = 49999;
+
+    @Param({ "100", "5000" })
+    public int liveAllocations;
+
+    private PortAllocator allocator;
+    private List<Integer> allocatedPorts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        allocator = new PortAllocator(LOWER_PORT, UPPER_PORT);
+        allocatedPorts = Collections.synchronizedList(new ArrayList<>());
+        Random random = new Random(42);
+        for (int i = 0; i < liveAllocations * 2; i++) {
+            int port = allocator.allocate();
+            int linearPort = linearScan();
+            if (random.nextBoolean()) {
+                allocator.release(port);
+                releaseLinear(linearPort);
+            }
+        }
+    }
+
+    @Benchmark
+    public int bitmap() {
+        int port = allocator.allocate();
+        allocator.release(port);
+        return port;
+    }
+
+    @Benchmark
+    public int linear() {
+        int port = linearScan();
+        releaseLinear(port);
+        return port;
+    }
+
+    // The allocation done by DockeredSeleniumStarter before the bitmap allocator.
+    private int linearScan() {
+        synchronized (allocatedPorts) {
+            for (int portNumber = LOWER_PORT; portNumber <= UPPER_PORT; portNumber++) {
+                int noVncPortNumber = portNumber + DockeredSeleniumStarter.NO_VNC_PORT_GAP;
+                int vncPortNumber = portNumber + 2 * DockeredSeleniumStarter.NO_VNC_PORT_GAP;
+                if (!allocatedPorts.contains(portNumber) && !allocatedPorts.contains(noVncPortNumber)
+                        && !allocatedPorts.contains(vncPortNumber)) {
+                    allocatedPorts.add(portNumber);
+                    allocatedPorts.add(noVncPortNumber);
+                    allocatedPorts.add(vncPortNumber);
+                    return portNumber;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void releaseLinear(int port) {
+        synchronized (allocatedPorts) {
+            allocatedPorts.remove(Integer.valueOf(port));
+            allocatedPorts.remove(Integer.valueOf(port + DockeredSeleniumStarter.NO_VNC_PORT_GAP));
+            allocatedPorts.remove(Integer.valueOf(port + 2 * DockeredSeleniumStarter.NO_VNC_PORT_GAP));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PortAllocationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
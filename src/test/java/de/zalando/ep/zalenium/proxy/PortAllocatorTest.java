@@ -0,0 +1,97 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PortAllocatorTest {
+
+    @Test
+    public void portsAreAllocatedInOrderUntilTheRangeIsFull() {
+        PortAllocator allocator = new PortAllocator(40000, 40002);
+
+        assertEquals(40000, allocator.allocate());
+        assertEquals(40001, allocator.allocate());
+        assertEquals(40002, allocator.allocate());
+        assertEquals(PortAllocator.NO_FREE_PORT, allocator.allocate());
+        assertEquals(3, allocator.getAllocatedCount());
+    }
+
+    @Test
+    public void releasedPortsAreAllocatedAgain() {
+        PortAllocator allocator = new PortAllocator(40000, 40002);
+        allocator.allocate();
+        allocator.allocate();
+        allocator.allocate();
+
+        assertTrue(allocator.release(40001));
+
+        assertEquals(40001, allocator.allocate());
+        assertEquals(PortAllocator.NO_FREE_PORT, allocator.allocate());
+    }
+
+    @Test
+    public void releasedPortsWaitUntilTheOtherFreePortsAreUsed() {
+        PortAllocator allocator = new PortAllocator(40000, 40002);
+        allocator.allocate();
+        allocator.release(40000);
+
+        assertEquals(40001, allocator.allocate());
+        assertEquals(40002, allocator.allocate());
+        assertEquals(40000, allocator.allocate());
+    }
+
+    @Test
+    public void unknownPortsAreNotReleased() {
+        PortAllocator allocator = new PortAllocator(40000, 40002);
+        allocator.allocate();
+
+        assertFalse(allocator.release(40001));
+        assertFalse(allocator.release(50000));
+        assertTrue(allocator.release(40000));
+        assertFalse(allocator.release(40000));
+        assertEquals(0, allocator.getAllocatedCount());
+    }
+
+    @Test
+    public void concurrentAllocationsGetDifferentPorts() throws Exception {
+        PortAllocator allocator = new PortAllocator(40000, 49999);
+        Set<Integer> ports = ConcurrentHashMap.newKeySet();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    int port = allocator.allocate();
+                    assertTrue(ports.add(port));
+                    if (j % 2 == 0) {
+                        ports.remove(port);
+                        allocator.release(port);
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(4000, ports.size());
+        assertEquals(4000, allocator.getAllocatedCount());
+    }
+}
@@ -0,0 +1,102 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openqa.grid.internal.RemoteProxy;
+import org.openqa.grid.internal.TestSlot;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+public class ProxyIndexTest {
+
+    private final ProxyIndex index = new ProxyIndex();
+
+    @Test
+    public void onlyIdleProxiesWithAMatchingSlotAreCandidates() {
+        DockerSeleniumRemoteProxy chrome = dockerProxy(capabilities(BrowserType.CHROME, Platform.LINUX));
+        DockerSeleniumRemoteProxy firefox = dockerProxy(capabilities(BrowserType.FIREFOX, Platform.LINUX));
+        index.add(chrome);
+        index.add(firefox);
+
+        Assert.assertEquals(Collections.singletonList(chrome),
+                index.candidates(capabilities(BrowserType.CHROME, Platform.LINUX)));
+    }
+
+    @Test
+    public void proxiesWithASessionAreCandidatesAgainOnceTheSlotIsReleased() {
+        DockerSeleniumRemoteProxy chrome = dockerProxy(capabilities(BrowserType.CHROME, Platform.LINUX));
+        index.add(chrome);
+        Map<String, Object> request = capabilities(BrowserType.CHROME, Platform.LINUX);
+
+        index.sessionStarted(chrome);
+        Assert.assertTrue(index.candidates(request).isEmpty());
+
+        index.slotReleased(chrome);
+        Assert.assertEquals(Collections.singletonList(chrome), index.candidates(request));
+    }
+
+    @Test
+    public void refreshFindsIdleProxiesWhoseReleaseWasMissed() {
+        DockerSeleniumRemoteProxy chrome = dockerProxy(capabilities(BrowserType.CHROME, Platform.LINUX));
+        index.add(chrome);
+        index.sessionStarted(chrome);
+
+        index.refresh();
+
+        Assert.assertEquals(Collections.singletonList(chrome),
+                index.candidates(capabilities(BrowserType.CHROME, Platform.LINUX)));
+    }
+
+    @Test
+    public void removedProxiesAreNotCandidates() {
+        DockerSeleniumRemoteProxy chrome = dockerProxy(capabilities(BrowserType.CHROME, Platform.LINUX));
+        RemoteProxy cloud = proxy(RemoteProxy.class, capabilities(BrowserType.CHROME, Platform.ANY));
+        index.add(chrome);
+        index.add(cloud);
+
+        index.remove(chrome);
+        index.remove(cloud);
+        index.slotReleased(chrome);
+        index.refresh();
+
+        Assert.assertTrue(index.candidates(capabilities(BrowserType.CHROME, Platform.LINUX)).isEmpty());
+    }
+
+    @Test
+    public void androidProxiesAreNotCandidatesForLinuxRequests() {
+        RemoteProxy android = proxy(RemoteProxy.class, capabilities(BrowserType.ANDROID, Platform.ANDROID));
+        RemoteProxy cloud = proxy(RemoteProxy.class, capabilities(BrowserType.CHROME, Platform.ANY));
+        index.add(android);
+        index.add(cloud);
+
+        Assert.assertEquals(Collections.singletonList(cloud),
+                index.candidates(capabilities(BrowserType.CHROME, Platform.LINUX)));
+        Assert.assertFalse(index.canBeConsidered(android, capabilities(BrowserType.CHROME, Platform.LINUX)));
+        Assert.assertTrue(index.canBeConsidered(android, capabilities(BrowserType.ANDROID, Platform.ANDROID)));
+    }
+
+    private static Map<String, Object> capabilities(String browserName, Platform platform) {
+        Map<String, Object> capabilities = new HashMap<>();
+        capabilities.put(CapabilityType.BROWSER_NAME, browserName);
+        capabilities.put(CapabilityType.PLATFORM_NAME, platform);
+        return capabilities;
+    }
+
+    private static DockerSeleniumRemoteProxy dockerProxy(Map<String, Object> slotCapabilities) {
+        return proxy(DockerSeleniumRemoteProxy.class, slotCapabilities);
+    }
+
+    private static <T extends RemoteProxy> T proxy(Class<T> type, Map<String, Object> slotCapabilities) {
+        T proxy = Mockito.mock(type);
+        TestSlot slot = Mockito.mock(TestSlot.class);
+        Mockito.when(slot.getCapabilities()).thenReturn(slotCapabilities);
+        Mockito.when(proxy.getTestSlots()).thenReturn(Collections.singletonList(slot));
+        return proxy;
+    }
+}
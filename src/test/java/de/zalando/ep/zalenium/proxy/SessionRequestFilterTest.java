@@ -0,0 +1,97 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SessionRequestFilterTest {
+
+    private long now = 10000;
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(now);
+        }
+    };
+
+    @Test
+    public void equalRequestsAreTrackedSeparately() {
+        SessionRequestFilter filter = new SessionRequestFilter(10, clock);
+        Map<String, Object> first = request("chrome");
+        Map<String, Object> second = request("chrome");
+
+        filter.requestHasBeenProcessed(first);
+
+        assertTrue(filter.hasRequestBeenProcessed(first));
+        assertFalse(filter.hasRequestBeenProcessed(second));
+    }
+
+    @Test
+    public void newNodeIsForcedAfterTooManyAttempts() {
+        SessionRequestFilter filter = new SessionRequestFilter(3, clock);
+        Map<String, Object> request = request("firefox");
+        filter.requestHasBeenProcessed(request);
+
+        assertTrue(filter.hasRequestBeenProcessed(request));
+        assertFalse(filter.hasRequestBeenProcessed(request));
+        assertTrue(filter.hasRequestBeenProcessed(request));
+    }
+
+    @Test
+    public void failedAndStartedRequestsAreForgotten() {
+        SessionRequestFilter filter = new SessionRequestFilter(10, clock);
+        Map<String, Object> failed = request("chrome");
+        Map<String, Object> started = request("firefox");
+        filter.requestHasBeenProcessed(failed);
+        filter.requestHasBeenProcessed(started);
+
+        filter.requestHasFailed(failed);
+        filter.testSessionHasStarted(started);
+
+        assertFalse(filter.hasRequestBeenProcessed(failed));
+        assertFalse(filter.hasRequestBeenProcessed(started));
+        assertEquals(0, filter.size());
+    }
+
+    @Test
+    public void onlyRequestsWithoutRecentAttemptsExpire() {
+        SessionRequestFilter filter = new SessionRequestFilter(10, clock);
+        Map<String, Object> waiting = request("chrome");
+        Map<String, Object> abandoned = request("firefox");
+        filter.requestHasBeenProcessed(waiting);
+        filter.requestHasBeenProcessed(abandoned);
+
+        now += SessionRequestFilter.MAXIMUM_LAST_PROCESSED_TIME / 2;
+        filter.hasRequestBeenProcessed(waiting);
+        now += SessionRequestFilter.MAXIMUM_LAST_PROCESSED_TIME / 2;
+        filter.cleanProcessedCapabilities();
+
+        assertEquals(1, filter.size());
+        assertTrue(filter.hasRequestBeenProcessed(waiting));
+        assertFalse(filter.hasRequestBeenProcessed(abandoned));
+    }
+
+    private static Map<String, Object> request(String browserName) {
+        Map<String, Object> capabilities = new HashMap<>();
+        capabilities.put("browserName", browserName);
+        return capabilities;
+    }
+}
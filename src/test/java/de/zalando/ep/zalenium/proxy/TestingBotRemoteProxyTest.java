@@ -14,6 +14,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.InstanceNotFoundException;
 import javax.management.MalformedObjectNameException;
@@ -250,7 +251,7 @@ public class TestingBotRemoteProxyTest {
     }
 
     @Test
-    public void dashboardFilesGetCopied() {
+    public void dashboardFilesGetCopied() throws InterruptedException {
         try {
             // Capability which should result in a created session
             Map<String, Object> requestedCapability = new HashMap<>();
@@ -278,6 +279,7 @@ public class TestingBotRemoteProxyTest {
 
             TestInformation testInformation = spyProxy.getTestInformation(mockSeleniumSessionId);
             DashboardCollection.updateDashboard(testInformation);
+            Assert.assertTrue(DashboardCollection.awaitDashboardUpdates(10, TimeUnit.SECONDS));
             File videosFolder = new File(temporaryFolder.getRoot().getAbsolutePath(), "videos");
             Assert.assertTrue(videosFolder.isDirectory());
             File amountOfRunTests = new File(videosFolder, "executedTestsInfo.json");
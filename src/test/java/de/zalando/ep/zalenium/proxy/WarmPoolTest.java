@@ -0,0 +1,77 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openqa.selenium.Dimension;
+
+import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityType;
+import io.prometheus.client.CollectorRegistry;
+
+public class WarmPoolTest {
+
+    private final Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
+
+    @Test
+    public void warmPoolsAreParsed() {
+        Map<WarmPoolProfile, Integer> warmPools =
+                WarmPoolProfile.parse("1280x1024/UTC:5, 1920x1080/America/Montreal:2,invalid,800x600/Nowhere:1");
+
+        Assert.assertEquals(2, warmPools.size());
+        WarmPoolProfile montreal = WarmPoolProfile.parse("1920x1080/America/Montreal:1").keySet().iterator().next();
+        Assert.assertEquals(new Dimension(1920, 1080), montreal.getScreenSize());
+        Assert.assertEquals("America/Montreal", montreal.getTimeZone().getID());
+        Assert.assertEquals(Integer.valueOf(2), warmPools.get(montreal));
+    }
+
+    @Test
+    public void targetSizeGrowsWithDemand() {
+        Map<WarmPoolProfile, Integer> warmPools = WarmPoolProfile.parse("1280x1024/UTC:1");
+        WarmPoolProfile profile = warmPools.keySet().iterator().next();
+        WarmPool warmPool = new WarmPool(warmPools, clock);
+
+        Assert.assertEquals(1, warmPool.getTargetSize(profile));
+
+        // 20 requests during the 5 minutes window are 4 requests per minute
+        for (int i = 0; i < 20; i++) {
+            warmPool.sessionRequested(capabilities("1280x1024", "UTC"), false);
+        }
+        Assert.assertEquals(4, warmPool.getTargetSize(profile));
+    }
+
+    @Test
+    public void hitsAndMissesAreCountedOncePerRequest() {
+        WarmPool warmPool = new WarmPool(WarmPoolProfile.parse("1280x1024/UTC:1"), clock);
+        Map<String, Object> request = capabilities("1280x1024", "UTC");
+        double missesBefore = samples("zalenium_warm_pool_misses_total");
+        double hitsBefore = samples("zalenium_warm_pool_hits_total");
+
+        warmPool.sessionRequested(request, false);
+        warmPool.sessionRequested(request, false);
+        warmPool.sessionRequested(request, true);
+        warmPool.sessionRequested(capabilities("1280x1024", "UTC"), true);
+        // Not part of any warm pool
+        warmPool.sessionRequested(capabilities("800x600", "UTC"), true);
+
+        Assert.assertEquals(1, samples("zalenium_warm_pool_misses_total") - missesBefore, 0);
+        Assert.assertEquals(1, samples("zalenium_warm_pool_hits_total") - hitsBefore, 0);
+    }
+
+    private static double samples(String name) {
+        Double value = CollectorRegistry.defaultRegistry.getSampleValue(name, new String[] { "profile" },
+                new String[] { "1280x1024/UTC" });
+        return value == null ? 0 : value;
+    }
+
+    private static Map<String, Object> capabilities(String screenResolution, String timeZone) {
+        Map<String, Object> capabilities = new HashMap<>();
+        capabilities.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, screenResolution);
+        capabilities.put(ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX, timeZone);
+        return capabilities;
+    }
+}
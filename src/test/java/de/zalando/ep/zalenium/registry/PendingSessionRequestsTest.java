@@ -0,0 +1,211 @@
+package de.zalando.ep.zalenium.registry;
+
+import de.zalando.ep.zalenium.matcher.CapabilityKey;
+import de.zalando.ep.zalenium.util.TestUtils;
+import org.junit.Test;
+import org.openqa.grid.internal.listeners.Prioritizer;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PendingSessionRequestsTest {
+
+    @Test
+    public void freedSlotIsOnlyOfferedToMatchingRequests() {
+        PendingSessionRequests pendingRequests = new PendingSessionRequests();
+        RequestHandler chrome = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.CHROME));
+        RequestHandler firefox = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.FIREFOX));
+        pendingRequests.add(chrome);
+        pendingRequests.add(firefox);
+
+        List<RequestHandler> examined = new ArrayList<>();
+        CapabilityKey freedFirefoxSlot = CapabilityKey.fromCapabilities(capabilities(BrowserType.FIREFOX));
+        pendingRequests.processFreedSlot(freedFirefoxSlot, handler -> {
+            examined.add(handler);
+            return true;
+        });
+
+        assertEquals(Collections.singletonList(firefox), examined);
+        assertEquals(1, pendingRequests.size());
+    }
+
+    @Test
+    public void arrivalsAreProcessedOnlyOnce() {
+        PendingSessionRequests pendingRequests = new PendingSessionRequests();
+        pendingRequests.add(TestUtils.createNewSessionHandler(null, capabilities(BrowserType.CHROME)));
+
+        List<RequestHandler> examined = new ArrayList<>();
+        pendingRequests.processArrivals(handler -> examined.add(handler) && false);
+        pendingRequests.processArrivals(handler -> examined.add(handler) && false);
+
+        assertEquals(1, examined.size());
+        assertEquals(1, pendingRequests.size());
+    }
+
+    @Test
+    public void removedRequestIsNotAssigned() {
+        PendingSessionRequests pendingRequests = new PendingSessionRequests();
+        RequestHandler chrome = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.CHROME));
+        pendingRequests.add(chrome);
+
+        assertTrue(pendingRequests.remove(chrome));
+        assertFalse(pendingRequests.remove(chrome));
+
+        pendingRequests.processAll(handler -> {
+            throw new AssertionError("A removed request should not be processed");
+        });
+        assertEquals(0, pendingRequests.size());
+    }
+
+    @Test
+    public void removalWaitsForTheMatcherDecision() throws Exception {
+        PendingSessionRequests pendingRequests = new PendingSessionRequests();
+        RequestHandler chrome = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.CHROME));
+        pendingRequests.add(chrome);
+
+        CountDownLatch matching = new CountDownLatch(1);
+        CountDownLatch decide = new CountDownLatch(1);
+        Thread matcher = new Thread(() -> pendingRequests.processArrivals(handler -> {
+            matching.countDown();
+            try {
+                decide.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }));
+        matcher.start();
+        assertTrue(matching.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Boolean> removed = CompletableFuture.supplyAsync(() -> pendingRequests.remove(chrome));
+        Thread.sleep(100);
+        assertFalse(removed.isDone());
+
+        decide.countDown();
+        assertFalse(removed.get(10, TimeUnit.SECONDS));
+        matcher.join();
+        assertEquals(0, pendingRequests.size());
+    }
+
+    @Test
+    public void requestsAreProcessedInArrivalOrder() {
+        PendingSessionRequests pendingRequests = new PendingSessionRequests();
+        RequestHandler first = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.CHROME));
+        RequestHandler second = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.FIREFOX));
+        RequestHandler third = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.CHROME));
+        pendingRequests.add(first);
+        pendingRequests.add(second);
+        pendingRequests.add(third);
+
+        List<RequestHandler> examined = new ArrayList<>();
+        pendingRequests.processAll(handler -> examined.add(handler) && false);
+
+        assertEquals(3, examined.size());
+        assertTrue(examined.get(0) == first);
+        assertTrue(examined.get(1) == second);
+        assertTrue(examined.get(2) == third);
+    }
+
+    @Test
+    public void freedSlotIsOfferedOnlyToTheHeadOfEachBucket() {
+        PendingSessionRequests pendingRequests = new PendingSessionRequests();
+        RequestHandler first = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.CHROME));
+        RequestHandler second = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.CHROME));
+        RequestHandler firefox = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.FIREFOX));
+        pendingRequests.add(first);
+        pendingRequests.add(second);
+        pendingRequests.add(firefox);
+
+        List<RequestHandler> examined = new ArrayList<>();
+        assertFalse(pendingRequests.processFreedSlot(CapabilityKey.ANY, handler -> examined.add(handler) && false));
+
+        assertEquals(2, examined.size());
+        assertTrue(examined.get(0) == first);
+        assertTrue(examined.get(1) == firefox);
+        assertEquals(3, pendingRequests.size());
+    }
+
+    @Test
+    public void prioritizerIsHonouredWithinABucket() {
+        Prioritizer prioritizer = (a, b) -> Integer.compare(priority(b), priority(a));
+        PendingSessionRequests pendingRequests = new PendingSessionRequests(() -> prioritizer);
+        Map<String, Object> lowPriority = capabilities(BrowserType.CHROME);
+        lowPriority.put("priority", 1);
+        Map<String, Object> highPriority = capabilities(BrowserType.CHROME);
+        highPriority.put("priority", 10);
+        RequestHandler low = TestUtils.createNewSessionHandler(null, lowPriority);
+        RequestHandler high = TestUtils.createNewSessionHandler(null, highPriority);
+        pendingRequests.add(low);
+        pendingRequests.add(high);
+
+        List<RequestHandler> examined = new ArrayList<>();
+        CapabilityKey freedChromeSlot = CapabilityKey.fromCapabilities(capabilities(BrowserType.CHROME));
+        assertTrue(pendingRequests.processFreedSlot(freedChromeSlot, examined::add));
+
+        assertEquals(Collections.singletonList(high), examined);
+        assertEquals(1, pendingRequests.size());
+    }
+
+    @Test
+    public void changingThePrioritizerDoesNotBreakQueuedBuckets() {
+        AtomicReference<Prioritizer> prioritizer = new AtomicReference<>((a, b) -> Integer.compare(priority(b),
+                priority(a)));
+        PendingSessionRequests pendingRequests = new PendingSessionRequests(prioritizer::get);
+        List<RequestHandler> handlers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Map<String, Object> capabilities = capabilities(BrowserType.CHROME);
+            capabilities.put("priority", i);
+            RequestHandler handler = TestUtils.createNewSessionHandler(null, capabilities);
+            handlers.add(handler);
+            pendingRequests.add(handler);
+        }
+
+        prioritizer.set((a, b) -> Integer.compare(priority(a), priority(b)));
+
+        for (RequestHandler handler : handlers) {
+            assertTrue(pendingRequests.remove(handler));
+        }
+        assertEquals(0, pendingRequests.size());
+    }
+
+    @Test
+    public void bucketCreatedAfterAFreedSlotGetsTheNextOne() {
+        PendingSessionRequests pendingRequests = new PendingSessionRequests();
+        pendingRequests.add(TestUtils.createNewSessionHandler(null, capabilities(BrowserType.CHROME)));
+        CapabilityKey freedFirefoxSlot = CapabilityKey.fromCapabilities(capabilities(BrowserType.FIREFOX));
+        assertFalse(pendingRequests.processFreedSlot(freedFirefoxSlot, handler -> true));
+
+        RequestHandler firefox = TestUtils.createNewSessionHandler(null, capabilities(BrowserType.FIREFOX));
+        pendingRequests.add(firefox);
+
+        List<RequestHandler> examined = new ArrayList<>();
+        assertTrue(pendingRequests.processFreedSlot(freedFirefoxSlot, examined::add));
+        assertEquals(Collections.singletonList(firefox), examined);
+    }
+
+    private static int priority(Map<String, Object> capabilities) {
+        return (Integer) capabilities.getOrDefault("priority", 0);
+    }
+
+    private static Map<String, Object> capabilities(String browser) {
+        Map<String, Object> capabilities = new HashMap<>();
+        capabilities.put(CapabilityType.BROWSER_NAME, browser);
+        capabilities.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+        return capabilities;
+    }
+}
@@ -0,0 +1,117 @@
+package de.zalando.ep.zalenium.registry;
+
+import de.zalando.ep.zalenium.matcher.CapabilityKey;
+import de.zalando.ep.zalenium.util.TestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assignment latency with 1k queued requests when a single slot frees up. Compares offering the slot to the bucket
+ * heads, as the Matcher thread does, with a full pass over the queue (what the hub's queue did on every signal).
+ *
+ * SampleTime mode reports the p99 of each method. Run it from the IDE or with the test classpath through main().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionMatchingBenchmark {
+
+    private static final String[] RESOLUTIONS = { "1920x1080", "1280x1024", "1024x768", "1366x768", "1600x900" };
+    private static final String[] TIME_ZONES = { "Europe/Berlin", "UTC" };
+
+    @Param({ "1000" })
+    public int queuedRequests;
+
+    private PendingSessionRequests pendingRequests;
+    private List<Map<String, Object>> profiles;
+    private List<RequestHandler> assigned;
+    private int nextProfile;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        profiles = new ArrayList<>();
+        for (String browser : new String[] { BrowserType.CHROME, BrowserType.FIREFOX }) {
+            for (String resolution : RESOLUTIONS) {
+                for (String timeZone : TIME_ZONES) {
+                    Map<String, Object> capabilities = new HashMap<>();
+                    capabilities.put(CapabilityType.BROWSER_NAME, browser);
+                    capabilities.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+                    capabilities.put("screenResolution", resolution);
+                    capabilities.put("tz", timeZone);
+                    profiles.add(capabilities);
+                }
+            }
+        }
+        pendingRequests = new PendingSessionRequests();
+        assigned = new ArrayList<>();
+        for (int i = 0; i < queuedRequests; i++) {
+            pendingRequests.add(TestUtils.createNewSessionHandler(null, new HashMap<>(nextProfile())));
+        }
+        pendingRequests.processArrivals(handler -> false);
+    }
+
+    @Benchmark
+    public int incrementalMatch() {
+        CapabilityKey freedSlot = CapabilityKey.fromCapabilities(nextProfile());
+        pendingRequests.processFreedSlot(freedSlot, assigned::add);
+        return refill();
+    }
+
+    @Benchmark
+    public int fullPass() {
+        CapabilityKey freedSlot = CapabilityKey.fromCapabilities(nextProfile());
+        boolean[] slotTaken = { false };
+        pendingRequests.processAll(handler -> {
+            if (!slotTaken[0] && CapabilityKey.fromCapabilities(handler.getRequest().getDesiredCapabilities())
+                    .canBeServedBy(freedSlot)) {
+                slotTaken[0] = true;
+                return assigned.add(handler);
+            }
+            return false;
+        });
+        return refill();
+    }
+
+    // Assigned requests go back to the queue, so it always holds the same amount of requests.
+    private int refill() {
+        assigned.forEach(pendingRequests::add);
+        assigned.clear();
+        pendingRequests.processArrivals(handler -> false);
+        return pendingRequests.size();
+    }
+
+    private Map<String, Object> nextProfile() {
+        nextProfile = (nextProfile + 1) % profiles.size();
+        return profiles.get(nextProfile);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SessionMatchingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
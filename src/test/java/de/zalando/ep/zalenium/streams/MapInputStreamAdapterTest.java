@@ -4,9 +4,10 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -15,10 +16,10 @@ public class MapInputStreamAdapterTest {
 
     @Test
     public void itShouldEnableWrappingNamedInputStreamNamePairs() throws IOException {
-        Map<String, File> files = new HashMap<String, File>() {{
-            put("1", new File(MapInputStreamAdapterTest.class.getClassLoader().getResource("samples/file1.txt").getFile()));
-            put("2", new File(MapInputStreamAdapterTest.class.getClassLoader().getResource("samples/file2.txt").getFile()));
-            put("3", new File(MapInputStreamAdapterTest.class.getClassLoader().getResource("samples/file3.txt").getFile()));
+        Map<String, Path> files = new HashMap<String, Path>() {{
+            put("1", Paths.get(MapInputStreamAdapterTest.class.getClassLoader().getResource("samples/file1.txt").getFile()));
+            put("2", Paths.get(MapInputStreamAdapterTest.class.getClassLoader().getResource("samples/file2.txt").getFile()));
+            put("3", Paths.get(MapInputStreamAdapterTest.class.getClassLoader().getResource("samples/file3.txt").getFile()));
         }};
         InputStreamGroupIterator adapter = new MapInputStreamAdapter(files);
         InputStreamDescriptor next;
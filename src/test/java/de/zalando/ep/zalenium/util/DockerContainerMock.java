@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.mockito.stubbing.Answer;
@@ -40,6 +41,7 @@ import com.spotify.docker.client.messages.ImageInfo;
 import com.spotify.docker.client.messages.Info;
 import com.spotify.docker.client.messages.NetworkSettings;
 
+import de.zalando.ep.zalenium.container.CommandBatch;
 import de.zalando.ep.zalenium.container.ContainerClientRegistration;
 import de.zalando.ep.zalenium.container.DockerContainerClient;
 
@@ -68,8 +70,16 @@ public class DockerContainerMock {
         return getMockedDockerContainerClient("default");
     }
 
-    @SuppressWarnings("ConstantConditions")
     public static DockerContainerClient getMockedDockerContainerClient(String networkName) {
+        return getMockedDockerContainerClient(networkName, Collections.emptyList());
+    }
+
+    /**
+     * @param hubMounts mounts of the hub container, in addition to the folders mounted into the nodes.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public static DockerContainerClient getMockedDockerContainerClient(String networkName,
+                                                                       List<ContainerMount> hubMounts) {
         DockerClient dockerClient = mock(DockerClient.class);
         ExecCreation execCreation = mock(ExecCreation.class);
         LogStream logStream = mock(LogStream.class);
@@ -92,7 +102,8 @@ public class DockerContainerMock {
         ContainerMount homeFolderMount = mock(ContainerMount.class);
         when(homeFolderMount.destination()).thenReturn("/tmp/node/home/seluser/folder");
         when(homeFolderMount.source()).thenReturn("/tmp/folder");
-        when(containerInfo.mounts()).thenReturn(ImmutableList.of(tmpMountedMount, homeFolderMount));
+        when(containerInfo.mounts()).thenReturn(ImmutableList.<ContainerMount>builder()
+                .add(tmpMountedMount, homeFolderMount).addAll(hubMounts).build());
         when(attachedNetwork.ipAddress()).thenReturn("127.0.0.1");
         when(networkSettings.networks()).thenReturn(ImmutableMap.of(networkName, attachedNetwork));
         when(networkSettings.ipAddress()).thenReturn("");
@@ -170,6 +181,19 @@ public class DockerContainerMock {
                     DockerClient.ExecCreateParam.attachStderr(), DockerClient.ExecCreateParam.attachStdin()))
                     .thenReturn(execCreation);
 
+            String[] stopVideoCompleted = new CommandBatch(Arrays.asList(
+                    SEND_NOTIFICATION.getContainerAction().concat(COMPLETED.getTestNotificationMessage()),
+                    STOP_RECORDING.getContainerAction())).toCommand();
+            String[] stopVideoTimeout = new CommandBatch(Arrays.asList(
+                    SEND_NOTIFICATION.getContainerAction().concat(TIMEOUT.getTestNotificationMessage()),
+                    STOP_RECORDING.getContainerAction())).toCommand();
+            when(dockerClient.execCreate(containerId, stopVideoCompleted, DockerClient.ExecCreateParam.attachStdout(),
+                    DockerClient.ExecCreateParam.attachStderr()))
+                    .thenReturn(execCreation);
+            when(dockerClient.execCreate(containerId, stopVideoTimeout, DockerClient.ExecCreateParam.attachStdout(),
+                    DockerClient.ExecCreateParam.attachStderr()))
+                    .thenReturn(execCreation);
+
             when(dockerClient.execStart(anyString())).thenReturn(logStream);
             doNothing().when(dockerClient).stopContainer(anyString(), anyInt());
 
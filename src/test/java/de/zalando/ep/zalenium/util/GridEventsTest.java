@@ -0,0 +1,58 @@
+package de.zalando.ep.zalenium.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class GridEventsTest {
+
+    @Test
+    public void eventsAreFormattedAsServerSentEvents() {
+        GridEvents gridEvents = new GridEvents(4);
+
+        gridEvents.publish(GridEvents.NODE_ADDED, Collections.singletonMap("id", "http://172.17.0.3:40000"));
+
+        GridEvents.Event event = gridEvents.get(1);
+        assertEquals(GridEvents.NODE_ADDED, event.getType());
+        assertEquals("id: 1\nevent: nodeAdded\ndata: {\"id\":\"http://172.17.0.3:40000\"}\n\n",
+                new String(event.getBytes(), UTF_8));
+    }
+
+    @Test
+    public void oldEventsAreOverwritten() {
+        GridEvents gridEvents = new GridEvents(4);
+
+        for (int i = 0; i < 6; i++) {
+            gridEvents.publish(GridEvents.TEST_ADDED, i);
+        }
+
+        assertEquals(6, gridEvents.getLastSequence());
+        assertEquals(3, gridEvents.getFirstSequence());
+        assertNull(gridEvents.get(2));
+        assertEquals(3, gridEvents.get(3).getSequence());
+        assertEquals(6, gridEvents.get(6).getSequence());
+        assertNull(gridEvents.get(7));
+    }
+
+    @Test
+    public void listenersAreCalledForEveryEvent() {
+        GridEvents gridEvents = new GridEvents(4);
+        AtomicInteger calls = new AtomicInteger();
+        Runnable listener = calls::incrementAndGet;
+        gridEvents.addListener(() -> {
+            throw new IllegalStateException("A failing listener does not stop the others");
+        });
+        gridEvents.addListener(listener);
+
+        gridEvents.publish(GridEvents.SESSION_STARTED, "session");
+        gridEvents.removeListener(listener);
+        gridEvents.publish(GridEvents.SESSION_STOPPED, "session");
+
+        assertEquals(1, calls.get());
+    }
+}
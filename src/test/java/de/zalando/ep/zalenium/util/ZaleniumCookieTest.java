@@ -0,0 +1,43 @@
+package de.zalando.ep.zalenium.util;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ZaleniumCookieTest {
+
+    @Test
+    public void nameAndValueAreRead() throws IOException {
+        ZaleniumCookie cookie = ZaleniumCookie.fromRequestBody(
+                "{\"cookie\": {\"path\": \"/\", \"name\": \"zaleniumMessage\", \"value\": \"Step 1\"}}");
+
+        assertTrue(cookie.hasName("ZALENIUMMESSAGE"));
+        assertEquals("Step 1", cookie.getValue());
+    }
+
+    @Test
+    public void booleanAndJsonValuesAreReadAsText() throws IOException {
+        assertEquals("false", ZaleniumCookie.fromRequestBody(
+                "{\"cookie\": {\"name\": \"zaleniumTestPassed\", \"value\": false}}").getValue());
+        assertEquals("{\"build\": \"1\"}", ZaleniumCookie.fromRequestBody(
+                "{\"sessionId\": \"1\", \"cookie\": {\"name\": \"zaleniumMetadata\", \"value\": \"{\\\"build\\\": \\\"1\\\"}\"}}")
+                .getValue());
+    }
+
+    @Test
+    public void otherCookiesAreIgnored() throws IOException {
+        assertNull(ZaleniumCookie.fromRequestBody("{\"cookie\": {\"name\": \"session\", \"value\": \"abc\"}}"));
+        assertNull(ZaleniumCookie.fromRequestBody("{\"cookie\": {\"name\": \"session\", \"value\": \"zalenium\"}}"));
+        assertNull(ZaleniumCookie.fromRequestBody("{\"cookie\": {\"name\": \"zaleniumVideo\"}}"));
+        assertNull(ZaleniumCookie.fromRequestBody(null));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidBodiesFail() throws IOException {
+        ZaleniumCookie.fromRequestBody("[\"zalenium\"]");
+    }
+}